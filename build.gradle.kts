@@ -19,8 +19,16 @@ repositories {
     mavenCentral()
 }
 
+// JMH 基准测试：src/jmh/java，运行 ./gradlew jmh，结果写入 build/reports/jmh/
+val jmhSourceSet: SourceSet = sourceSets.create("jmh") {
+    compileClasspath += sourceSets.main.get().output + sourceSets.main.get().compileClasspath
+    runtimeClasspath += output + compileClasspath
+}
+
 dependencies {
     testImplementation("junit:junit:4.13.2")
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 // See https://plugins.jetbrains.com/docs/intellij/tools-gradle-intellij-plugin.html
@@ -56,6 +64,20 @@ tasks {
     // 禁用 instrumentation（避免 Packages 目录查找错误）
     instrumentCode { enabled = false }
     
+    // 运行基准测试，JSON 结果按版本命名以便对比；可用 -PjmhArgs="LookupBenchmark -p size=1000" 传递 JMH 参数
+    register<JavaExec>("jmh") {
+        group = "benchmark"
+        description = "Runs the JMH benchmarks and writes JSON results to build/reports/jmh"
+        dependsOn(jmhSourceSet.classesTaskName)
+        classpath = jmhSourceSet.runtimeClasspath
+        mainClass.set("org.openjdk.jmh.Main")
+        val resultFile = layout.buildDirectory.file("reports/jmh/jmh-${project.version}.json")
+        val extraArgs = providers.gradleProperty("jmhArgs").orNull
+        args = listOf("-rf", "json", "-rff", resultFile.get().asFile.absolutePath) +
+                (extraArgs?.split(" ")?.filter { it.isNotBlank() } ?: emptyList())
+        doFirst { resultFile.get().asFile.parentFile.mkdirs() }
+    }
+
     // 为构建的插件JAR添加版本后缀
     buildPlugin {
         doLast {
@@ -0,0 +1,42 @@
+package com.zeng.chineseannotator.bench;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Synthetic annotation sets shaped like a real project: a few modules, nested packages, one annotated folder per leaf.
+ */
+final class AnnotationData {
+
+    static final String PROJECT_DIR = "/bench/project";
+
+    private AnnotationData() {
+    }
+
+    static String path(int i) {
+        return PROJECT_DIR + "/module" + (i % 64) + "/src/main/java/com/example/pkg" + (i / 64 % 512) + "/dir" + i;
+    }
+
+    /**
+     * A path in the same shape that is never annotated.
+     */
+    static String missingPath(int i) {
+        return PROJECT_DIR + "/module" + (i % 64) + "/src/main/java/com/example/pkg" + (i / 64 % 512) + "/other" + i;
+    }
+
+    static Map<String, ChineseNameService.FolderAnnotation> annotations(int size) {
+        Map<String, ChineseNameService.FolderAnnotation> result = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            result.put(path(i), new ChineseNameService.FolderAnnotation("目录" + i, i % 4 == 0));
+        }
+        return result;
+    }
+
+    static ChineseNameService service(int size) {
+        ChineseNameService service = new ChineseNameService();
+        service.replaceAnnotations(annotations(size));
+        return service;
+    }
+}
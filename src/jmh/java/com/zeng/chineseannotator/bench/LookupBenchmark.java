@@ -0,0 +1,83 @@
+package com.zeng.chineseannotator.bench;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-node cost paid while painting the Project View: annotation lookup and display-name rendering.
+ * Lookups walk a fixed, shuffled set of keys so the result is not dominated by one hot cache line.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+    private static final int KEYS = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private ChineseNameService service;
+    private String[] hitPaths;
+    private String[] missPaths;
+    private String[] names;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = AnnotationData.service(size);
+        hitPaths = new String[KEYS];
+        missPaths = new String[KEYS];
+        names = new String[KEYS];
+        for (int k = 0; k < KEYS; k++) {
+            int i = (int) ((k * 2654435761L) % size);
+            // Fresh strings, as the providers build them, so the benchmark pays for hashing
+            hitPaths[k] = new String(AnnotationData.path(i));
+            missPaths[k] = AnnotationData.missingPath(i);
+            names[k] = "dir" + i;
+        }
+    }
+
+    private int next() {
+        cursor = (cursor + 1) & (KEYS - 1);
+        return cursor;
+    }
+
+    @Benchmark
+    public ChineseNameService.FolderAnnotation lookupHit() {
+        return service.getAnnotation(hitPaths[next()]);
+    }
+
+    @Benchmark
+    public ChineseNameService.FolderAnnotation lookupMiss() {
+        return service.getAnnotation(missPaths[next()]);
+    }
+
+    @Benchmark
+    public String displayNameAnnotated() {
+        int k = next();
+        return service.getDisplayName(hitPaths[k], names[k]);
+    }
+
+    @Benchmark
+    public String displayNamePlain() {
+        int k = next();
+        return service.getDisplayName(missPaths[k], names[k]);
+    }
+}
@@ -0,0 +1,101 @@
+package com.zeng.chineseannotator.bench;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.util.xmlb.XmlSerializer;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.storage.CompactAnnotationFile;
+import com.zeng.chineseannotator.storage.CompactAnnotationMap;
+import org.jdom.Element;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Project open and save: the XML state component round trip and the compact file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PersistenceBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    private ChineseNameService service;
+    private Element xmlState;
+    private Map<String, ChineseNameService.FolderAnnotation> annotations;
+    private Path tempDir;
+    private Path compactFile;
+    private int toggle;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        service = AnnotationData.service(size);
+        annotations = service.getAnnotations();
+        xmlState = XmlSerializer.serialize(service.getState());
+        tempDir = Files.createTempDirectory("annotation-bench");
+        compactFile = tempDir.resolve(ChineseNameService.COMPACT_FILE_NAME);
+        CompactAnnotationFile.write(compactFile, annotations, AnnotationData.PROJECT_DIR);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        FileUtil.delete(tempDir.toFile());
+    }
+
+    /**
+     * What the platform does on project open: deserialize the state bean and hand it to the service.
+     */
+    @Benchmark
+    public ChineseNameService loadXmlState() {
+        ChineseNameService loaded = new ChineseNameService();
+        loaded.loadState(XmlSerializer.deserialize(xmlState, ChineseNameService.class));
+        return loaded;
+    }
+
+    /**
+     * Save after one change: the state is re-exported and serialized.
+     */
+    @Benchmark
+    public Element saveXmlState() {
+        String path = AnnotationData.path(0);
+        service.addAnnotation(path, "目录" + (toggle++), false);
+        return XmlSerializer.serialize(service.getState());
+    }
+
+    @Benchmark
+    public void writeCompactFile() throws IOException {
+        CompactAnnotationFile.write(compactFile, annotations, AnnotationData.PROJECT_DIR);
+    }
+
+    /**
+     * Maps the compact file and touches every entry, as building the id index would.
+     */
+    @Benchmark
+    public void openCompactFile(Blackhole blackhole) throws IOException {
+        CompactAnnotationMap map = CompactAnnotationFile.open(compactFile, AnnotationData.PROJECT_DIR);
+        for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : map.entrySet()) {
+            blackhole.consume(entry.getValue());
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package com.zeng.chineseannotator.bench;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings apply and batch edits: a small delta through {@code update()} against replacing everything.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UpdateBenchmark {
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int size;
+
+    @Param({"1", "100"})
+    public int changes;
+
+    private ChineseNameService service;
+    private Map<String, ChineseNameService.FolderAnnotation> full;
+    private Map<String, ChineseNameService.FolderAnnotation> delta;
+    private boolean hide;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        service = AnnotationData.service(size);
+        full = new HashMap<>(service.getAnnotations());
+        delta = new HashMap<>();
+        for (int i = 0; i < changes; i++) {
+            delta.put(AnnotationData.path(i * (size / changes)), null);
+        }
+    }
+
+    private void flip() {
+        hide = !hide;
+        delta.replaceAll((path, old) -> new ChineseNameService.FolderAnnotation("改" + path.length(), hide));
+    }
+
+    /**
+     * Commits only the edited entries, as the settings panel does.
+     */
+    @Benchmark
+    public void applyDelta() {
+        flip();
+        service.update(map -> map.putAll(delta));
+    }
+
+    /**
+     * Rebuilds the whole map with the same edits, the cost of a non-incremental apply.
+     */
+    @Benchmark
+    public void applyFullReplace() {
+        flip();
+        full.putAll(delta);
+        service.replaceAnnotations(full);
+    }
+}
@@ -1,20 +1,28 @@
 package com.zeng.chineseannotator.action;
 
 import com.intellij.openapi.actionSystem.*;
-import com.intellij.openapi.application.ReadAction;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.vfs.VirtualFile;
-import com.intellij.psi.PsiDirectory;
-import com.intellij.psi.PsiManager;
+import com.intellij.psi.PsiFileSystemItem;
+import com.zeng.chineseannotator.service.AnnotationSnapshot;
 import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
 import com.zeng.chineseannotator.ui.AnnotationDialog;
+import com.zeng.chineseannotator.ui.BatchAnnotationDialog;
 
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
 /**
- * Action to add Chinese annotation to a selected folder.
+ * Action to add Chinese annotation to a selected folder or file.
+ * With several items selected, all of them are edited in one grid, written in one update and refreshed together.
  */
 public class AddAnnotationAction extends AnAction implements DumbAware {
 
@@ -30,22 +38,27 @@ public class AddAnnotationAction extends AnAction implements DumbAware {
         Project project = e.getProject();
         if (project == null) return;
 
-        VirtualFile folder = getSelectedVirtualFolder(e);
-        if (folder == null) return;
+        List<VirtualFile> selected = getSelectedFiles(e);
+        if (selected.size() > 1) {
+            annotateBatch(project, selected);
+            return;
+        }
 
-        PsiDirectory directory = ReadAction.compute(() -> PsiManager.getInstance(project).findDirectory(folder));
-        if (directory == null) return;
+        VirtualFile folder = getSelectedFile(e);
+        if (folder == null || !folder.isInLocalFileSystem()) return;
 
         String folderPath = folder.getPath();
-        String folderName = directory.getName();
+        String folderName = folder.getName();
 
         ChineseNameService service = ChineseNameService.getInstance(project);
-        ChineseNameService.FolderAnnotation existingAnnotation = service.getAnnotation(folderPath);
+        // Only the personal annotation is edited here; clearing it cannot remove a marker or shared one
+        ChineseNameService.FolderAnnotation existingAnnotation = service.getSnapshot().get(folderPath);
 
         String existingChineseName = existingAnnotation != null ? existingAnnotation.chineseName : "";
         boolean hideOriginal = existingAnnotation != null ? existingAnnotation.hideOriginalName : service.defaultHideOriginalOnAdd;
 
-        AnnotationDialog dialog = new AnnotationDialog(project, folderName, existingChineseName, hideOriginal);
+        AnnotationDialog dialog = new AnnotationDialog(project, folderName, existingChineseName, hideOriginal,
+                describeInheritedAnnotation(service, folderPath));
         if (dialog.showAndGet()) {
             String chineseName = dialog.getChineseName();
             boolean hide = dialog.isHideOriginalName();
@@ -56,9 +69,61 @@ public class AddAnnotationAction extends AnAction implements DumbAware {
                 service.addAnnotation(folderPath, chineseName, hide);
             }
 
-            // Refresh the project view
-            com.intellij.ide.projectView.ProjectView.getInstance(project).refresh();
+            // Refresh only the edited node
+            ProjectViewRefresher.getInstance(project).refreshFolder(folder);
+        }
+    }
+
+    private void annotateBatch(Project project, List<VirtualFile> files) {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        List<BatchAnnotationDialog.Row> rows = new ArrayList<>(files.size());
+        AnnotationSnapshot personal = service.getSnapshot();
+        for (VirtualFile file : files) {
+            ChineseNameService.FolderAnnotation existing = personal.get(file.getPath());
+            rows.add(new BatchAnnotationDialog.Row(file.getPath(), file.getName(),
+                    existing != null ? existing.chineseName : "",
+                    existing != null ? existing.hideOriginalName : service.defaultHideOriginalOnAdd));
+        }
+
+        BatchAnnotationDialog dialog = new BatchAnnotationDialog(project, rows);
+        if (!dialog.showAndGet()) return;
+        List<BatchAnnotationDialog.Row> modified = dialog.getModifiedRows();
+        if (modified.isEmpty()) return;
+
+        // One snapshot swap and one save for the whole batch
+        service.update(map -> {
+            for (BatchAnnotationDialog.Row row : modified) {
+                if (row.chineseName.isEmpty()) {
+                    map.remove(row.path);
+                } else {
+                    map.put(row.path, new ChineseNameService.FolderAnnotation(row.chineseName, row.hideOriginalName));
+                }
+            }
+        });
+
+        Set<String> modifiedPaths = new HashSet<>();
+        for (BatchAnnotationDialog.Row row : modified) {
+            modifiedPaths.add(row.path);
         }
+        List<VirtualFile> changed = new ArrayList<>(modified.size());
+        for (VirtualFile file : files) {
+            if (modifiedPaths.contains(file.getPath())) changed.add(file);
+        }
+        // One pass over the edited nodes only
+        ProjectViewRefresher.getInstance(project).refreshFolders(changed);
+    }
+
+    /**
+     * Note about a marker or shared annotation the folder shows without a personal one, or null if there is none.
+     */
+    @Nullable
+    private static String describeInheritedAnnotation(ChineseNameService service, String folderPath) {
+        String sourceFile = service.getAnnotationSourceFileName(folderPath);
+        if (sourceFile == null) return null;
+        ChineseNameService.FolderAnnotation inherited = service.getAnnotation(folderPath);
+        if (inherited == null) return null;
+        return "Shown as \"" + inherited.chineseName + "\" from " + sourceFile
+                + ", which is edited in that file. A name entered here takes precedence over it.";
     }
 
     @Override
@@ -66,30 +131,46 @@ public class AddAnnotationAction extends AnAction implements DumbAware {
         Project project = e.getProject();
         boolean enabled = false;
         if (project != null) {
-            VirtualFile folder = getSelectedVirtualFolder(e);
-            enabled = folder != null && folder.isDirectory();
+            VirtualFile file = getSelectedFile(e);
+            enabled = file != null && file.isInLocalFileSystem() || getSelectedFiles(e).size() > 1;
         }
-        // Always visible so users can locate it in Tools menu; enabled only when a directory is selected
+        // Always visible so users can locate it in Tools menu; enabled only when a folder or file is selected
         e.getPresentation().setVisible(true);
         e.getPresentation().setEnabled(enabled);
     }
 
+    /**
+     * All selected local folders and files, in selection order; empty if the selection is not an array.
+     */
+    @NotNull
+    private List<VirtualFile> getSelectedFiles(@NotNull AnActionEvent e) {
+        VirtualFile[] array = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
+        if (array == null) return Collections.emptyList();
+        List<VirtualFile> result = new ArrayList<>(array.length);
+        for (VirtualFile file : array) {
+            if (file != null && file.isInLocalFileSystem()) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
     @Nullable
-    private VirtualFile getSelectedVirtualFolder(@NotNull AnActionEvent e) {
+    private VirtualFile getSelectedFile(@NotNull AnActionEvent e) {
         // Prefer array (Project View supplies arrays)
         VirtualFile[] array = e.getData(CommonDataKeys.VIRTUAL_FILE_ARRAY);
-        if (array != null && array.length == 1 && array[0] != null && array[0].isDirectory()) {
+        if (array != null && array.length == 1 && array[0] != null) {
             return array[0];
         }
         // Fallback to single VIRTUAL_FILE
         VirtualFile single = e.getData(CommonDataKeys.VIRTUAL_FILE);
-        if (single != null && single.isDirectory()) {
+        if (single != null) {
             return single;
         }
         // Fallback to PSI element
         Object psi = e.getData(CommonDataKeys.PSI_ELEMENT);
-        if (psi instanceof PsiDirectory) {
-            return ((PsiDirectory) psi).getVirtualFile();
+        if (psi instanceof PsiFileSystemItem) {
+            return ((PsiFileSystemItem) psi).getVirtualFile();
         }
         return null;
     }
@@ -0,0 +1,103 @@
+package com.zeng.chineseannotator.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zeng.chineseannotator.io.AnnotationFileFormat;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.DictionaryScanner;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
+import com.zeng.chineseannotator.ui.AnnotatorNotifications;
+import com.zeng.chineseannotator.ui.AutoAnnotateReviewDialog;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Proposes annotations for every folder whose name appears in a user-supplied dictionary.
+ * The dictionary uses the import formats with the folder name in the path column, e.g. {@code dao,数据访问}.
+ * The project is scanned in the background; accepted proposals are applied as one batch.
+ */
+public class AutoAnnotateAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) return;
+
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFileDescriptor()
+                .withFileFilter(file -> {
+                    String extension = file.getExtension();
+                    return extension != null && (extension.equalsIgnoreCase("csv") || extension.equalsIgnoreCase("json"));
+                })
+                .withTitle("Choose Folder Name Dictionary");
+        VirtualFile file = FileChooser.chooseFile(descriptor, project, null);
+        if (file == null) return;
+
+        Path path = file.toNioPath();
+        AnnotationFileFormat format = AnnotationFileFormat.forFileName(file.getName());
+
+        new Task.Backgroundable(project, "Auto-annotating from dictionary", true) {
+            private List<DictionaryScanner.Proposal> proposals = List.of();
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(true);
+                indicator.setText("Reading dictionary");
+                Map<String, ChineseNameService.FolderAnnotation> dictionary = new HashMap<>();
+                try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+                    format.read(reader, (name, chineseName, hideOriginal) -> {
+                        if (name == null || chineseName == null || name.isBlank() || chineseName.isBlank()) return;
+                        dictionary.put(name.trim(), new ChineseNameService.FolderAnnotation(chineseName.trim(), hideOriginal));
+                    }, indicator);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to read dictionary " + path.getFileName() + ": " + ex.getMessage(), ex);
+                }
+                if (dictionary.isEmpty()) return;
+
+                indicator.setText("Scanning project folders");
+                proposals = new DictionaryScanner(project, dictionary, indicator).scan();
+            }
+
+            @Override
+            public void onSuccess() {
+                if (proposals.isEmpty()) {
+                    AnnotatorNotifications.info(project, "No unannotated folders matched the dictionary");
+                    return;
+                }
+                AutoAnnotateReviewDialog dialog = new AutoAnnotateReviewDialog(project, proposals);
+                if (!dialog.showAndGet()) return;
+
+                List<DictionaryScanner.Proposal> accepted = dialog.getAcceptedProposals();
+                if (accepted.isEmpty()) return;
+                ChineseNameService.getInstance(project).update(map -> {
+                    for (DictionaryScanner.Proposal proposal : accepted) {
+                        map.put(proposal.folderPath, new ChineseNameService.FolderAnnotation(proposal.chineseName, proposal.hideOriginalName));
+                    }
+                });
+                ProjectViewRefresher.getInstance(project).refreshVisibleAnnotated();
+                AnnotatorNotifications.info(project, "Added " + accepted.size() + " annotations");
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                AnnotatorNotifications.error(project, error.getMessage());
+            }
+        }.queue();
+    }
+}
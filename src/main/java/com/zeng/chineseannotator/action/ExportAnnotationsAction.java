@@ -0,0 +1,72 @@
+package com.zeng.chineseannotator.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.zeng.chineseannotator.io.AnnotationFileFormat;
+import com.zeng.chineseannotator.io.AnnotationPathResolver;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.ui.AnnotatorNotifications;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Exports all annotations to a CSV or JSON file, streamed from the current snapshot on a background task.
+ * Paths inside the project are written as {@code $PROJECT_DIR$/...} so the file can be shared.
+ */
+public class ExportAnnotationsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) return;
+
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Chinese Annotations",
+                "Save annotations as CSV or JSON", "csv", "json");
+        VirtualFileWrapper wrapper = FileChooserFactory.getInstance()
+                .createSaveFileDialog(descriptor, project)
+                .save((Path) null, "chinese-annotations.csv");
+        if (wrapper == null) return;
+
+        Path path = wrapper.getFile().toPath();
+        AnnotationFileFormat format = AnnotationFileFormat.forFileName(path.getFileName().toString());
+        AnnotationPathResolver resolver = new AnnotationPathResolver(project.getBasePath());
+        // Immutable snapshot: safe to stream from the background thread
+        Map<String, ChineseNameService.FolderAnnotation> annotations = ChineseNameService.getInstance(project).getAnnotations();
+
+        new Task.Backgroundable(project, "Exporting Chinese annotations", true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                try (Writer writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+                    format.write(writer, annotations, resolver::toPortable, indicator);
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to export " + path.getFileName() + ": " + ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                AnnotatorNotifications.info(project, "Exported " + annotations.size() + " annotations to " + path);
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                AnnotatorNotifications.error(project, error.getMessage());
+            }
+        }.queue();
+    }
+}
@@ -1,11 +1,11 @@
 package com.zeng.chineseannotator.action;
 
-import com.intellij.ide.projectView.ProjectView;
 import com.intellij.openapi.actionSystem.AnAction;
 import com.intellij.openapi.actionSystem.AnActionEvent;
 import com.intellij.openapi.project.DumbAware;
 import com.intellij.openapi.project.Project;
 import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
 
 import org.jetbrains.annotations.NotNull;
 
@@ -21,9 +21,9 @@ public class HoldShowOriginalAction extends AnAction implements DumbAware {
         ChineseNameService service = ChineseNameService.getInstance(project);
         if (!service.holdToShowOriginalEnabled) return;
 
-        // Flip preview flag
-        service.previewOriginalActive = !service.previewOriginalActive;
-        ProjectView.getInstance(project).refresh();
+        // Flip preview flag; quick repeated presses are merged into one refresh, or none if they cancel out
+        service.setPreviewOriginalActive(!service.previewOriginalActive);
+        ProjectViewRefresher.getInstance(project).refreshPreviewToggled();
     }
 }
 
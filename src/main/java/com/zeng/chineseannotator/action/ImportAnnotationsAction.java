@@ -0,0 +1,130 @@
+package com.zeng.chineseannotator.action;
+
+import com.intellij.openapi.actionSystem.AnAction;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.fileChooser.FileChooser;
+import com.intellij.openapi.fileChooser.FileChooserDescriptor;
+import com.intellij.openapi.fileChooser.FileChooserDescriptorFactory;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zeng.chineseannotator.io.AnnotationFileFormat;
+import com.zeng.chineseannotator.io.AnnotationPathResolver;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
+import com.zeng.chineseannotator.ui.AnnotatorNotifications;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Imports annotations from a CSV or JSON file.
+ * The file is streamed and validated on a cancellable background task; the result is applied as one batch
+ * followed by a single refresh.
+ */
+public class ImportAnnotationsAction extends AnAction implements DumbAware {
+
+    @Override
+    public void actionPerformed(@NotNull AnActionEvent e) {
+        Project project = e.getProject();
+        if (project == null) return;
+
+        FileChooserDescriptor descriptor = FileChooserDescriptorFactory.createSingleFileDescriptor()
+                .withFileFilter(file -> {
+                    String extension = file.getExtension();
+                    return extension != null && (extension.equalsIgnoreCase("csv") || extension.equalsIgnoreCase("json"));
+                })
+                .withTitle("Import Chinese Annotations");
+        VirtualFile file = FileChooser.chooseFile(descriptor, project, null);
+        if (file == null) return;
+
+        Path path = file.toNioPath();
+        AnnotationFileFormat format = AnnotationFileFormat.forFileName(file.getName());
+        AnnotationPathResolver resolver = new AnnotationPathResolver(project.getBasePath());
+
+        new Task.Backgroundable(project, "Importing Chinese annotations", true) {
+            private final Map<String, ChineseNameService.FolderAnnotation> imported = new HashMap<>();
+            private int skipped;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                indicator.setIndeterminate(false);
+                indicator.setText("Reading " + path.getFileName());
+                try {
+                    long size = Math.max(1, Files.size(path));
+                    try (CountingInputStream counting = new CountingInputStream(Files.newInputStream(path));
+                         BufferedReader reader = new BufferedReader(new InputStreamReader(counting, StandardCharsets.UTF_8))) {
+                        format.read(reader, (rawPath, chineseName, hideOriginal) -> {
+                            String folderPath = resolver.resolve(rawPath);
+                            String name = chineseName != null ? chineseName.trim() : "";
+                            if (folderPath == null || name.isEmpty()) {
+                                skipped++;
+                                return;
+                            }
+                            // Later records win, like repeated adds in the dialog
+                            imported.put(folderPath, new ChineseNameService.FolderAnnotation(name, hideOriginal));
+                            indicator.setFraction((double) counting.count / size);
+                        }, indicator);
+                    }
+                } catch (IOException ex) {
+                    throw new RuntimeException("Failed to import " + path.getFileName() + ": " + ex.getMessage(), ex);
+                }
+            }
+
+            @Override
+            public void onSuccess() {
+                if (imported.isEmpty()) {
+                    AnnotatorNotifications.info(project, "No annotations imported (" + skipped + " invalid records skipped)");
+                    return;
+                }
+                ChineseNameService.getInstance(project).update(map -> map.putAll(imported));
+                ProjectViewRefresher.getInstance(project).refreshVisibleAnnotated();
+                AnnotatorNotifications.info(project, String.format(Locale.ROOT,
+                        "Imported %d annotations (%d invalid records skipped)", imported.size(), skipped));
+            }
+
+            @Override
+            public void onThrowable(@NotNull Throwable error) {
+                AnnotatorNotifications.error(project, error.getMessage());
+            }
+        }.queue();
+    }
+
+    /**
+     * Tracks how many bytes were consumed, for progress reporting.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.zeng.chineseannotator.diagnostics;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.time.Instant;
+import java.util.Map;
+
+/**
+ * Call counts and latency histograms for the plugin's hot paths, shown in the diagnostics tool window.
+ * <p>
+ * Usage is {@code long start = start(); try { ... } finally { stop(probe, start); }}. While disabled,
+ * {@link #start()} is one volatile read and {@link #stop} a single branch, so the probes can stay in place.
+ * Enabled from the tool window, or at startup with {@code -Dchinese.annotator.metrics=true}.
+ */
+public final class AnnotatorMetrics {
+
+    /**
+     * Instrumented code paths.
+     */
+    public enum Probe {
+        DECORATE("ProjectViewNodeDecorator.decorate"),
+        TREE_MODIFY("TreeStructureProvider.modify"),
+        LOOKUP("ChineseNameService.resolveAnnotation"),
+        LOAD_STATE("ChineseNameService.loadState"),
+        GET_STATE("ChineseNameService.getState"),
+        SAVE_COMPACT("ChineseNameService.save"),
+        REFRESH("ProjectViewRefresher");
+
+        private final String label;
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        Probe(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public LatencyHistogram.Snapshot snapshot() {
+            return histogram.snapshot();
+        }
+    }
+
+    private static volatile boolean enabled = Boolean.getBoolean("chinese.annotator.metrics");
+
+    private AnnotatorMetrics() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean value) {
+        enabled = value;
+    }
+
+    /**
+     * Start timestamp, or 0 when collection is disabled.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void stop(@NotNull Probe probe, long start) {
+        if (start != 0L) {
+            probe.histogram.record(System.nanoTime() - start);
+        }
+    }
+
+    public static void reset() {
+        for (Probe probe : Probe.values()) {
+            probe.histogram.reset();
+        }
+    }
+
+    /**
+     * All probes as a JSON document; {@code counters} adds plain counters such as cache hits.
+     */
+    @NotNull
+    public static String toJson(@NotNull Map<String, Long> counters) {
+        StringBuilder json = new StringBuilder(1024);
+        json.append("{\n  \"timestamp\": \"").append(Instant.now()).append("\",\n");
+        json.append("  \"enabled\": ").append(enabled).append(",\n");
+        json.append("  \"probes\": [");
+        Probe[] probes = Probe.values();
+        for (int i = 0; i < probes.length; i++) {
+            LatencyHistogram.Snapshot snapshot = probes[i].snapshot();
+            json.append(i == 0 ? "\n" : ",\n");
+            json.append("    {\"name\": \"").append(probes[i].label).append('"')
+                    .append(", \"count\": ").append(snapshot.count)
+                    .append(", \"totalNanos\": ").append(snapshot.totalNanos)
+                    .append(", \"meanNanos\": ").append(snapshot.meanNanos())
+                    .append(", \"p50Nanos\": ").append(snapshot.p50Nanos)
+                    .append(", \"p90Nanos\": ").append(snapshot.p90Nanos)
+                    .append(", \"p99Nanos\": ").append(snapshot.p99Nanos)
+                    .append(", \"p999Nanos\": ").append(snapshot.p999Nanos)
+                    .append(", \"maxNanos\": ").append(snapshot.maxNanos).append('}');
+        }
+        json.append("\n  ],\n  \"counters\": {");
+        boolean first = true;
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            json.append(first ? "\n" : ",\n");
+            json.append("    \"").append(counter.getKey()).append("\": ").append(counter.getValue());
+            first = false;
+        }
+        json.append("\n  }\n}\n");
+        return json.toString();
+    }
+}
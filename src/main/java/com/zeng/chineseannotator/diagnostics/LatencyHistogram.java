@@ -0,0 +1,113 @@
+package com.zeng.chineseannotator.diagnostics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free, allocation-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * <p>
+ * Every power of two is split into 8 linear sub-buckets, so a recorded value is reported with at most
+ * 12.5% error over the whole range from nanoseconds to minutes, in a fixed table of 512 counters.
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = 64 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Long::max, 0);
+
+    public void record(long nanos) {
+        if (nanos < 0) nanos = 0;
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+    }
+
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Largest value that falls into the bucket, so percentiles never understate a latency.
+     */
+    static long highestValue(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        int subBucket = bucket % SUB_BUCKETS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+    }
+
+    /**
+     * Point-in-time copy; concurrent records may or may not be included.
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+            recorded += copy[i];
+        }
+        long max = maxNanos.get();
+        return new Snapshot(recorded, totalNanos.sum(), max,
+                percentile(copy, recorded, max, 0.50),
+                percentile(copy, recorded, max, 0.90),
+                percentile(copy, recorded, max, 0.99),
+                percentile(copy, recorded, max, 0.999));
+    }
+
+    private static long percentile(long[] counts, long total, long max, double fraction) {
+        if (total == 0) return 0;
+        long target = Math.max(1, (long) Math.ceil(total * fraction));
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= target) return Math.min(highestValue(i), max);
+        }
+        return max;
+    }
+
+    /**
+     * Summary of a histogram; all times in nanoseconds.
+     */
+    public static final class Snapshot {
+        public final long count;
+        public final long totalNanos;
+        public final long maxNanos;
+        public final long p50Nanos;
+        public final long p90Nanos;
+        public final long p99Nanos;
+        public final long p999Nanos;
+
+        Snapshot(long count, long totalNanos, long maxNanos, long p50Nanos, long p90Nanos, long p99Nanos, long p999Nanos) {
+            this.count = count;
+            this.totalNanos = totalNanos;
+            this.maxNanos = maxNanos;
+            this.p50Nanos = p50Nanos;
+            this.p90Nanos = p90Nanos;
+            this.p99Nanos = p99Nanos;
+            this.p999Nanos = p999Nanos;
+        }
+
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.zeng.chineseannotator.index;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.indexing.FileBasedIndex;
+import com.intellij.util.indexing.FileContent;
+import com.intellij.util.indexing.ID;
+import com.intellij.util.indexing.SingleEntryFileBasedIndexExtension;
+import com.intellij.util.indexing.SingleEntryIndexer;
+import com.intellij.util.io.DataExternalizer;
+import com.intellij.util.io.IOUtil;
+import com.zeng.chineseannotator.io.MarkerFile;
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Indexes {@value MarkerFile#FILE_NAME} marker files: one parsed annotation per marker.
+ * <p>
+ * The platform keeps the index up to date as markers are added, edited or removed, so the plugin never walks
+ * directories itself; markers are found through the file name index and read back with {@link #read}.
+ */
+public class AnnotationMarkerIndex extends SingleEntryFileBasedIndexExtension<ChineseNameService.FolderAnnotation> {
+
+    public static final ID<Integer, ChineseNameService.FolderAnnotation> NAME = ID.create("com.zeng.chineseannotator.marker");
+
+    @NotNull
+    @Override
+    public ID<Integer, ChineseNameService.FolderAnnotation> getName() {
+        return NAME;
+    }
+
+    @NotNull
+    @Override
+    public SingleEntryIndexer<ChineseNameService.FolderAnnotation> getIndexer() {
+        return new SingleEntryIndexer<>(false) {
+            @Nullable
+            @Override
+            protected ChineseNameService.FolderAnnotation computeValue(@NotNull FileContent inputData) {
+                return MarkerFile.parse(inputData.getContentAsText());
+            }
+        };
+    }
+
+    @NotNull
+    @Override
+    public DataExternalizer<ChineseNameService.FolderAnnotation> getValueExternalizer() {
+        return new DataExternalizer<>() {
+            @Override
+            public void save(@NotNull DataOutput out, ChineseNameService.FolderAnnotation value) throws IOException {
+                IOUtil.writeUTF(out, value.chineseName);
+                out.writeBoolean(value.hideOriginalName);
+            }
+
+            @Override
+            public ChineseNameService.FolderAnnotation read(@NotNull DataInput in) throws IOException {
+                return AnnotationInterner.intern(new ChineseNameService.FolderAnnotation(IOUtil.readUTF(in), in.readBoolean()));
+            }
+        };
+    }
+
+    @Override
+    public int getVersion() {
+        return 1;
+    }
+
+    @NotNull
+    @Override
+    public FileBasedIndex.InputFilter getInputFilter() {
+        return file -> MarkerFile.FILE_NAME.equals(file.getName());
+    }
+
+    /**
+     * Indexed annotation of a marker file, or null when it has none; requires a read action in smart mode.
+     */
+    @Nullable
+    public static ChineseNameService.FolderAnnotation read(@NotNull Project project, @NotNull VirtualFile marker) {
+        Map<Integer, ChineseNameService.FolderAnnotation> data = FileBasedIndex.getInstance().getFileData(NAME, marker, project);
+        return data.isEmpty() ? null : data.values().iterator().next();
+    }
+}
@@ -0,0 +1,197 @@
+package com.zeng.chineseannotator.io;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Streaming CSV and JSON formats for bulk import and export of annotations.
+ * <p>
+ * CSV: {@code path,chineseName,hideOriginal} per line, optional header, RFC 4180 quoting.
+ * JSON: an array of {@code {"path": ..., "chineseName": ..., "hideOriginal": ...}} objects.
+ * Records are handed to the sink one by one, so reading never holds more than one record in memory.
+ */
+public enum AnnotationFileFormat {
+    CSV("csv"),
+    JSON("json");
+
+    private final String extension;
+
+    AnnotationFileFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    @NotNull
+    public static AnnotationFileFormat forFileName(@NotNull String fileName) {
+        return fileName.toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+    }
+
+    /**
+     * Receives parsed records; path and name are as found in the file, validated by the caller.
+     */
+    public interface RecordSink {
+        void accept(String path, String chineseName, boolean hideOriginal);
+    }
+
+    public void read(@NotNull Reader reader, @NotNull RecordSink sink, @NotNull ProgressIndicator indicator) throws IOException {
+        if (this == JSON) {
+            readJson(reader, sink, indicator);
+        } else {
+            readCsv(reader, sink, indicator);
+        }
+    }
+
+    public void write(@NotNull Writer writer, @NotNull Map<String, ChineseNameService.FolderAnnotation> annotations,
+                      @NotNull PathMapper pathMapper, @NotNull ProgressIndicator indicator) throws IOException {
+        int total = Math.max(1, annotations.size());
+        int done = 0;
+        if (this == JSON) {
+            JsonWriter json = new JsonWriter(writer);
+            json.setIndent("  ");
+            json.beginArray();
+            for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
+                indicator.checkCanceled();
+                json.beginObject()
+                        .name("path").value(pathMapper.map(entry.getKey()))
+                        .name("chineseName").value(entry.getValue().chineseName)
+                        .name("hideOriginal").value(entry.getValue().hideOriginalName)
+                        .endObject();
+                indicator.setFraction((double) ++done / total);
+            }
+            json.endArray();
+            json.flush();
+        } else {
+            writer.write("path,chineseName,hideOriginal\n");
+            for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
+                indicator.checkCanceled();
+                writer.write(quoteCsv(pathMapper.map(entry.getKey())));
+                writer.write(',');
+                writer.write(quoteCsv(entry.getValue().chineseName));
+                writer.write(',');
+                writer.write(Boolean.toString(entry.getValue().hideOriginalName));
+                writer.write('\n');
+                indicator.setFraction((double) ++done / total);
+            }
+            writer.flush();
+        }
+    }
+
+    /**
+     * Maps runtime (absolute) paths to the form written to the file.
+     */
+    public interface PathMapper {
+        String map(String path);
+    }
+
+    private static void readJson(Reader reader, RecordSink sink, ProgressIndicator indicator) throws IOException {
+        JsonReader json = new JsonReader(reader);
+        json.beginArray();
+        while (json.hasNext()) {
+            indicator.checkCanceled();
+            String path = null;
+            String chineseName = null;
+            boolean hideOriginal = false;
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "path" -> path = json.nextString();
+                    case "chineseName" -> chineseName = json.nextString();
+                    case "hideOriginal" -> hideOriginal = json.nextBoolean();
+                    default -> json.skipValue();
+                }
+            }
+            json.endObject();
+            sink.accept(path, chineseName, hideOriginal);
+        }
+        json.endArray();
+    }
+
+    private static void readCsv(Reader reader, RecordSink sink, ProgressIndicator indicator) throws IOException {
+        BufferedReader in = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        // Excel writes UTF-8 with a byte order mark, which would otherwise hide the header
+        in.mark(1);
+        if (in.read() != '\uFEFF') in.reset();
+        List<String> fields = new ArrayList<>(3);
+        boolean first = true;
+        while (readCsvRecord(in, fields)) {
+            indicator.checkCanceled();
+            if (first) {
+                first = false;
+                if (!fields.isEmpty() && fields.get(0).equalsIgnoreCase("path")) continue;
+            }
+            if (fields.size() == 1 && fields.get(0).isEmpty()) continue; // blank line
+            String path = fields.get(0);
+            String chineseName = fields.size() > 1 ? fields.get(1) : null;
+            boolean hideOriginal = fields.size() > 2 && Boolean.parseBoolean(fields.get(2).trim());
+            sink.accept(path, chineseName, hideOriginal);
+        }
+    }
+
+    /**
+     * Reads one record, which may span lines inside quotes. Returns false at end of input.
+     */
+    private static boolean readCsvRecord(BufferedReader in, List<String> fields) throws IOException {
+        fields.clear();
+        int c = in.read();
+        if (c == -1) return false;
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == -1) throw new IOException("Unterminated quoted CSV field");
+                if (c == '"') {
+                    in.mark(1);
+                    int next = in.read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        in.reset();
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0) {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == -1) {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+            c = in.read();
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    private static String quoteCsv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
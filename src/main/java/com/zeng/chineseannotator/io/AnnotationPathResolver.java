@@ -0,0 +1,45 @@
+package com.zeng.chineseannotator.io;
+
+import com.zeng.chineseannotator.storage.ProjectPathMacro;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Turns paths found in import files into absolute runtime keys.
+ * Accepts absolute paths, {@code $PROJECT_DIR$/...} and paths relative to the project directory.
+ */
+public final class AnnotationPathResolver {
+
+    @Nullable
+    private final String projectDir;
+
+    public AnnotationPathResolver(@Nullable String projectDir) {
+        this.projectDir = projectDir;
+    }
+
+    /**
+     * Absolute path with '/' separators and no trailing slash, or null if the path is unusable.
+     */
+    @Nullable
+    public String resolve(@Nullable String path) {
+        if (path == null) return null;
+        String normalized = path.trim().replace('\\', '/');
+        while (normalized.length() > 1 && normalized.endsWith("/")) {
+            normalized = normalized.substring(0, normalized.length() - 1);
+        }
+        if (normalized.isEmpty()) return null;
+        normalized = ProjectPathMacro.expand(projectDir, normalized);
+        if (isAbsolute(normalized)) return normalized;
+        if (projectDir == null) return null;
+        return projectDir + "/" + (normalized.startsWith("./") ? normalized.substring(2) : normalized);
+    }
+
+    @NotNull
+    public String toPortable(@NotNull String path) {
+        return ProjectPathMacro.collapse(projectDir, path);
+    }
+
+    private static boolean isAbsolute(String path) {
+        return path.startsWith("/") || (path.length() > 1 && path.charAt(1) == ':' && Character.isLetter(path.charAt(0)));
+    }
+}
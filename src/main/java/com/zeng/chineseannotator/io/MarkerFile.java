@@ -0,0 +1,49 @@
+package com.zeng.chineseannotator.io;
+
+import com.intellij.openapi.util.text.StringUtil;
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Per-directory marker file that annotates the directory containing it, so the annotation moves and merges
+ * together with the code.
+ * <p>
+ * Plain UTF-8 text: the first non-empty line that does not start with {@code #} is the Chinese name, and a later
+ * line reading {@value #HIDE_ORIGINAL} hides the original folder name:
+ * <pre>
+ * # 订单相关代码
+ * 订单模块
+ * hide-original
+ * </pre>
+ */
+public final class MarkerFile {
+
+    public static final String FILE_NAME = ".cnname";
+
+    static final String HIDE_ORIGINAL = "hide-original";
+
+    private MarkerFile() {
+    }
+
+    /**
+     * Annotation described by the marker text, or null when it has no name.
+     */
+    @Nullable
+    public static ChineseNameService.FolderAnnotation parse(@NotNull CharSequence text) {
+        String chineseName = null;
+        boolean hideOriginal = false;
+        for (String rawLine : StringUtil.splitByLines(text.toString())) {
+            String line = rawLine.trim();
+            if (line.isEmpty() || line.startsWith("#")) continue;
+            if (chineseName == null) {
+                chineseName = line;
+            } else if (HIDE_ORIGINAL.equalsIgnoreCase(line)) {
+                hideOriginal = true;
+            }
+        }
+        if (chineseName == null) return null;
+        return AnnotationInterner.intern(new ChineseNameService.FolderAnnotation(chineseName, hideOriginal));
+    }
+}
@@ -0,0 +1,129 @@
+package com.zeng.chineseannotator.io;
+
+import com.intellij.openapi.progress.EmptyProgressIndicator;
+import com.intellij.util.io.ByteBufferUtil;
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Team-shared annotation file in the project root, meant to be committed to VCS.
+ * <p>
+ * Same CSV records as {@link AnnotationFileFormat#CSV}, so an export can be committed as is. Paths may be
+ * relative to the project directory, {@code $PROJECT_DIR$/...} or absolute; later records win.
+ * Files of {@link #MAP_THRESHOLD_BYTES} and more are read through a memory mapping, which is released right
+ * after parsing so that VCS can replace the file again (Windows refuses to delete a mapped file).
+ */
+public final class SharedAnnotationFile {
+
+    public static final String FILE_NAME = ".folder-annotations";
+
+    static final int MAP_THRESHOLD_BYTES = 256 * 1024;
+
+    private SharedAnnotationFile() {
+    }
+
+    /**
+     * Parsed file content; the checksum lets a reload skip files whose bytes did not change.
+     */
+    public static final class Contents {
+        public static final Contents EMPTY = new Contents(0, Collections.emptyMap());
+
+        public final long checksum;
+        /**
+         * Absolute path to annotation.
+         */
+        public final Map<String, ChineseNameService.FolderAnnotation> annotations;
+
+        public Contents(long checksum, @NotNull Map<String, ChineseNameService.FolderAnnotation> annotations) {
+            this.checksum = checksum;
+            this.annotations = annotations;
+        }
+    }
+
+    /**
+     * Reads the file, or returns {@code previous} itself when its bytes have the same checksum.
+     * Records without a usable path or name are skipped.
+     */
+    @NotNull
+    public static Contents read(@NotNull Path file, @NotNull AnnotationPathResolver resolver,
+                                @Nullable Contents previous) throws IOException {
+        ByteBuffer buffer;
+        boolean mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            mapped = size >= MAP_THRESHOLD_BYTES;
+            buffer = mapped ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : ByteBuffer.wrap(Files.readAllBytes(file));
+        }
+        try {
+            CRC32C crc = new CRC32C();
+            crc.update(buffer.duplicate());
+            long checksum = crc.getValue();
+            if (previous != null && previous.checksum == checksum) return previous;
+            return new Contents(checksum, parse(buffer.duplicate(), resolver));
+        } finally {
+            if (mapped) ByteBufferUtil.cleanBuffer(buffer);
+        }
+    }
+
+    private static Map<String, ChineseNameService.FolderAnnotation> parse(ByteBuffer buffer, AnnotationPathResolver resolver)
+            throws IOException {
+        Map<String, ChineseNameService.FolderAnnotation> result = new HashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteBufferInputStream(buffer), StandardCharsets.UTF_8))) {
+            AnnotationFileFormat.CSV.read(reader, (rawPath, chineseName, hideOriginal) -> {
+                String path = resolver.resolve(rawPath);
+                String name = chineseName != null ? chineseName.trim() : "";
+                if (path != null && !name.isEmpty()) {
+                    result.put(path, AnnotationInterner.intern(new ChineseNameService.FolderAnnotation(name, hideOriginal)));
+                }
+            }, new EmptyProgressIndicator());
+        }
+        return result;
+    }
+
+    /**
+     * Streams a buffer through the usual reader stack without copying it to the heap first.
+     */
+    private static final class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) return 0;
+            if (!buffer.hasRemaining()) return -1;
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.zeng.chineseannotator.listener;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps annotation keys in sync with folder and file renames and moves. Annotations of deleted folders are
+ * kept for the stale annotation sweep, since a VCS checkout may bring the folders back.
+ * Events for unannotated files, and for folders with nothing annotated at or below them, are dropped with
+ * one id lookup each; the rest of a batch is applied to the service as a single snapshot.
+ * Folders that appear are reported as well, so annotations the VFS did not know yet get resolved.
+ */
+public class AnnotationVfsListener implements BulkFileListener {
+
+    private final Project project;
+
+    public AnnotationVfsListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        if (project.isDisposed()) return;
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        if (hasDirectoryMoves(events)) {
+            service.onDirectoriesMoved();
+        }
+        service.onFilesAppeared(appearedPaths(events));
+        if (service.getSnapshot().isEmpty()) return;
+
+        List<ChineseNameService.PathChange> changes = null;
+        List<String> deleted = null;
+        for (VFileEvent event : events) {
+            if (event instanceof VFileDeleteEvent) {
+                if (isAnnotatedTree(service, ((VFileDeleteEvent) event).getFile())) {
+                    if (deleted == null) deleted = new ArrayList<>();
+                    deleted.add(event.getPath());
+                }
+                continue;
+            }
+            ChineseNameService.PathChange change = toPathChange(service, event);
+            if (change != null) {
+                if (changes == null) changes = new ArrayList<>();
+                changes.add(change);
+            }
+        }
+        if (deleted != null) {
+            service.onFoldersDeleted(deleted);
+        }
+        if (changes != null) {
+            service.applyPathChanges(changes);
+        }
+    }
+
+    @Nullable
+    private static ChineseNameService.PathChange toPathChange(ChineseNameService service, VFileEvent event) {
+        if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent move = (VFileMoveEvent) event;
+            if (!isAnnotatedTree(service, move.getFile())) return null;
+            return new ChineseNameService.PathChange(move.getOldPath(), move.getNewPath());
+        }
+        if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent property = (VFilePropertyChangeEvent) event;
+            if (!property.isRename() || !isAnnotatedTree(service, property.getFile())) return null;
+            return new ChineseNameService.PathChange(property.getOldPath(), property.getNewPath());
+        }
+        return null;
+    }
+
+    private static List<String> appearedPaths(List<? extends VFileEvent> events) {
+        List<String> result = new ArrayList<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFileCreateEvent) {
+                result.add(event.getPath());
+            } else if (event instanceof VFileCopyEvent) {
+                VFileCopyEvent copy = (VFileCopyEvent) event;
+                result.add(copy.getNewParent().getPath() + "/" + copy.getNewChildName());
+            } else if (event instanceof VFileMoveEvent) {
+                result.add(((VFileMoveEvent) event).getNewPath());
+            } else if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()) {
+                result.add(((VFilePropertyChangeEvent) event).getNewPath());
+            }
+        }
+        return result;
+    }
+
+    private static boolean hasDirectoryMoves(List<? extends VFileEvent> events) {
+        for (VFileEvent event : events) {
+            if (event instanceof VFileMoveEvent && ((VFileMoveEvent) event).getFile().isDirectory()) return true;
+            if (event instanceof VFilePropertyChangeEvent && ((VFilePropertyChangeEvent) event).isRename()
+                    && ((VFilePropertyChangeEvent) event).getFile().isDirectory()) return true;
+        }
+        return false;
+    }
+
+    private static boolean isAnnotatedTree(ChineseNameService service, VirtualFile file) {
+        // Ids survive rename, move and delete, so the current index still answers for the old location
+        return file.isDirectory() ? service.hasAnnotationsAtOrBelow(file) : service.getAnnotation(file) != null;
+    }
+}
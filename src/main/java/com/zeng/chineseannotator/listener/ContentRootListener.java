@@ -0,0 +1,26 @@
+package com.zeng.chineseannotator.listener;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootEvent;
+import com.intellij.openapi.roots.ModuleRootListener;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Lets template results follow module content roots. Roots events also fire for library and SDK changes,
+ * so the service only drops its cache when the set of content roots really changed.
+ */
+public class ContentRootListener implements ModuleRootListener {
+
+    private final Project project;
+
+    public ContentRootListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void rootsChanged(@NotNull ModuleRootEvent event) {
+        if (project.isDisposed()) return;
+        ChineseNameService.getInstance(project).onContentRootsChanged();
+    }
+}
@@ -0,0 +1,101 @@
+package com.zeng.chineseannotator.listener;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCopyEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileDeleteEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.intellij.util.PathUtil;
+import com.zeng.chineseannotator.io.MarkerFile;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.MarkerAnnotations;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tells {@link MarkerAnnotations} which directories' markers were created, edited, deleted, renamed or moved.
+ * Renaming, moving or deleting a directory at or above a known marker re-keys or drops the markers by path
+ * prefix; other directories carry no known markers and are ignored. Directories created or copied with content
+ * in the project may bring markers along, so only their subtrees are looked up.
+ */
+public class MarkerFileListener implements BulkFileListener {
+
+    private final Project project;
+
+    public MarkerFileListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        if (project.isDisposed()) return;
+        MarkerAnnotations markers = MarkerAnnotations.getInstance(project);
+        List<ChineseNameService.PathChange> moves = new ArrayList<>();
+        Set<String> subtrees = new HashSet<>();
+        Set<String> directories = new HashSet<>();
+        for (VFileEvent event : events) {
+            if (event instanceof VFilePropertyChangeEvent) {
+                VFilePropertyChangeEvent property = (VFilePropertyChangeEvent) event;
+                if (!property.isRename()) continue;
+                if (property.getFile().isDirectory()) {
+                    if (markers.hasMarkersAtOrBelow(property.getOldPath())) {
+                        moves.add(new ChineseNameService.PathChange(property.getOldPath(), property.getNewPath()));
+                    }
+                } else if (MarkerFile.FILE_NAME.equals(property.getOldValue()) || MarkerFile.FILE_NAME.equals(property.getNewValue())) {
+                    directories.add(PathUtil.getParentPath(property.getNewPath()));
+                }
+            } else if (event instanceof VFileCreateEvent) {
+                VFileCreateEvent create = (VFileCreateEvent) event;
+                if (create.isDirectory()) {
+                    // e.g. brought in by a VCS update; a directory made in the IDE starts out empty
+                    if (!create.isEmptyDirectory() && isInContent(create.getParent())) subtrees.add(create.getPath());
+                } else if (MarkerFile.FILE_NAME.equals(create.getChildName())) {
+                    directories.add(create.getParent().getPath());
+                }
+            } else if (event instanceof VFileCopyEvent) {
+                VFileCopyEvent copy = (VFileCopyEvent) event;
+                if (copy.getFile().isDirectory()) {
+                    if (isInContent(copy.getNewParent())) {
+                        subtrees.add(copy.getNewParent().getPath() + "/" + copy.getNewChildName());
+                    }
+                } else if (MarkerFile.FILE_NAME.equals(copy.getNewChildName())) {
+                    directories.add(copy.getNewParent().getPath());
+                }
+            } else {
+                VirtualFile file = event.getFile();
+                if (file == null) continue;
+                if (file.isDirectory()) {
+                    // Moving or deleting a directory takes the markers below it along
+                    if (event instanceof VFileMoveEvent) {
+                        VFileMoveEvent move = (VFileMoveEvent) event;
+                        if (markers.hasMarkersAtOrBelow(move.getOldPath())) {
+                            moves.add(new ChineseNameService.PathChange(move.getOldPath(), move.getNewPath()));
+                        }
+                    } else if (event instanceof VFileDeleteEvent && markers.hasMarkersAtOrBelow(event.getPath())) {
+                        moves.add(new ChineseNameService.PathChange(event.getPath(), null));
+                    }
+                } else if (MarkerFile.FILE_NAME.equals(file.getName())) {
+                    directories.add(PathUtil.getParentPath(event.getPath()));
+                    if (event instanceof VFileMoveEvent) {
+                        directories.add(PathUtil.getParentPath(((VFileMoveEvent) event).getOldPath()));
+                    }
+                }
+            }
+        }
+        markers.scheduleUpdate(moves, subtrees, directories);
+    }
+
+    private boolean isInContent(VirtualFile parent) {
+        ProjectFileIndex index = ProjectFileIndex.getInstance(project);
+        return index.isInContent(parent) && !index.isExcluded(parent);
+    }
+}
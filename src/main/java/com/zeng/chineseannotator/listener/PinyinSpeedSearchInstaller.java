@@ -0,0 +1,43 @@
+package com.zeng.chineseannotator.listener;
+
+import com.intellij.ide.projectView.ProjectView;
+import com.intellij.ide.projectView.impl.AbstractProjectViewPane;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.openapi.wm.ex.ToolWindowManagerListener;
+import com.intellij.ui.SpeedSearchBase;
+import com.intellij.ui.speedSearch.SpeedSearchSupply;
+import com.zeng.chineseannotator.search.PinyinSpeedSearchComparator;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+
+import javax.swing.*;
+
+/**
+ * Adds pinyin matching to the Project View speed search.
+ * Tool window state changes are the earliest point at which a pane's tree exists; each tree is handled once.
+ */
+public class PinyinSpeedSearchInstaller implements ToolWindowManagerListener {
+
+    private static final String INSTALLED_KEY = "ChineseName.PinyinSpeedSearch";
+
+    private final Project project;
+
+    public PinyinSpeedSearchInstaller(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void stateChanged(@NotNull ToolWindowManager toolWindowManager) {
+        if (project.isDisposed()) return;
+        AbstractProjectViewPane pane = ProjectView.getInstance(project).getCurrentProjectViewPane();
+        JTree tree = pane == null ? null : pane.getTree();
+        if (tree == null || tree.getClientProperty(INSTALLED_KEY) != null) return;
+
+        SpeedSearchSupply supply = SpeedSearchSupply.getSupply(tree);
+        if (!(supply instanceof SpeedSearchBase)) return;
+        SpeedSearchBase<?> speedSearch = (SpeedSearchBase<?>) supply;
+        speedSearch.setComparator(new PinyinSpeedSearchComparator(speedSearch.getComparator(), ChineseNameService.getInstance(project)));
+        tree.putClientProperty(INSTALLED_KEY, Boolean.TRUE);
+    }
+}
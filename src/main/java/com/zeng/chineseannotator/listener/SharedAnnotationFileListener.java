@@ -0,0 +1,64 @@
+package com.zeng.chineseannotator.listener;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.BulkFileListener;
+import com.intellij.openapi.vfs.newvfs.events.VFileCreateEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFileMoveEvent;
+import com.intellij.openapi.vfs.newvfs.events.VFilePropertyChangeEvent;
+import com.zeng.chineseannotator.io.SharedAnnotationFile;
+import com.zeng.chineseannotator.service.SharedAnnotations;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.List;
+
+/**
+ * Reloads the shared annotation file when it is created, changed, deleted, renamed or moved, e.g. by a pull.
+ * Other events are dropped by comparing the file name, without building their paths.
+ */
+public class SharedAnnotationFileListener implements BulkFileListener {
+
+    private final Project project;
+
+    public SharedAnnotationFileListener(Project project) {
+        this.project = project;
+    }
+
+    @Override
+    public void after(@NotNull List<? extends VFileEvent> events) {
+        if (project.isDisposed()) return;
+        SharedAnnotations shared = SharedAnnotations.getInstance(project);
+        String filePath = shared.getFilePath();
+        if (filePath == null) return;
+        for (VFileEvent event : events) {
+            if (touches(event, filePath)) {
+                shared.scheduleReload();
+                return;
+            }
+        }
+    }
+
+    private static boolean touches(VFileEvent event, String filePath) {
+        if (event instanceof VFilePropertyChangeEvent) {
+            VFilePropertyChangeEvent property = (VFilePropertyChangeEvent) event;
+            if (!property.isRename()) return false;
+            return SharedAnnotationFile.FILE_NAME.equals(property.getOldValue()) && filePath.equals(property.getOldPath())
+                    || SharedAnnotationFile.FILE_NAME.equals(property.getNewValue()) && filePath.equals(property.getNewPath());
+        }
+        if (!hasSharedFileName(event)) return false;
+        if (event instanceof VFileMoveEvent) {
+            VFileMoveEvent move = (VFileMoveEvent) event;
+            return filePath.equals(move.getOldPath()) || filePath.equals(move.getNewPath());
+        }
+        return filePath.equals(event.getPath());
+    }
+
+    private static boolean hasSharedFileName(VFileEvent event) {
+        if (event instanceof VFileCreateEvent) {
+            return SharedAnnotationFile.FILE_NAME.equals(((VFileCreateEvent) event).getChildName());
+        }
+        VirtualFile file = event.getFile();
+        return file != null && SharedAnnotationFile.FILE_NAME.equals(file.getName());
+    }
+}
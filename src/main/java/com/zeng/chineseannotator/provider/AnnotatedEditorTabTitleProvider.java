@@ -0,0 +1,32 @@
+package com.zeng.chineseannotator.provider;
+
+import com.intellij.openapi.fileEditor.impl.EditorTabTitleProvider;
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zeng.chineseannotator.service.AnnotatedNameCache;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Editor tab title: the file's annotated name, followed by the Chinese name of the nearest annotated folder,
+ * e.g. {@code Main.java [订单模块]}. Tabs of files without either keep the platform title.
+ */
+public class AnnotatedEditorTabTitleProvider implements EditorTabTitleProvider, DumbAware {
+
+    @Nullable
+    @Override
+    public String getEditorTabTitle(@NotNull Project project, @NotNull VirtualFile file) {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        if (service.isPreviewingOriginalNames()) return null;
+        String fileName = service.getDecoratedName(file);
+        VirtualFile parent = file.getParent();
+        ChineseNameService.FolderAnnotation folder =
+                parent != null ? AnnotatedNameCache.getInstance(project).getNearestAnnotation(parent) : null;
+        if (fileName == null && folder == null) return null;
+
+        String title = fileName != null ? fileName : file.getPresentableName();
+        return folder != null ? title + " [" + folder.chineseName + "]" : title;
+    }
+}
@@ -0,0 +1,31 @@
+package com.zeng.chineseannotator.provider;
+
+import com.intellij.ide.navigationToolbar.AbstractNavBarModelExtension;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiFileSystemItem;
+import com.zeng.chineseannotator.service.AnnotatedNameCache;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Shows annotated names in the navigation bar and in the status bar breadcrumbs of the new UI, which are
+ * built from the same model. Folders are looked up in {@link AnnotatedNameCache}, so walking the path of the
+ * current file resolves each ancestor only once per annotation change.
+ */
+public class AnnotatedNavBarExtension extends AbstractNavBarModelExtension {
+
+    @Nullable
+    @Override
+    public String getPresentableText(Object object) {
+        if (!(object instanceof PsiFileSystemItem)) return null;
+        PsiFileSystemItem item = (PsiFileSystemItem) object;
+        if (!item.isValid()) return null;
+        VirtualFile file = item.getVirtualFile();
+        if (file == null) return null;
+        Project project = item.getProject();
+        return file.isDirectory()
+                ? AnnotatedNameCache.getInstance(project).getDisplayName(file)
+                : ChineseNameService.getInstance(project).getDecoratedName(file);
+    }
+}
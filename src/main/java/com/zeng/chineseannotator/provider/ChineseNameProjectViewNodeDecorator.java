@@ -3,33 +3,49 @@ package com.zeng.chineseannotator.provider;
 import com.intellij.ide.projectView.PresentationData;
 import com.intellij.ide.projectView.ProjectViewNode;
 import com.intellij.ide.projectView.impl.nodes.PsiDirectoryNode;
+import com.intellij.ide.projectView.impl.nodes.PsiFileNode;
 import com.intellij.openapi.project.Project;
-import com.intellij.psi.PsiDirectory;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.zeng.chineseannotator.diagnostics.AnnotatorMetrics;
 import com.zeng.chineseannotator.service.ChineseNameService;
 
 import org.jetbrains.annotations.NotNull;
 
 /**
- * Decorates directory nodes in the Project View with Chinese annotations.
+ * Decorates directory and file nodes in the Project View with Chinese annotations.
  * This is more reliable across IDE versions than mutating nodes in a TreeStructureProvider.
+ * Both providers go through {@link #decorate(ChineseNameService, ProjectViewNode, PresentationData)}.
  */
 public class ChineseNameProjectViewNodeDecorator implements com.intellij.ide.projectView.ProjectViewNodeDecorator {
     @Override
     public void decorate(@NotNull ProjectViewNode<?> node, @NotNull PresentationData data) {
-        if (!(node instanceof PsiDirectoryNode)) return;
-        PsiDirectoryNode dirNode = (PsiDirectoryNode) node;
-        PsiDirectory directory = dirNode.getValue();
-        if (directory == null) return;
-        Project project = directory.getProject();
-        ChineseNameService service = ChineseNameService.getInstance(project);
+        if (!isAnnotatable(node)) return;
+        Project project = node.getProject();
+        if (project == null) return;
+        long start = AnnotatorMetrics.start();
+        try {
+            decorate(ChineseNameService.getInstance(project), node, data);
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.DECORATE, start);
+        }
+    }
 
-        String folderPath = directory.getVirtualFile().getPath();
-        String originalName = directory.getName();
-        String displayName = service.getDisplayName(folderPath, originalName);
+    /**
+     * Folder and file nodes; other nodes (modules, libraries, packages) keep their presentation.
+     */
+    static boolean isAnnotatable(@NotNull ProjectViewNode<?> node) {
+        return node instanceof PsiDirectoryNode || node instanceof PsiFileNode;
+    }
 
-        if (!displayName.equals(originalName)) {
+    /**
+     * Single decoration path: one id lookup, and a cached display name for annotated folders and files.
+     */
+    static void decorate(@NotNull ChineseNameService service, @NotNull ProjectViewNode<?> node, @NotNull PresentationData data) {
+        VirtualFile file = node.getVirtualFile();
+        if (file == null) return;
+        String displayName = service.getDecoratedName(file);
+        if (displayName != null) {
             data.setPresentableText(displayName);
         }
     }
 }
-
@@ -1,22 +1,24 @@
 package com.zeng.chineseannotator.provider;
 
 import com.intellij.ide.projectView.PresentationData;
+import com.intellij.ide.projectView.ProjectViewNode;
 import com.intellij.ide.projectView.TreeStructureProvider;
 import com.intellij.ide.projectView.ViewSettings;
 import com.intellij.ide.projectView.impl.nodes.PsiDirectoryNode;
 import com.intellij.ide.util.treeView.AbstractTreeNode;
 import com.intellij.openapi.project.Project;
 import com.intellij.psi.PsiDirectory;
+import com.zeng.chineseannotator.diagnostics.AnnotatorMetrics;
 import com.zeng.chineseannotator.service.ChineseNameService;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
 import java.util.Collection;
 
 /**
- * Tree structure provider that modifies the display names of folders
+ * Tree structure provider that modifies the display names of folders and files
  * to include Chinese annotations.
+ * Subtrees without any annotation are returned untouched.
  */
 public class ChineseNameTreeStructureProvider implements TreeStructureProvider {
 
@@ -25,39 +27,38 @@ public class ChineseNameTreeStructureProvider implements TreeStructureProvider {
     public Collection<AbstractTreeNode<?>> modify(@NotNull AbstractTreeNode<?> parent,
                                                    @NotNull Collection<AbstractTreeNode<?>> children,
                                                    ViewSettings settings) {
-        Collection<AbstractTreeNode<?>> result = new ArrayList<>(children);
-
         Project project = parent.getProject();
         if (project == null) {
-            return result;
+            return children;
         }
 
-        ChineseNameService service = ChineseNameService.getInstance(project);
-
-        for (AbstractTreeNode<?> child : result) {
-            if (child instanceof PsiDirectoryNode) {
-                PsiDirectoryNode dirNode = (PsiDirectoryNode) child;
-                PsiDirectory directory = dirNode.getValue();
-
-                if (directory != null) {
-                    String folderPath = directory.getVirtualFile().getPath();
-                    String originalName = directory.getName();
+        long start = AnnotatorMetrics.start();
+        try {
+            decorateChildren(ChineseNameService.getInstance(project), parent, children);
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.TREE_MODIFY, start);
+        }
+        return children;
+    }
 
-                    String displayName = service.getDisplayName(folderPath, originalName);
+    private static void decorateChildren(ChineseNameService service, AbstractTreeNode<?> parent,
+                                         Collection<AbstractTreeNode<?>> children) {
+        // Nothing annotated below this directory: no per-child work at all
+        if (parent instanceof PsiDirectoryNode) {
+            PsiDirectory parentDirectory = ((PsiDirectoryNode) parent).getValue();
+            if (parentDirectory != null && !service.hasAnnotationsBelow(parentDirectory.getVirtualFile())) {
+                return;
+            }
+        }
 
-                    if (!displayName.equals(originalName)) {
-                        // Update the presentation
-                        PresentationData presentation = dirNode.getPresentation();
-                        if (presentation != null) {
-                            presentation.setPresentableText(displayName);
-                        }
-                    }
+        for (AbstractTreeNode<?> child : children) {
+            if (child instanceof ProjectViewNode && ChineseNameProjectViewNodeDecorator.isAnnotatable((ProjectViewNode<?>) child)) {
+                ProjectViewNode<?> node = (ProjectViewNode<?>) child;
+                PresentationData presentation = node.getPresentation();
+                if (presentation != null) {
+                    ChineseNameProjectViewNodeDecorator.decorate(service, node, presentation);
                 }
             }
         }
-
-        return result;
     }
-
 }
-
@@ -0,0 +1,137 @@
+package com.zeng.chineseannotator.search;
+
+import com.intellij.icons.AllIcons;
+import com.intellij.ide.actions.searcheverywhere.SearchEverywhereContributor;
+import com.intellij.ide.actions.searcheverywhere.SearchEverywhereContributorFactory;
+import com.intellij.openapi.actionSystem.AnActionEvent;
+import com.intellij.openapi.actionSystem.CommonDataKeys;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiDirectory;
+import com.intellij.psi.PsiFileSystemItem;
+import com.intellij.psi.PsiManager;
+import com.intellij.ui.ColoredListCellRenderer;
+import com.intellij.ui.SimpleTextAttributes;
+import com.intellij.util.Processor;
+import com.zeng.chineseannotator.service.AnnotatedNameCache;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.util.List;
+
+/**
+ * Search Everywhere tab that finds annotated folders and files by their Chinese annotation.
+ * Matches come from the service's n-gram index; only the matched paths are resolved to PSI.
+ */
+public class AnnotatedFolderSearchContributor implements SearchEverywhereContributor<PsiFileSystemItem> {
+
+    private static final int MAX_RESULTS = 200;
+
+    private final Project project;
+
+    public AnnotatedFolderSearchContributor(@NotNull Project project) {
+        this.project = project;
+    }
+
+    @NotNull
+    @Override
+    public String getSearchProviderId() {
+        return AnnotatedFolderSearchContributor.class.getSimpleName();
+    }
+
+    @NotNull
+    @Override
+    public String getGroupName() {
+        return "Chinese Names";
+    }
+
+    @Override
+    public int getSortWeight() {
+        return 500;
+    }
+
+    @Override
+    public boolean showInFindResults() {
+        return false;
+    }
+
+    @Override
+    public boolean isShownInSeparateTab() {
+        return true;
+    }
+
+    @Override
+    public void fetchElements(@NotNull String pattern, @NotNull ProgressIndicator progressIndicator,
+                              @NotNull Processor<? super PsiFileSystemItem> consumer) {
+        if (StringUtil.isEmptyOrSpaces(pattern)) return;
+        List<String> paths = ChineseNameService.getInstance(project).findFoldersByChineseName(pattern, MAX_RESULTS);
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        PsiManager psiManager = PsiManager.getInstance(project);
+        for (String path : paths) {
+            progressIndicator.checkCanceled();
+            PsiFileSystemItem item = ReadAction.compute(() -> {
+                VirtualFile file = fileSystem.findFileByPath(path);
+                if (file == null || !file.isValid()) return null;
+                return file.isDirectory() ? psiManager.findDirectory(file) : psiManager.findFile(file);
+            });
+            if (item != null && !consumer.process(item)) return;
+        }
+    }
+
+    @Override
+    public boolean processSelectedItem(@NotNull PsiFileSystemItem selected, int modifiers, @NotNull String searchText) {
+        // Selects a folder in the Project View, opens a file in the editor
+        if (selected.isValid()) {
+            selected.navigate(true);
+        }
+        return true;
+    }
+
+    @NotNull
+    @Override
+    public ListCellRenderer<? super PsiFileSystemItem> getElementsRenderer() {
+        return new ColoredListCellRenderer<PsiFileSystemItem>() {
+            @Override
+            protected void customizeCellRenderer(@NotNull JList<? extends PsiFileSystemItem> list, PsiFileSystemItem value,
+                                                 int index, boolean selected, boolean hasFocus) {
+                if (!value.isValid()) {
+                    setIcon(AllIcons.Nodes.Folder);
+                    append("<invalid>", SimpleTextAttributes.ERROR_ATTRIBUTES);
+                    return;
+                }
+                VirtualFile file = value.getVirtualFile();
+                setIcon(value instanceof PsiDirectory ? AllIcons.Nodes.Folder : file.getFileType().getIcon());
+                ChineseNameService.FolderAnnotation annotation = ChineseNameService.getInstance(project).getAnnotation(file);
+                if (annotation != null) {
+                    append(annotation.chineseName, SimpleTextAttributes.REGULAR_BOLD_ATTRIBUTES);
+                    append("  ");
+                }
+                append(file.getName());
+                String path = AnnotatedNameCache.getInstance(project).getAnnotatedPath(file);
+                append("  " + (path != null ? path : file.getPath()), SimpleTextAttributes.GRAYED_ATTRIBUTES);
+            }
+        };
+    }
+
+    @Nullable
+    @Override
+    public Object getDataForItem(@NotNull PsiFileSystemItem element, @NotNull String dataId) {
+        if (CommonDataKeys.PSI_ELEMENT.is(dataId)) return element;
+        if (CommonDataKeys.VIRTUAL_FILE.is(dataId)) return element.getVirtualFile();
+        return null;
+    }
+
+    public static class Factory implements SearchEverywhereContributorFactory<PsiFileSystemItem> {
+        @NotNull
+        @Override
+        public SearchEverywhereContributor<PsiFileSystemItem> createContributor(@NotNull AnActionEvent initEvent) {
+            return new AnnotatedFolderSearchContributor(initEvent.getRequiredData(CommonDataKeys.PROJECT));
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.zeng.chineseannotator.search;
+
+import com.intellij.openapi.util.TextRange;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Precomputed pinyin spellings of one Chinese name: full pinyin ("guangdongguangzhoushi") and initials
+ * ("gdgzs"), with the mapping back to the characters of the name so matches can be highlighted.
+ * Letters and digits are kept as they are; other characters are skipped.
+ */
+public final class PinyinForms {
+
+    private final String source;
+    private final String full;
+    private final String initials;
+    /**
+     * For each char of {@link #full}: index of the source character it spells, and whether a syllable starts there.
+     */
+    private final int[] fullToSource;
+    private final boolean[] syllableStart;
+    /**
+     * For each char of {@link #initials}: index of the source character.
+     */
+    private final int[] initialsToSource;
+
+    private PinyinForms(String source, String full, String initials, int[] fullToSource, boolean[] syllableStart,
+                        int[] initialsToSource) {
+        this.source = source;
+        this.full = full;
+        this.initials = initials;
+        this.fullToSource = fullToSource;
+        this.syllableStart = syllableStart;
+        this.initialsToSource = initialsToSource;
+    }
+
+    /**
+     * Pinyin forms of the name, or null if it has no Han characters and plain matching already covers it.
+     */
+    @Nullable
+    public static PinyinForms of(@NotNull String name) {
+        PinyinTable table = PinyinTable.getInstance();
+        StringBuilder full = new StringBuilder(name.length() * 4);
+        StringBuilder initials = new StringBuilder(name.length());
+        int[] fullToSource = new int[name.length() * 6];
+        boolean[] syllableStart = new boolean[fullToSource.length];
+        int[] initialsToSource = new int[name.length()];
+        boolean hasHan = false;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            String syllable = table.toPinyin(c);
+            if (syllable == null) {
+                if (!Character.isLetterOrDigit(c)) continue;
+                syllable = String.valueOf(Character.toLowerCase(c));
+            } else {
+                hasHan = true;
+            }
+            syllableStart[full.length()] = true;
+            for (int k = 0; k < syllable.length(); k++) {
+                fullToSource[full.length() + k] = i;
+            }
+            full.append(syllable);
+            initialsToSource[initials.length()] = i;
+            initials.append(syllable.charAt(0));
+        }
+        if (!hasHan) return null;
+        return new PinyinForms(name, full.toString(), initials.toString(), fullToSource, syllableStart, initialsToSource);
+    }
+
+    @NotNull
+    public String getSource() {
+        return source;
+    }
+
+    @NotNull
+    public String getFull() {
+        return full;
+    }
+
+    @NotNull
+    public String getInitials() {
+        return initials;
+    }
+
+    /**
+     * Range of source characters matched by a lower-case pattern typed as initials or as full pinyin starting
+     * at a syllable, or null when it matches neither.
+     */
+    @Nullable
+    public TextRange match(@NotNull String pattern) {
+        if (pattern.isEmpty()) return null;
+        int start = initials.indexOf(pattern);
+        if (start >= 0) {
+            return new TextRange(initialsToSource[start], initialsToSource[start + pattern.length() - 1] + 1);
+        }
+        for (start = full.indexOf(pattern); start >= 0; start = full.indexOf(pattern, start + 1)) {
+            if (syllableStart[start]) {
+                return new TextRange(fullToSource[start], fullToSource[start + pattern.length() - 1] + 1);
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,54 @@
+package com.zeng.chineseannotator.search;
+
+import com.intellij.openapi.util.TextRange;
+import com.intellij.ui.SpeedSearchComparator;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+
+/**
+ * Speed search comparator that falls back to pinyin for annotated nodes: "gz" and "guangzhou" both find
+ * {@code gdgzs(广东广州市)}. The pinyin forms of a node text are computed once and cached by the service, so a
+ * keystroke only does a map lookup and two {@code indexOf} calls per node.
+ */
+public class PinyinSpeedSearchComparator extends SpeedSearchComparator {
+
+    private final SpeedSearchComparator delegate;
+    private final ChineseNameService service;
+
+    private String lastPattern = "";
+    private String lastNormalized = "";
+
+    public PinyinSpeedSearchComparator(@NotNull SpeedSearchComparator delegate, @NotNull ChineseNameService service) {
+        super(false, true);
+        this.delegate = delegate;
+        this.service = service;
+    }
+
+    @Nullable
+    @Override
+    public Iterable<TextRange> matchingFragments(@NotNull String pattern, @NotNull String text) {
+        Iterable<TextRange> plain = delegate.matchingFragments(pattern, text);
+        if (plain != null) return plain;
+        PinyinForms forms = service.getPinyinForDisplayText(text);
+        if (forms == null) return null;
+        // The forms spell the whole display text, so their ranges are ranges of the text
+        TextRange range = forms.match(normalize(pattern));
+        return range == null ? null : Collections.singletonList(range);
+    }
+
+    @Override
+    public String getRecentSearchText() {
+        return delegate.getRecentSearchText();
+    }
+
+    private String normalize(String pattern) {
+        if (!pattern.equals(lastPattern)) {
+            lastNormalized = pattern.replace(" ", "").toLowerCase();
+            lastPattern = pattern;
+        }
+        return lastNormalized;
+    }
+}
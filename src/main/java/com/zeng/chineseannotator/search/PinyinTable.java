@@ -0,0 +1,76 @@
+package com.zeng.chineseannotator.search;
+
+import com.intellij.openapi.diagnostic.Logger;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Bundled character-to-pinyin table for the CJK Unified Ideographs block (U+4E00..U+9FFF).
+ * <p>
+ * {@code /pinyin/pinyin.dat} holds the ~410 toneless syllables once, followed by one 2-byte syllable index per
+ * character (0xFFFF for none), about 44 KB in total. Polyphonic characters use their most common reading.
+ * The table was generated with ICU's {@code Han-Latin; Latin-ASCII} transliterator, one character at a time.
+ */
+public final class PinyinTable {
+
+    private static final Logger LOG = Logger.getInstance(PinyinTable.class);
+    private static final String RESOURCE = "/pinyin/pinyin.dat";
+    private static final int NONE = 0xFFFF;
+
+    private static final class Holder {
+        static final PinyinTable INSTANCE = load();
+    }
+
+    private final int firstCodePoint;
+    private final String[] syllables;
+    private final char[] syllableIndex;
+
+    private PinyinTable(int firstCodePoint, String[] syllables, char[] syllableIndex) {
+        this.firstCodePoint = firstCodePoint;
+        this.syllables = syllables;
+        this.syllableIndex = syllableIndex;
+    }
+
+    public static PinyinTable getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Lower-case toneless pinyin of the character, e.g. "guang" for 广, or null if it is not a known Han character.
+     */
+    @Nullable
+    public String toPinyin(char c) {
+        int offset = c - firstCodePoint;
+        if (offset < 0 || offset >= syllableIndex.length) return null;
+        int index = syllableIndex[offset];
+        return index == NONE ? null : syllables[index];
+    }
+
+    private static PinyinTable load() {
+        try (InputStream stream = PinyinTable.class.getResourceAsStream(RESOURCE)) {
+            if (stream == null) {
+                LOG.warn("Missing pinyin table " + RESOURCE);
+                return new PinyinTable(0, new String[0], new char[0]);
+            }
+            DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+            int firstCodePoint = in.readInt();
+            int charCount = in.readInt();
+            String[] syllables = new String[in.readShort()];
+            for (int i = 0; i < syllables.length; i++) {
+                syllables[i] = in.readUTF();
+            }
+            char[] syllableIndex = new char[charCount];
+            for (int i = 0; i < charCount; i++) {
+                syllableIndex[i] = in.readChar();
+            }
+            return new PinyinTable(firstCodePoint, syllables, syllableIndex);
+        } catch (IOException e) {
+            LOG.warn("Failed to read pinyin table " + RESOURCE, e);
+            return new PinyinTable(0, new String[0], new char[0]);
+        }
+    }
+}
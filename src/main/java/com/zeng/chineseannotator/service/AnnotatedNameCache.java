@@ -0,0 +1,137 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.VirtualFileWithId;
+import com.intellij.util.containers.ConcurrentIntObjectMap;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Render cache shared by the surfaces outside the Project View: editor tabs, the navigation bar and search hints.
+ * <p>
+ * Entries are keyed by directory id and hold the decorated name, the nearest annotated directory at or above,
+ * and the annotated project-relative path. An entry is built from its parent's entry, so the siblings and
+ * children of a resolved directory cost one lookup each. Everything is dropped at once when
+ * {@link ChineseNameService#getModificationCount()} moves, i.e. only when annotations or directory locations change.
+ */
+public final class AnnotatedNameCache {
+
+    /**
+     * Directories outside the project are not cached past this many entries; the map is restarted instead.
+     */
+    private static final int MAX_ENTRIES = 1 << 16;
+
+    private final Project project;
+    private volatile Generation generation = new Generation(-1, null);
+
+    public AnnotatedNameCache(Project project) {
+        this.project = project;
+    }
+
+    public static AnnotatedNameCache getInstance(Project project) {
+        return project.getService(AnnotatedNameCache.class);
+    }
+
+    private static final class Generation {
+        final long modificationCount;
+        @Nullable
+        final VirtualFile projectDir;
+        final ConcurrentIntObjectMap<Entry> entries = ContainerUtil.createConcurrentIntObjectMap();
+
+        Generation(long modificationCount, @Nullable VirtualFile projectDir) {
+            this.modificationCount = modificationCount;
+            this.projectDir = projectDir;
+        }
+    }
+
+    private static final class Entry {
+        @Nullable
+        final ChineseNameService.FolderAnnotation annotation;
+        @Nullable
+        final String displayName;
+        /** This entry if the directory is annotated, else the parent's nearest; null if none up to the project. */
+        @Nullable
+        final Entry nearest;
+        /** Project-relative path with annotated segments decorated; null outside the project. */
+        @Nullable
+        final String annotatedPath;
+
+        Entry(@Nullable ChineseNameService.FolderAnnotation annotation, @Nullable String displayName,
+              @Nullable Entry parentNearest, @Nullable String annotatedPath) {
+            this.annotation = annotation;
+            this.displayName = displayName;
+            this.nearest = displayName != null ? this : parentNearest;
+            this.annotatedPath = annotatedPath;
+        }
+    }
+
+    /**
+     * Decorated name of the directory, or null when it keeps its original name.
+     */
+    @Nullable
+    public String getDisplayName(@NotNull VirtualFile directory) {
+        return entry(current(), directory).displayName;
+    }
+
+    /**
+     * Annotation of the nearest annotated directory at or above {@code directory}, within the project.
+     */
+    @Nullable
+    public ChineseNameService.FolderAnnotation getNearestAnnotation(@NotNull VirtualFile directory) {
+        Entry nearest = entry(current(), directory).nearest;
+        return nearest != null ? nearest.annotation : null;
+    }
+
+    /**
+     * Path of the directory relative to the project, each annotated segment shown as in the Project View;
+     * null when the directory is outside the project.
+     */
+    @Nullable
+    public String getAnnotatedPath(@NotNull VirtualFile directory) {
+        return entry(current(), directory).annotatedPath;
+    }
+
+    private Generation current() {
+        long modificationCount = ChineseNameService.getInstance(project).getModificationCount();
+        Generation result = generation;
+        if (result.modificationCount != modificationCount || result.entries.size() > MAX_ENTRIES) {
+            result = new Generation(modificationCount, ProjectUtil.guessProjectDir(project));
+            generation = result;
+        }
+        return result;
+    }
+
+    private Entry entry(Generation generation, VirtualFile directory) {
+        if (!(directory instanceof VirtualFileWithId)) return compute(generation, directory);
+        int id = ((VirtualFileWithId) directory).getId();
+        Entry entry = generation.entries.get(id);
+        if (entry == null) {
+            // Racing threads may both compute it; the results are identical
+            entry = compute(generation, directory);
+            generation.entries.put(id, entry);
+        }
+        return entry;
+    }
+
+    private Entry compute(Generation generation, VirtualFile directory) {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        ChineseNameService.FolderAnnotation annotation = service.isPreviewingOriginalNames() ? null : service.resolveAnnotation(directory);
+        String displayName = annotation != null ? service.getDecoratedName(directory) : null;
+        String segment = displayName != null ? displayName : directory.getName();
+
+        if (directory.equals(generation.projectDir)) {
+            return new Entry(annotation, displayName, null, "");
+        }
+        VirtualFile parent = directory.getParent();
+        Entry parentEntry = parent != null ? entry(generation, parent) : null;
+        if (parentEntry == null || parentEntry.annotatedPath == null) {
+            // Outside the project: no ancestors are considered and there is no relative path
+            return new Entry(annotation, displayName, null, null);
+        }
+        String path = parentEntry.annotatedPath.isEmpty() ? segment : parentEntry.annotatedPath + "/" + segment;
+        return new Entry(annotation, displayName, parentEntry.nearest, path);
+    }
+}
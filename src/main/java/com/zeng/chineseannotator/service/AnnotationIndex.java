@@ -0,0 +1,222 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.VirtualFileWithId;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+
+/**
+ * Runtime lookup structures derived from the persisted path map, keyed by VirtualFile id.
+ * <p>
+ * Besides the id-to-annotation map it keeps, for every ancestor of an annotated folder, the number of
+ * annotated folders below it. Directories missing from that map have nothing annotated underneath,
+ * which lets the tree structure provider skip whole subtrees.
+ * <p>
+ * An index is immutable. The index of the next snapshot is {@link #derive derived} from this one by
+ * resolving only the changed paths against the VFS; the ids and parent links kept here let a removed path
+ * be taken out again without a VFS lookup, even after its folder was deleted. Paths the VFS does not know
+ * are remembered as unresolved and retried once a folder appears at or above them (see {@link #unresolvedAtOrBelow}).
+ */
+final class AnnotationIndex {
+
+    static final AnnotationIndex EMPTY = new Builder().build();
+
+    /**
+     * Holds map entries rather than values, so lazily decoded entries are only materialized on lookup.
+     */
+    private final Int2ObjectOpenHashMap<Map.Entry<String, ChineseNameService.FolderAnnotation>> byId;
+    private final Object2IntOpenHashMap<String> idByPath;
+    private final Int2IntOpenHashMap descendantCounts;
+    /** Parent id of every indexed folder and of every directory counted in {@link #descendantCounts}. */
+    private final Int2IntOpenHashMap parentIds;
+    /** Sorted, so the paths at or below a folder form one range. */
+    private final NavigableSet<String> unresolved;
+
+    private AnnotationIndex(Builder builder) {
+        this.byId = builder.byId;
+        this.idByPath = builder.idByPath;
+        this.descendantCounts = builder.descendantCounts;
+        this.parentIds = builder.parentIds;
+        this.unresolved = builder.unresolved;
+    }
+
+    /**
+     * Resolves a path to the ids of its file and of that file's ancestors; the VFS outside of tests.
+     */
+    interface FileIds {
+        /**
+         * Id of the file at {@code path} followed by the ids of its ancestors, nearest first, or null if unknown.
+         */
+        @Nullable
+        int[] resolve(@NotNull String path);
+    }
+
+    static final FileIds VFS = path -> {
+        VirtualFile file = LocalFileSystem.getInstance().findFileByPath(path);
+        if (!(file instanceof VirtualFileWithId)) return null;
+        IntArrayList ids = new IntArrayList();
+        for (VirtualFile current = file; current instanceof VirtualFileWithId; current = current.getParent()) {
+            ids.add(((VirtualFileWithId) current).getId());
+        }
+        return ids.toIntArray();
+    };
+
+    static AnnotationIndex build(Map<String, ChineseNameService.FolderAnnotation> annotations) {
+        return build(annotations, VFS);
+    }
+
+    static AnnotationIndex build(Map<String, ChineseNameService.FolderAnnotation> annotations, FileIds fileIds) {
+        Builder builder = new Builder();
+        for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
+            builder.add(fileIds, entry);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Index for {@code annotations}, which differ from the map this index was built for only in
+     * {@code changedPaths}. With {@code rebind}, the entries of unchanged paths are taken from
+     * {@code annotations} as well, e.g. after the map was rebased onto a new compact file.
+     */
+    AnnotationIndex derive(Map<String, ChineseNameService.FolderAnnotation> annotations,
+                           Collection<String> changedPaths, boolean rebind) {
+        return derive(annotations, changedPaths, rebind, VFS);
+    }
+
+    AnnotationIndex derive(Map<String, ChineseNameService.FolderAnnotation> annotations,
+                           Collection<String> changedPaths, boolean rebind, FileIds fileIds) {
+        if (changedPaths.isEmpty() && !rebind) return this;
+        Builder builder = new Builder(this);
+        // All removals first: after a move the new path resolves to the id the old path is still indexed under
+        for (String path : changedPaths) {
+            builder.remove(path);
+        }
+        for (String path : changedPaths) {
+            ChineseNameService.FolderAnnotation annotation = annotations.get(path);
+            if (annotation != null) {
+                builder.add(fileIds, new AbstractMap.SimpleImmutableEntry<>(path, annotation));
+            }
+        }
+        if (rebind) {
+            for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
+                int id = builder.idByPath.getInt(entry.getKey());
+                if (id != 0) builder.byId.put(id, entry);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Unresolved paths equal to or below the given one.
+     */
+    @NotNull
+    List<String> unresolvedAtOrBelow(@NotNull String path) {
+        if (unresolved.isEmpty()) return List.of();
+        List<String> result = new ArrayList<>();
+        if (unresolved.contains(path)) result.add(path);
+        // '0' follows '/', so this is exactly the range of paths starting with "path/"
+        result.addAll(unresolved.subSet(path + '/', true, path + '0', false));
+        return result;
+    }
+
+    @Nullable
+    ChineseNameService.FolderAnnotation get(int fileId) {
+        Map.Entry<String, ChineseNameService.FolderAnnotation> entry = byId.get(fileId);
+        return entry != null ? entry.getValue() : null;
+    }
+
+    /**
+     * Number of annotated folders strictly below the given directory.
+     */
+    int countBelow(int fileId) {
+        return descendantCounts.get(fileId);
+    }
+
+    int size() {
+        return byId.size();
+    }
+
+    /**
+     * Mutable copy of the structures, used only while one index is being built.
+     */
+    private static final class Builder {
+        final Int2ObjectOpenHashMap<Map.Entry<String, ChineseNameService.FolderAnnotation>> byId;
+        final Object2IntOpenHashMap<String> idByPath;
+        final Int2IntOpenHashMap descendantCounts;
+        final Int2IntOpenHashMap parentIds;
+        final NavigableSet<String> unresolved;
+
+        Builder() {
+            byId = new Int2ObjectOpenHashMap<>();
+            idByPath = new Object2IntOpenHashMap<>();
+            descendantCounts = new Int2IntOpenHashMap();
+            parentIds = new Int2IntOpenHashMap();
+            unresolved = new TreeSet<>();
+        }
+
+        Builder(AnnotationIndex source) {
+            // Plain array copies; the VFS is only asked about changed paths
+            byId = source.byId.clone();
+            idByPath = source.idByPath.clone();
+            descendantCounts = source.descendantCounts.clone();
+            parentIds = source.parentIds.clone();
+            unresolved = new TreeSet<>(source.unresolved);
+        }
+
+        void add(FileIds fileIds, Map.Entry<String, ChineseNameService.FolderAnnotation> entry) {
+            // Folders the VFS does not know yet are retried when they appear
+            int[] ids = fileIds.resolve(entry.getKey());
+            if (ids == null) {
+                unresolved.add(entry.getKey());
+                return;
+            }
+            int id = ids[0];
+            idByPath.put(entry.getKey(), id);
+            if (byId.put(id, entry) != null) return; // another spelling of an indexed path
+            for (int i = 1; i < ids.length; i++) {
+                parentIds.put(ids[i - 1], ids[i]);
+                descendantCounts.addTo(ids[i], 1);
+            }
+        }
+
+        void remove(String path) {
+            unresolved.remove(path);
+            int id = idByPath.removeInt(path);
+            if (id == 0) return;
+            Map.Entry<String, ChineseNameService.FolderAnnotation> entry = byId.get(id);
+            if (entry == null || !entry.getKey().equals(path)) return;
+            byId.remove(id);
+            int parentId = parentIds.get(id);
+            if (descendantCounts.get(id) == 0) parentIds.remove(id);
+            while (parentId != 0) {
+                int nextId = parentIds.get(parentId);
+                if (descendantCounts.addTo(parentId, -1) == 1) {
+                    descendantCounts.remove(parentId);
+                    if (!byId.containsKey(parentId)) parentIds.remove(parentId);
+                }
+                parentId = nextId;
+            }
+        }
+
+        AnnotationIndex build() {
+            byId.trim();
+            idByPath.trim();
+            descendantCounts.trim();
+            parentIds.trim();
+            return new AnnotationIndex(this);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.util.containers.Interner;
+import org.jetbrains.annotations.Contract;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Application-wide weak pools for Chinese names, annotations and rendered display names.
+ * <p>
+ * Projects opened side by side usually share their module layout and therefore their annotations; canonicalizing
+ * them here keeps one copy of each distinct annotation instead of one per project. Sharing is safe because
+ * annotations are never modified after creation and a rendered name depends only on the annotation and the
+ * original name, so the render cache carried by a shared annotation is valid in every project.
+ * Entries are weakly referenced and go away once no open project uses them, e.g. after it is closed.
+ * <p>
+ * Plain static pools rather than an application service, so storage classes and benchmarks need no running IDE.
+ */
+public final class AnnotationInterner {
+
+    private static final Interner<String> STRINGS = Interner.createWeakInterner();
+    private static final Interner<ChineseNameService.FolderAnnotation> ANNOTATIONS = Interner.createWeakInterner();
+
+    private AnnotationInterner() {
+    }
+
+    @Contract("null -> null; !null -> !null")
+    public static String intern(@Nullable String value) {
+        return value == null ? null : STRINGS.intern(value);
+    }
+
+    /**
+     * The canonical annotation equal to the given one; the argument itself when it is the first of its kind and
+     * already carries the canonical name string. The argument is never modified.
+     */
+    @Contract("null -> null; !null -> !null")
+    public static ChineseNameService.FolderAnnotation intern(@Nullable ChineseNameService.FolderAnnotation annotation) {
+        if (annotation == null) return null;
+        // The name is canonicalized before the annotation can be published, never by mutating a shared instance
+        String name = intern(annotation.chineseName);
+        ChineseNameService.FolderAnnotation candidate = name == annotation.chineseName
+                ? annotation : new ChineseNameService.FolderAnnotation(name, annotation.hideOriginalName);
+        return ANNOTATIONS.intern(candidate);
+    }
+
+    public static int getAnnotationCount() {
+        return ANNOTATIONS.getValues().size();
+    }
+
+    public static int getStringCount() {
+        return STRINGS.getValues().size();
+    }
+}
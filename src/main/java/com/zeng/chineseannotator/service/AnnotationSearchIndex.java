@@ -0,0 +1,227 @@
+package com.zeng.chineseannotator.service;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.objects.Object2IntOpenHashMap;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.function.LongConsumer;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted n-gram index over Chinese names, for finding folders by annotation text.
+ * <p>
+ * Every name is indexed by its characters and its character bigrams (lower-cased). A query intersects the
+ * postings of its bigrams, starting with the rarest, and only the survivors are checked with {@code contains};
+ * a one-character query reads a single posting list. Writers keep the index current from the paths they
+ * touched ({@link #onUpdate}); it is built on the first search and rebuilt only when a change was missed.
+ */
+final class AnnotationSearchIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Entry id to path and lower-cased name; removed ids are recycled through {@link #freeIds}.
+     */
+    private final List<String> paths = new ArrayList<>();
+    private final List<String> names = new ArrayList<>();
+    private final IntArrayList freeIds = new IntArrayList();
+    private final Object2IntOpenHashMap<String> idByPath = new Object2IntOpenHashMap<>();
+    private final Long2ObjectOpenHashMap<IntOpenHashSet> postings = new Long2ObjectOpenHashMap<>();
+
+    /**
+     * Snapshot version the index reflects, or -1 when it must be rebuilt before the next search.
+     */
+    private long version = -1;
+
+    AnnotationSearchIndex() {
+        idByPath.defaultReturnValue(-1);
+    }
+
+    /**
+     * Called by writers after publishing {@code next} on top of the snapshot with version {@code previousVersion}.
+     * Applies the delta if the index is current, otherwise leaves it to be rebuilt lazily.
+     */
+    void onUpdate(long previousVersion, @NotNull AnnotationSnapshot next, @NotNull Collection<String> changedPaths, boolean cleared) {
+        lock.writeLock().lock();
+        try {
+            if (version < 0) return;
+            if (cleared || version != previousVersion) {
+                version = -1;
+                return;
+            }
+            for (String path : changedPaths) {
+                removeEntry(path);
+                ChineseNameService.FolderAnnotation annotation = next.get(path);
+                if (annotation != null) {
+                    addEntry(path, annotation.chineseName);
+                }
+            }
+            version = next.getVersion();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Paths whose Chinese name contains {@code query}, case-insensitively; names starting with it and shorter
+     * names first.
+     */
+    @NotNull
+    List<String> search(@NotNull AnnotationSnapshot snapshot, @NotNull String query, int limit) {
+        String needle = query.trim().toLowerCase();
+        if (needle.isEmpty() || limit <= 0) return List.of();
+        ensureBuilt(snapshot);
+
+        lock.readLock().lock();
+        try {
+            IntOpenHashSet[] lists = postingsFor(needle);
+            if (lists == null) return List.of();
+            // Bounded heap with the worst kept match on top: O(m log k) for m matches instead of sorting them all
+            PriorityQueue<Integer> best = new PriorityQueue<>(Math.min(limit, lists[0].size()),
+                    (a, b) -> compareMatches(b, a, needle));
+            for (int id : lists[0]) {
+                if (!containsAll(lists, id) || !names.get(id).contains(needle)) continue;
+                if (best.size() < limit) {
+                    best.add(id);
+                } else if (compareMatches(id, best.peek(), needle) < 0) {
+                    best.poll();
+                    best.add(id);
+                }
+            }
+            int[] matches = new int[best.size()];
+            for (int i = matches.length - 1; i >= 0; i--) {
+                matches[i] = best.poll();
+            }
+            List<String> result = new ArrayList<>(matches.length);
+            for (int id : matches) {
+                result.add(paths.get(id));
+            }
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Names starting with the query first, then shorter names, then by path.
+     */
+    private int compareMatches(int a, int b, String needle) {
+        String left = names.get(a);
+        String right = names.get(b);
+        boolean leftPrefix = left.startsWith(needle);
+        if (leftPrefix != right.startsWith(needle)) return leftPrefix ? -1 : 1;
+        if (left.length() != right.length()) return Integer.compare(left.length(), right.length());
+        return paths.get(a).compareTo(paths.get(b));
+    }
+
+    /**
+     * Posting lists every match must be in, smallest first; null when one of them is empty.
+     */
+    private IntOpenHashSet[] postingsFor(String needle) {
+        int gramCount = needle.length() == 1 ? 1 : needle.length() - 1;
+        IntOpenHashSet[] lists = new IntOpenHashSet[gramCount];
+        for (int i = 0; i < gramCount; i++) {
+            long gram = needle.length() == 1 ? unigram(needle.charAt(0)) : bigram(needle.charAt(i), needle.charAt(i + 1));
+            IntOpenHashSet list = postings.get(gram);
+            if (list == null || list.isEmpty()) return null;
+            lists[i] = list;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size(), b.size()));
+        return lists;
+    }
+
+    private static boolean containsAll(IntOpenHashSet[] lists, int id) {
+        for (int i = 1; i < lists.length; i++) {
+            if (!lists[i].contains(id)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Rebuilds when the index is older than the snapshot, e.g. it was never built, a delta was missed, or a
+     * snapshot was published without going through {@link #onUpdate} (such as {@code loadState}).
+     */
+    private void ensureBuilt(AnnotationSnapshot snapshot) {
+        lock.readLock().lock();
+        try {
+            if (version >= snapshot.getVersion()) return;
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            if (version >= snapshot.getVersion()) return;
+            paths.clear();
+            names.clear();
+            freeIds.clear();
+            idByPath.clear();
+            postings.clear();
+            for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : snapshot.getAnnotations().entrySet()) {
+                addEntry(entry.getKey(), entry.getValue().chineseName);
+            }
+            version = snapshot.getVersion();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void addEntry(String path, String chineseName) {
+        String name = chineseName == null ? "" : chineseName.toLowerCase();
+        int id;
+        if (freeIds.isEmpty()) {
+            id = paths.size();
+            paths.add(path);
+            names.add(name);
+        } else {
+            id = freeIds.popInt();
+            paths.set(id, path);
+            names.set(id, name);
+        }
+        idByPath.put(path, id);
+        forEachGram(name, gram -> postings.computeIfAbsent(gram, g -> new IntOpenHashSet(4)).add(id));
+    }
+
+    private void removeEntry(String path) {
+        int id = idByPath.removeInt(path);
+        if (id < 0) return;
+        forEachGram(names.get(id), gram -> {
+            IntOpenHashSet list = postings.get(gram);
+            if (list != null) {
+                list.remove(id);
+                if (list.isEmpty()) postings.remove(gram);
+            }
+        });
+        paths.set(id, null);
+        names.set(id, null);
+        freeIds.add(id);
+    }
+
+    private static void forEachGram(String name, LongConsumer consumer) {
+        for (int i = 0; i < name.length(); i++) {
+            consumer.accept(unigram(name.charAt(i)));
+            if (i + 1 < name.length()) {
+                consumer.accept(bigram(name.charAt(i), name.charAt(i + 1)));
+            }
+        }
+    }
+
+    /**
+     * Unigrams are the char itself; bigrams pack both chars above bit 32 so the two ranges never overlap.
+     */
+    private static long unigram(char c) {
+        return c;
+    }
+
+    private static long bigram(char first, char second) {
+        return (1L << 32) | ((long) first << 16) | second;
+    }
+}
@@ -0,0 +1,211 @@
+package com.zeng.chineseannotator.service;
+
+import com.zeng.chineseannotator.storage.LayeredAnnotationMap;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable, versioned view of all annotations.
+ * <p>
+ * Writers build a new snapshot and publish it with a single atomic swap; readers take one volatile read
+ * and then work on a consistent view without locks. The id index and the sorted paths are derived lazily, once
+ * per snapshot: from those of an earlier snapshot plus the paths changed since, when there are any, otherwise
+ * from scratch.
+ */
+public final class AnnotationSnapshot {
+
+    static final AnnotationSnapshot EMPTY = new AnnotationSnapshot(0, Collections.emptyMap());
+    /** Below this many changed paths a derived structure is always updated rather than rebuilt. */
+    private static final int MIN_REBUILD_PATHS = 1024;
+
+    private final long version;
+    private final Map<String, ChineseNameService.FolderAnnotation> raw;
+    private final Map<String, ChineseNameService.FolderAnnotation> byPath;
+    private volatile AnnotationIndex index;
+    private volatile SortedPathIndex sortedPaths;
+    // Guarded by this; the structures of an earlier snapshot plus the paths changed since, dropped once derived
+    @Nullable
+    private Delta<AnnotationIndex> indexDelta;
+    @Nullable
+    private Delta<SortedPathIndex> sortedPathsDelta;
+
+    private AnnotationSnapshot(long version, Map<String, ChineseNameService.FolderAnnotation> raw) {
+        this.version = version;
+        this.raw = raw;
+        this.byPath = Collections.unmodifiableMap(raw);
+    }
+
+    /**
+     * Creates the successor of this snapshot. The given map is owned by the new snapshot and must not be touched afterwards.
+     */
+    AnnotationSnapshot next(@NotNull Map<String, ChineseNameService.FolderAnnotation> newAnnotations) {
+        return new AnnotationSnapshot(version + 1, newAnnotations);
+    }
+
+    /**
+     * Creates a successor that differs from this snapshot only in {@code changedPaths}, so its derived
+     * structures can be updated from this snapshot's instead of being rebuilt. {@code newMap} tells that the
+     * unchanged annotations live in a different map now, e.g. after a fold or on a freshly written compact file.
+     * The set must not be modified afterwards.
+     */
+    AnnotationSnapshot next(@NotNull Map<String, ChineseNameService.FolderAnnotation> newAnnotations,
+                            @NotNull Set<String> changedPaths, boolean newMap) {
+        AnnotationSnapshot next = next(newAnnotations);
+        Delta<AnnotationIndex> nextIndexDelta;
+        Delta<SortedPathIndex> nextSortedPathsDelta;
+        synchronized (this) {
+            nextIndexDelta = Delta.after(index, indexDelta, changedPaths, newMap);
+            nextSortedPathsDelta = Delta.after(sortedPaths, sortedPathsDelta, changedPaths, false);
+        }
+        // Past this many changes, rebuilding is as cheap as replaying them
+        int limit = Math.max(MIN_REBUILD_PATHS, newAnnotations.size() / 4);
+        synchronized (next) {
+            next.indexDelta = nextIndexDelta != null && nextIndexDelta.count <= limit ? nextIndexDelta : null;
+            next.sortedPathsDelta = nextSortedPathsDelta != null && nextSortedPathsDelta.count <= limit ? nextSortedPathsDelta : null;
+        }
+        return next;
+    }
+
+    /**
+     * Retries the paths at or below a folder the VFS did not know when they were indexed, e.g. after the
+     * folder was created or moved into place. Returns whether there were any.
+     */
+    boolean resolveAtOrBelow(@NotNull String path) {
+        synchronized (this) {
+            AnnotationIndex built = index != null ? index : indexDelta != null ? indexDelta.base : null;
+            if (built == null) return false;
+            List<String> paths = built.unresolvedAtOrBelow(path);
+            if (paths.isEmpty()) return false;
+            reindex(paths);
+            return true;
+        }
+    }
+
+    /**
+     * Looks the given paths up in the VFS again, e.g. after their folders were deleted and now count as unresolved.
+     * Must be called with the service's write lock held, so no successor derives its index concurrently.
+     */
+    synchronized void reindex(@NotNull Collection<String> paths) {
+        if (index != null) {
+            index = index.derive(byPath, paths, false);
+        } else if (indexDelta != null) {
+            indexDelta = new Delta<>(indexDelta.base, indexDelta, new HashSet<>(paths), indexDelta.rebind);
+        }
+    }
+
+    boolean isLayered() {
+        return raw instanceof LayeredAnnotationMap;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Unmodifiable path-to-annotation map.
+     */
+    @NotNull
+    public Map<String, ChineseNameService.FolderAnnotation> getAnnotations() {
+        return byPath;
+    }
+
+    @Nullable
+    public ChineseNameService.FolderAnnotation get(String folderPath) {
+        return byPath.get(folderPath);
+    }
+
+    public int size() {
+        return byPath.size();
+    }
+
+    public boolean isEmpty() {
+        return byPath.isEmpty();
+    }
+
+    AnnotationIndex index() {
+        AnnotationIndex result = index;
+        if (result != null) return result;
+        synchronized (this) {
+            result = index;
+            if (result == null) {
+                if (indexDelta != null) {
+                    result = indexDelta.base.derive(byPath, indexDelta.collect(), indexDelta.rebind);
+                } else {
+                    result = byPath.isEmpty() ? AnnotationIndex.EMPTY : AnnotationIndex.build(byPath);
+                }
+                index = result;
+                indexDelta = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Annotated paths in sorted order; derived lazily like the id index, but without touching the VFS.
+     */
+    SortedPathIndex sortedPaths() {
+        SortedPathIndex result = sortedPaths;
+        if (result != null) return result;
+        synchronized (this) {
+            result = sortedPaths;
+            if (result == null) {
+                if (sortedPathsDelta != null) {
+                    result = sortedPathsDelta.base.derive(byPath, sortedPathsDelta.collect());
+                } else {
+                    result = byPath.isEmpty() ? SortedPathIndex.EMPTY : SortedPathIndex.build(byPath.keySet());
+                }
+                sortedPaths = result;
+                sortedPathsDelta = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * A structure derived for an earlier snapshot plus the paths changed since, as an immutable chain of the
+     * changed-path sets of the snapshots in between, so passing it on costs nothing per snapshot.
+     */
+    private static final class Delta<T> {
+        final T base;
+        @Nullable
+        final Delta<T> earlier;
+        final Set<String> changed;
+        /** Upper bound of the distinct changed paths along the chain. */
+        final int count;
+        final boolean rebind;
+
+        Delta(T base, @Nullable Delta<T> earlier, Set<String> changed, boolean rebind) {
+            this.base = base;
+            this.earlier = earlier;
+            this.changed = changed;
+            this.count = changed.size() + (earlier != null ? earlier.count : 0);
+            this.rebind = rebind;
+        }
+
+        /**
+         * Delta of the successor of a snapshot that has {@code built} or, if that was never asked for, {@code pending}.
+         */
+        @Nullable
+        static <T> Delta<T> after(@Nullable T built, @Nullable Delta<T> pending, Set<String> changed, boolean rebind) {
+            if (built != null) return new Delta<>(built, null, changed, rebind);
+            if (pending == null) return null;
+            return new Delta<>(pending.base, pending, changed, rebind || pending.rebind);
+        }
+
+        Set<String> collect() {
+            Set<String> result = new HashSet<>(count);
+            for (Delta<T> delta = this; delta != null; delta = delta.earlier) {
+                result.addAll(delta.changed);
+            }
+            return result;
+        }
+    }
+}
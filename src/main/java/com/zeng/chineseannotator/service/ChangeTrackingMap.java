@@ -0,0 +1,79 @@
+package com.zeng.chineseannotator.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.AbstractMap;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Write-through view handed to {@link ChineseNameService#update} callers; remembers which paths were touched
+ * so derived structures can be updated from the delta instead of being rebuilt.
+ * Values are stored as their {@link AnnotationInterner} canonical instances.
+ */
+final class ChangeTrackingMap extends AbstractMap<String, ChineseNameService.FolderAnnotation> {
+
+    private final Map<String, ChineseNameService.FolderAnnotation> delegate;
+    private final Set<String> changedKeys = new HashSet<>();
+    private boolean cleared;
+
+    ChangeTrackingMap(@NotNull Map<String, ChineseNameService.FolderAnnotation> delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Paths put or removed since creation; meaningless once {@link #isCleared()}.
+     */
+    Set<String> getChangedKeys() {
+        return changedKeys;
+    }
+
+    boolean isCleared() {
+        return cleared;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return delegate.containsKey(key);
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation get(Object key) {
+        return delegate.get(key);
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation put(String key, ChineseNameService.FolderAnnotation value) {
+        if (!cleared) changedKeys.add(key);
+        return delegate.put(key, AnnotationInterner.intern(value));
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation remove(Object key) {
+        if (!cleared && key instanceof String) changedKeys.add((String) key);
+        return delegate.remove(key);
+    }
+
+    @Override
+    public void clear() {
+        cleared = true;
+        changedKeys.clear();
+        delegate.clear();
+    }
+
+    /**
+     * Read-only, so every write goes through {@link #put} and {@link #remove}.
+     */
+    @NotNull
+    @Override
+    public Set<Entry<String, ChineseNameService.FolderAnnotation>> entrySet() {
+        return Collections.unmodifiableSet(delegate.entrySet());
+    }
+}
@@ -1,15 +1,46 @@
 package com.zeng.chineseannotator.service;
 
 import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.SettingsSavingComponent;
 import com.intellij.openapi.components.State;
 import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.diagnostic.Logger;
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.project.ProjectUtil;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.VirtualFileWithId;
 import com.intellij.util.xmlb.XmlSerializerUtil;
+import com.zeng.chineseannotator.diagnostics.AnnotatorMetrics;
+import com.zeng.chineseannotator.io.MarkerFile;
+import com.zeng.chineseannotator.io.SharedAnnotationFile;
+import com.zeng.chineseannotator.search.PinyinForms;
+import com.zeng.chineseannotator.storage.AnnotationChange;
+import com.zeng.chineseannotator.storage.ColumnarAnnotationMap;
+import com.zeng.chineseannotator.storage.CompactAnnotationMap;
+import com.zeng.chineseannotator.storage.CompactAnnotationStorage;
+import com.zeng.chineseannotator.storage.LayeredAnnotationMap;
+import com.zeng.chineseannotator.storage.ProjectPathMacro;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 /**
  * Service to manage Chinese name annotations for folders.
@@ -19,7 +50,14 @@ import java.util.Map;
         name = "ChineseNameService",
         storages = @Storage("chineseName.xml")
 )
-public class ChineseNameService implements PersistentStateComponent<ChineseNameService> {
+public class ChineseNameService implements PersistentStateComponent<ChineseNameService>, SettingsSavingComponent {
+
+    private static final Logger LOG = Logger.getInstance(ChineseNameService.class);
+
+    /**
+     * File name of the compact annotation storage inside the project's .idea directory.
+     */
+    public static final String COMPACT_FILE_NAME = "chineseName.bin";
 
     /**
      * Whether press-and-hold shortcut temporarily shows original names.
@@ -32,60 +70,829 @@ public class ChineseNameService implements PersistentStateComponent<ChineseNameS
      */
     public boolean defaultHideOriginalOnAdd = false;
 
+    /**
+     * Store annotations in a memory-mapped compact file ({@link #COMPACT_FILE_NAME}) instead of chineseName.xml.
+     * Meant for large annotation sets; existing XML annotations are migrated on the next save.
+     */
+    public boolean compactStorageEnabled = false;
+
+    /**
+     * What the background sweep does with annotations whose folder no longer exists.
+     */
+    public StaleAnnotationPolicy staleAnnotationPolicy = StaleAnnotationPolicy.REPORT;
+
+    /**
+     * Days a folder must stay missing before its annotation counts as stale, so that switching to a branch
+     * without the folder does not lose it. This covers folders deleted in the IDE or by a VCS checkout too:
+     * their annotations are kept and counted as missing from the deletion on.
+     */
+    public int staleRetentionDays = 30;
+
+    /**
+     * Pattern rules such as {@code **}{@code /dao} → "数据访问", applied to every matching directory.
+     * Exact-path entries in {@link #annotations} always win over rules; among rules the first match wins.
+     */
+    public List<AnnotationRule> rules = new ArrayList<>();
+
+    /**
+     * Templates such as {@code src/main/resources/script} → "脚本", keyed by the directory path relative to a module
+     * content root, so one entry covers the same layout in every module. Stored as rules whose {@code pattern} is
+     * the relative path. Exact-path entries win over templates, templates over {@link #rules}.
+     */
+    public List<AnnotationRule> templates = new ArrayList<>();
+
     /**
      * Transient runtime flag toggled while user holds the shortcut.
      */
     public transient volatile boolean previewOriginalActive = false;
 
     /**
-     * Map of folder paths to their Chinese annotations.
-     * Key: absolute folder path
+     * Map of folder and file paths to their Chinese annotations.
+     * Key: folder or file path, stored relative to the project as {@code $PROJECT_DIR$/...} when inside it
      * Value: Chinese annotation
+     * <p>
+     * Persisted form only: filled from the current snapshot in {@link #getState()} and read back in
+     * {@link #loadState}. Runtime code must go through {@link #getSnapshot()} and the write methods.
      */
     public Map<String, FolderAnnotation> annotations = new HashMap<>();
 
+    /**
+     * Current immutable snapshot of all annotations, including the lazily built VirtualFile id index.
+     */
+    private final transient AtomicReference<AnnotationSnapshot> snapshot = new AtomicReference<>(AnnotationSnapshot.EMPTY);
+
+    /**
+     * Team-shared annotations published by {@link SharedAnnotations}; consulted only for paths without a personal
+     * annotation, and never persisted here.
+     */
+    private final transient AtomicReference<AnnotationSnapshot> sharedSnapshot = new AtomicReference<>(AnnotationSnapshot.EMPTY);
+
+    /**
+     * Annotations from per-directory marker files, published by {@link MarkerAnnotations}; they win over shared
+     * annotations but not over personal ones, and are never persisted here.
+     */
+    private final transient AtomicReference<AnnotationSnapshot> markerSnapshot = new AtomicReference<>(AnnotationSnapshot.EMPTY);
+
+    /**
+     * Snapshot version last copied into {@link #annotations}.
+     */
+    private transient long exportedVersion = -1;
+    private transient boolean exportedToCompactFile;
+
+    /**
+     * Snapshot version durably stored in the compact file plus its journal, or -1 if they are out of date.
+     * Only advanced once every queued journal append has succeeded; {@link #getState()} drops the annotations
+     * from the XML only while this matches the current snapshot.
+     */
+    private transient volatile long compactFileVersion = -1;
+
+    /**
+     * Snapshot version whose changes are all queued for the journal, or -1 once a write was not journaled or an
+     * append failed; the next write then goes to a full compact file. Guarded by {@link #writeLock}.
+     */
+    private transient long journaledVersion = -1;
+
+    /**
+     * Journal appends queued but not yet reported back. Guarded by {@link #writeLock}.
+     */
+    private transient int pendingAppends;
+
+    /**
+     * Compact file and journal; created on first use while {@link #compactStorageEnabled} is on.
+     */
+    private transient CompactAnnotationStorage compactStorage;
+
+    /**
+     * Journaled change batches not yet folded into the compact file, replayed onto the new base after compaction.
+     * Guarded by {@link #writeLock}.
+     */
+    private final transient List<JournaledBatch> unfoldedBatches = new ArrayList<>();
+
+    /**
+     * Serializes writers so journal order matches publish order. Readers never take it.
+     */
+    private final transient Object writeLock = new Object();
+
+    private final transient Project project;
+
+    /**
+     * Chinese name search index, kept current by {@link #update} once a search has built it.
+     */
+    private final transient AnnotationSearchIndex searchIndex = new AnnotationSearchIndex();
+
+    /**
+     * {@link #rules} compiled into one matcher; null means stale, recompiled on next use.
+     */
+    private transient volatile RuleMatcher ruleMatcher;
+
+    /**
+     * {@link #templates} in a trie with memoized results; kept across template and roots changes and invalidated
+     * only where they could differ.
+     */
+    private final transient TemplateMatcher templateMatcher;
+
+    /**
+     * Pinyin forms by display text, for speed search, which only sees node text; empty for text without Han
+     * characters. Computed on first lookup and cleared when it grows past {@link #MAX_PINYIN_ENTRIES}.
+     */
+    private final transient Map<String, Optional<PinyinForms>> pinyinByDisplayText = new ConcurrentHashMap<>();
+    private static final int MAX_PINYIN_ENTRIES = 1 << 16;
+
+    /**
+     * Below this many layered changes a snapshot is not worth folding into a columnar map.
+     */
+    private static final int MIN_FOLD_ENTRIES = 1024;
+
+    /**
+     * Updates touching more paths skip recording display names for the refresher; a batch that large is
+     * rarely a no-op, and looking up each path would slow it down.
+     */
+    private static final int MAX_RECORDED_DISPLAY_NAMES = 256;
+
+    /**
+     * Bumped after every change that can alter how any folder or file resolves or renders: annotations, shared
+     * annotations, rules, templates, directory moves and the show-original toggle. See {@link AnnotatedNameCache}.
+     */
+    private final transient AtomicLong modificationCount = new AtomicLong();
+
+    private final transient LongAdder displayNameCacheHits = new LongAdder();
+    private final transient LongAdder displayNameCacheMisses = new LongAdder();
+
+    public ChineseNameService(Project project) {
+        this.project = project;
+        this.templateMatcher = new TemplateMatcher(project);
+    }
+
+    /**
+     * Used by the XML serializer to create the state bean passed to {@link #loadState}.
+     */
+    public ChineseNameService() {
+        this(null);
+    }
+
     public static ChineseNameService getInstance(Project project) {
         return project.getService(ChineseNameService.class);
     }
 
     @Nullable
     @Override
-    public ChineseNameService getState() {
+    public synchronized ChineseNameService getState() {
+        long start = AnnotatorMetrics.start();
+        try {
+            exportState();
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.GET_STATE, start);
+        }
         return this;
     }
 
+    private void exportState() {
+        AnnotationSnapshot current = snapshot.get();
+        // Annotations already in an up-to-date compact file are not duplicated into the XML
+        boolean inCompactFile = compactStorageEnabled && compactFileVersion == current.getVersion();
+        if (current.getVersion() != exportedVersion || inCompactFile != exportedToCompactFile) {
+            annotations = inCompactFile ? new HashMap<>() : collapsePaths(current.getAnnotations());
+            exportedVersion = current.getVersion();
+            exportedToCompactFile = inCompactFile;
+        }
+    }
+
     @Override
     public void loadState(@NotNull ChineseNameService state) {
-        XmlSerializerUtil.copyBean(state, this);
+        long start = AnnotatorMetrics.start();
+        try {
+            load(state);
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.LOAD_STATE, start);
+        }
+    }
+
+    private void load(ChineseNameService state) {
+        synchronized (writeLock) {
+            synchronized (this) {
+                XmlSerializerUtil.copyBean(state, this);
+                Map<String, FolderAnnotation> loaded = annotations != null ? expandPaths(annotations) : new HashMap<>();
+                boolean fromCompactFile = false;
+                if (loaded.isEmpty() && compactStorageEnabled) {
+                    // XML annotations, if any, win: they are either pre-migration data or a fallback after a failed write
+                    LayeredAnnotationMap stored = loadCompactStorage();
+                    if (stored != null) {
+                        loaded = stored;
+                        fromCompactFile = true;
+                    }
+                }
+                if (!fromCompactFile) {
+                    loaded = new LayeredAnnotationMap(ColumnarAnnotationMap.build(loaded));
+                }
+                AnnotationSnapshot loadedSnapshot = snapshot.get().next(loaded);
+                snapshot.set(loadedSnapshot);
+                unfoldedBatches.clear();
+                exportedVersion = -1;
+                compactFileVersion = fromCompactFile ? loadedSnapshot.getVersion() : -1;
+                journaledVersion = compactFileVersion;
+                if (rules == null) rules = new ArrayList<>();
+                if (templates == null) templates = new ArrayList<>();
+                ruleMatcher = null;
+                templateMatcher.setTemplates(templates);
+                modificationCount.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Runs before the XML state is collected. Flushes the journal when it is up to date, otherwise writes a full
+     * compact file (e.g. right after migrating from XML), so {@link #getState()} can drop the annotations from the XML.
+     */
+    @Override
+    public void save() {
+        if (!compactStorageEnabled) return;
+        CompactAnnotationStorage storage = getCompactStorage();
+        if (storage == null) return;
+        AnnotationSnapshot current = snapshot.get();
+        long start = AnnotatorMetrics.start();
+        try {
+            if (isJournaled(current)) {
+                // Waits for the queued appends, whose results advance or reset compactFileVersion
+                storage.flush();
+            }
+            if (compactFileVersion != current.getVersion()) {
+                rebase(current.getVersion(), storage.writeSnapshot(current.getAnnotations()));
+            }
+        } catch (IOException e) {
+            // Keep annotations in the XML until a later save succeeds
+            LOG.warn("Failed to save compact annotation storage", e);
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.SAVE_COMPACT, start);
+        }
+    }
+
+    @Nullable
+    private LayeredAnnotationMap loadCompactStorage() {
+        CompactAnnotationStorage storage = getCompactStorage();
+        if (storage == null) return null;
+        try {
+            return storage.load();
+        } catch (IOException e) {
+            LOG.warn("Failed to read compact annotation storage", e);
+            return null;
+        }
+    }
+
+    @Nullable
+    private synchronized CompactAnnotationStorage getCompactStorage() {
+        if (compactStorage == null) {
+            String basePath = getProjectDir();
+            if (basePath == null) return null;
+            compactStorage = new CompactAnnotationStorage(Path.of(basePath, Project.DIRECTORY_STORE_FOLDER, COMPACT_FILE_NAME), basePath);
+        }
+        return compactStorage;
+    }
+
+    @Nullable
+    private String getProjectDir() {
+        return project != null ? project.getBasePath() : null;
+    }
+
+    private Map<String, FolderAnnotation> collapsePaths(Map<String, FolderAnnotation> source) {
+        String projectDir = getProjectDir();
+        Map<String, FolderAnnotation> result = new HashMap<>(source.size());
+        source.forEach((path, annotation) -> result.put(ProjectPathMacro.collapse(projectDir, path), annotation));
+        return result;
+    }
+
+    private Map<String, FolderAnnotation> expandPaths(Map<String, FolderAnnotation> source) {
+        String projectDir = getProjectDir();
+        Map<String, FolderAnnotation> result = new HashMap<>(source.size());
+        source.forEach((path, annotation) -> result.put(ProjectPathMacro.expand(projectDir, path), annotation));
+        return result;
+    }
+
+    /**
+     * Publishes the current annotations on top of a freshly written compact file, so later copies only carry
+     * the changes made after {@code foldedVersion}.
+     */
+    private void rebase(long foldedVersion, @NotNull CompactAnnotationMap newBase) {
+        synchronized (writeLock) {
+            AnnotationSnapshot current = snapshot.get();
+            if (foldedVersion > current.getVersion()) return;
+            boolean journaled = journaledVersion == current.getVersion();
+            if (!journaled && current.getVersion() != foldedVersion) {
+                // Some later changes were never journaled; the next save writes a full snapshot instead
+                return;
+            }
+            LayeredAnnotationMap rebased = new LayeredAnnotationMap(newBase);
+            for (JournaledBatch batch : unfoldedBatches) {
+                if (batch.version > foldedVersion) {
+                    batch.changes.forEach(change -> change.applyTo(rebased));
+                }
+            }
+            unfoldedBatches.removeIf(batch -> batch.version <= foldedVersion);
+            AnnotationSnapshot next = current.next(rebased, Collections.emptySet(), true);
+            snapshot.set(next);
+            journaledVersion = next.getVersion();
+            // Appends still queued after the compaction advance compactFileVersion once they succeed
+            if (pendingAppends == 0) compactFileVersion = next.getVersion();
+            // Same contents on a new base
+            searchIndex.onUpdate(current.getVersion(), next, Collections.emptySet(), false);
+        }
+    }
+
+    /**
+     * Current immutable snapshot; one volatile read, never blocks.
+     */
+    @NotNull
+    public AnnotationSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Unmodifiable view of all personal annotations, keyed by absolute folder or file path.
+     */
+    @NotNull
+    public Map<String, FolderAnnotation> getAnnotations() {
+        return snapshot.get().getAnnotations();
+    }
+
+    public void setHoldToShowOriginalEnabled(boolean enabled) {
+        holdToShowOriginalEnabled = enabled;
+        modificationCount.incrementAndGet();
+    }
+
+    public void setPreviewOriginalActive(boolean active) {
+        previewOriginalActive = active;
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Whether original names are temporarily shown everywhere instead of annotations.
+     */
+    public boolean isPreviewingOriginalNames() {
+        return holdToShowOriginalEnabled && previewOriginalActive;
+    }
+
+    /**
+     * Changes whenever any resolved annotation or display name may have changed; published after the change.
+     */
+    public long getModificationCount() {
+        return modificationCount.get();
+    }
+
+    public long getDisplayNameCacheHits() {
+        return displayNameCacheHits.sum();
+    }
+
+    public long getDisplayNameCacheMisses() {
+        return displayNameCacheMisses.sum();
     }
 
     /**
      * Add or update Chinese annotation for a folder
      */
     public void addAnnotation(String folderPath, String chineseName, boolean hideOriginalName) {
-        annotations.put(folderPath, new FolderAnnotation(chineseName, hideOriginalName));
+        FolderAnnotation annotation = new FolderAnnotation(chineseName, hideOriginalName);
+        update(map -> map.put(folderPath, annotation));
     }
 
     /**
-     * Get annotation for a folder
+     * Get annotation for a folder, personal first, then marker file, then shared
      */
     @Nullable
     public FolderAnnotation getAnnotation(String folderPath) {
-        return annotations.get(folderPath);
+        FolderAnnotation personal = snapshot.get().get(folderPath);
+        if (personal != null) return personal;
+        FolderAnnotation marker = markerSnapshot.get().get(folderPath);
+        return marker != null ? marker : sharedSnapshot.get().get(folderPath);
+    }
+
+    /**
+     * Name of the file a path's annotation comes from when it has no personal one, i.e. its marker file or the
+     * shared annotation file, or null. Such annotations are edited in that file, not through personal annotations.
+     */
+    @Nullable
+    public String getAnnotationSourceFileName(String folderPath) {
+        if (snapshot.get().get(folderPath) != null) return null;
+        if (markerSnapshot.get().get(folderPath) != null) return MarkerFile.FILE_NAME;
+        return sharedSnapshot.get().get(folderPath) != null ? SharedAnnotationFile.FILE_NAME : null;
+    }
+
+    /**
+     * Replaces the shared annotations; the map is owned by the service afterwards.
+     */
+    void publishSharedAnnotations(@NotNull Map<String, FolderAnnotation> shared) {
+        sharedSnapshot.set(sharedSnapshot.get().next(shared));
+        modificationCount.incrementAndGet();
+    }
+
+    public int getSharedAnnotationCount() {
+        return sharedSnapshot.get().size();
+    }
+
+    /**
+     * Replaces the marker file annotations; the map is owned by the service afterwards.
+     */
+    void publishMarkerAnnotations(@NotNull Map<String, FolderAnnotation> markers) {
+        markerSnapshot.set(markerSnapshot.get().next(markers));
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Whether a personal or marker annotation hides the shared annotation of this path.
+     */
+    boolean shadowsSharedAnnotation(String folderPath) {
+        return snapshot.get().get(folderPath) != null || markerSnapshot.get().get(folderPath) != null;
+    }
+
+    public int getMarkerAnnotationCount() {
+        return markerSnapshot.get().size();
     }
 
     /**
      * Remove annotation for a folder
      */
     public void removeAnnotation(String folderPath) {
-        annotations.remove(folderPath);
+        update(map -> map.remove(folderPath));
+    }
+
+    /**
+     * Replace all annotations at once; readers see either the old or the new set, never a mix.
+     */
+    public void replaceAnnotations(@NotNull Map<String, FolderAnnotation> newAnnotations) {
+        Map<String, FolderAnnotation> copy = new HashMap<>(newAnnotations);
+        update(map -> {
+            map.clear();
+            map.putAll(copy);
+        });
+    }
+
+    /**
+     * Copy-on-write update: applies the change to a private copy and publishes it atomically.
+     * Writers are serialized; readers keep seeing the previous snapshot until the new one is published.
+     * With compact storage the change is appended to the journal instead of rewriting all annotations.
+     */
+    public void update(@NotNull Consumer<Map<String, FolderAnnotation>> change) {
+        synchronized (writeLock) {
+            AnnotationSnapshot current = snapshot.get();
+            Map<String, FolderAnnotation> copy = current.copy();
+            ChangeTrackingMap tracked = new ChangeTrackingMap(copy);
+            change.accept(tracked);
+            Map<String, String> displayNamesBefore = captureDisplayNames(current, tracked);
+            boolean folded = false;
+            if (!compactStorageEnabled) {
+                Map<String, FolderAnnotation> unfolded = copy;
+                copy = foldIfLarge(copy);
+                folded = copy != unfolded;
+            }
+            AnnotationSnapshot next = tracked.isCleared() ? current.next(copy)
+                    : current.next(copy, tracked.getChangedKeys(), folded);
+            snapshot.set(next);
+            modificationCount.incrementAndGet();
+            if (displayNamesBefore != null) {
+                ProjectViewRefresher.getInstance(project).recordDisplayNames(displayNamesBefore);
+            }
+            searchIndex.onUpdate(current.getVersion(), next, tracked.getChangedKeys(), tracked.isCleared());
+
+            if (!compactStorageEnabled || !(copy instanceof LayeredAnnotationMap) || !isJournaled(current)) {
+                journaledVersion = -1;
+                compactFileVersion = -1;
+                return;
+            }
+            CompactAnnotationStorage storage = getCompactStorage();
+            if (storage == null) return;
+            List<AnnotationChange> changes = ((LayeredAnnotationMap) copy).getChanges();
+            pendingAppends++;
+            storage.append(changes, this::onJournalAppended);
+            unfoldedBatches.add(new JournaledBatch(next.getVersion(), changes));
+            journaledVersion = next.getVersion();
+            if (storage.needsCompaction()) {
+                long foldedVersion = next.getVersion();
+                storage.compactInBackground(next.getAnnotations(), newBase -> rebase(foldedVersion, newBase));
+            }
+        }
+    }
+
+    private boolean isJournaled(AnnotationSnapshot current) {
+        synchronized (writeLock) {
+            return journaledVersion == current.getVersion();
+        }
+    }
+
+    /**
+     * Result of one journal append, on the storage thread. Once all queued appends succeeded the compact file
+     * is current; a failure leaves a gap in the journal, so the XML keeps the full map until a full compact
+     * file is written by the next {@link #save()}.
+     */
+    private void onJournalAppended(boolean appended) {
+        synchronized (writeLock) {
+            pendingAppends--;
+            if (!appended) {
+                journaledVersion = -1;
+                compactFileVersion = -1;
+            } else if (pendingAppends == 0 && journaledVersion != -1) {
+                compactFileVersion = journaledVersion;
+            }
+        }
+    }
+
+    /**
+     * Display names of the changed paths in the old snapshot, so the refresher can drop updates that end up
+     * changing nothing; null for large or clearing updates, which are always refreshed.
+     * Runs under the write lock, so it reads the path maps only and never the id index or the VFS. Paths a rule
+     * or template might cover are left out, since whether such a path is a directory cannot be told from the
+     * path; the refresher always updates paths without a recorded name.
+     */
+    @Nullable
+    private Map<String, String> captureDisplayNames(AnnotationSnapshot current, ChangeTrackingMap tracked) {
+        if (project == null || tracked.isCleared() || tracked.getChangedKeys().size() > MAX_RECORDED_DISPLAY_NAMES) {
+            return null;
+        }
+        boolean previewing = isPreviewingOriginalNames();
+        AnnotationSnapshot markers = markerSnapshot.get();
+        AnnotationSnapshot shared = sharedSnapshot.get();
+        // Compiling the rules would look up the project directory; until then any rule may match
+        RuleMatcher compiledRules = rules.isEmpty() ? RuleMatcher.EMPTY : ruleMatcher;
+        Map<String, String> result = new HashMap<>();
+        for (String path : tracked.getChangedKeys()) {
+            if (previewing) {
+                result.put(path, null);
+                continue;
+            }
+            FolderAnnotation annotation = current.get(path);
+            if (annotation == null) annotation = markers.get(path);
+            if (annotation == null) annotation = shared.get(path);
+            if (annotation != null) {
+                result.put(path, render(annotation, path.substring(path.lastIndexOf('/') + 1)));
+                continue;
+            }
+            if (templateMatcher.mayMatchPath(path)) continue;
+            if (compiledRules == null || compiledRules.matchesPath(path)) continue;
+            result.put(path, null);
+        }
+        return result;
+    }
+
+    /**
+     * Keeps in-memory snapshots columnar: once the changes layered over the columnar base (or a plain map) grow
+     * past an eighth of all entries, they are folded into a new {@link ColumnarAnnotationMap}.
+     * Each fold is O(n) and happens at most once per n/8 changed entries.
+     */
+    private static Map<String, FolderAnnotation> foldIfLarge(Map<String, FolderAnnotation> map) {
+        int pending = map instanceof LayeredAnnotationMap ? ((LayeredAnnotationMap) map).getOverlaySize() : map.size();
+        if (pending < MIN_FOLD_ENTRIES || pending < map.size() / 8) return map;
+        return new LayeredAnnotationMap(ColumnarAnnotationMap.build(map));
+    }
+
+    /**
+     * Re-keys annotations after folder renames, moves and deletes, as one snapshot.
+     * Each change moves every annotation at or below its old path to the new path, or drops it for a delete.
+     * Subtrees are looked up in the snapshot's {@link SortedPathIndex}, which is derived from the previous one,
+     * plus the paths this batch already moved, so a subtree costs O(log n + k) and nothing copies all paths.
+     */
+    public void applyPathChanges(@NotNull List<PathChange> changes) {
+        if (changes.isEmpty()) return;
+        update(map -> {
+            // The write lock is held, so this is the snapshot the map was copied from
+            SortedPathIndex sorted = snapshot.get().sortedPaths();
+            NavigableSet<String> added = new TreeSet<>();
+            Set<String> removed = new HashSet<>();
+            for (PathChange change : changes) {
+                List<String> moved = new ArrayList<>();
+                for (String path : sorted.atOrBelow(change.oldPath)) {
+                    // Paths this batch removed or wrote over are tracked in the sets instead
+                    if (!removed.contains(path) && !added.contains(path)) moved.add(path);
+                }
+                moved.addAll(subtree(added, change.oldPath));
+                List<FolderAnnotation> values = new ArrayList<>(moved.size());
+                for (String path : moved) {
+                    values.add(map.remove(path));
+                    removed.add(path);
+                    added.remove(path);
+                }
+                if (change.newPath == null) continue;
+                for (int i = 0; i < moved.size(); i++) {
+                    String newKey = change.newPath + moved.get(i).substring(change.oldPath.length());
+                    map.put(newKey, values.get(i));
+                    added.add(newKey);
+                }
+            }
+        });
+    }
+
+    /**
+     * Paths that are {@code root} or lie below it. '0' is the character right after '/'.
+     */
+    private static List<String> subtree(NavigableSet<String> sorted, String root) {
+        List<String> result = new ArrayList<>(sorted.subSet(root + "/", true, root + "0", false));
+        if (sorted.contains(root)) result.add(root);
+        return result;
+    }
+
+    /**
+     * Resolves annotations whose folder the VFS did not know when they were indexed, once a folder appears at
+     * or above their path, e.g. after it was created, copied or moved into place.
+     */
+    public void onFilesAppeared(@NotNull List<String> paths) {
+        if (paths.isEmpty()) return;
+        boolean resolved = false;
+        synchronized (writeLock) {
+            for (String path : paths) {
+                resolved |= snapshot.get().resolveAtOrBelow(path);
+                resolved |= markerSnapshot.get().resolveAtOrBelow(path);
+                resolved |= sharedSnapshot.get().resolveAtOrBelow(path);
+            }
+        }
+        if (resolved) modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Keeps the annotations at or below folders deleted in the IDE, as the folders may come back, e.g. when a
+     * VCS checkout switches to a branch that has them again. {@link StaleAnnotationSweeper} handles them like
+     * any other missing folder once {@link #staleRetentionDays} have passed. Their paths are indexed again,
+     * now as unresolved, so a recreated folder picks its annotation up.
+     */
+    public void onFoldersDeleted(@NotNull List<String> roots) {
+        List<String> paths = new ArrayList<>();
+        synchronized (writeLock) {
+            AnnotationSnapshot current = snapshot.get();
+            for (String root : roots) {
+                paths.addAll(current.sortedPaths().atOrBelow(root));
+            }
+            if (paths.isEmpty()) return;
+            current.reindex(paths);
+        }
+        modificationCount.incrementAndGet();
+        if (project != null) {
+            StaleAnnotationSweeper.getInstance(project).markMissing(paths);
+        }
+    }
+
+    /**
+     * Annotated folder paths whose Chinese name contains {@code query}, best matches first.
+     * Served from an n-gram index, so the cost depends on the number of matches rather than on all annotations.
+     */
+    @NotNull
+    public List<String> findFoldersByChineseName(@NotNull String query, int limit) {
+        return searchIndex.search(snapshot.get(), query, limit);
+    }
+
+    /**
+     * Current rules, in priority order.
+     */
+    @NotNull
+    public List<AnnotationRule> getAnnotationRules() {
+        return Collections.unmodifiableList(rules);
+    }
+
+    /**
+     * Replace all rules; they are recompiled on the next lookup.
+     */
+    public void replaceRules(@NotNull List<AnnotationRule> newRules) {
+        List<AnnotationRule> copy = new ArrayList<>(newRules.size());
+        for (AnnotationRule rule : newRules) {
+            copy.add(new AnnotationRule(rule.pattern, rule.chineseName, rule.hideOriginalName));
+        }
+        rules = copy;
+        ruleMatcher = null;
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Current templates, in priority order.
+     */
+    @NotNull
+    public List<AnnotationRule> getAnnotationTemplates() {
+        return Collections.unmodifiableList(templates);
+    }
+
+    /**
+     * Replace all templates; only memoized results for directories named like a changed template are dropped.
+     */
+    public void replaceTemplates(@NotNull List<AnnotationRule> newTemplates) {
+        List<AnnotationRule> copy = new ArrayList<>(newTemplates.size());
+        for (AnnotationRule template : newTemplates) {
+            copy.add(new AnnotationRule(template.pattern, template.chineseName, template.hideOriginalName));
+        }
+        templates = copy;
+        templateMatcher.setTemplates(copy);
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Rule and template results and {@link AnnotatedNameCache} entries are cached per directory id, which is only
+     * valid while paths stay put.
+     */
+    public void onDirectoriesMoved() {
+        RuleMatcher matcher = ruleMatcher;
+        if (matcher != null && !matcher.isEmpty()) {
+            matcher.clearCache();
+        }
+        if (!templateMatcher.isEmpty()) {
+            templateMatcher.clearCache();
+        }
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Module content roots may have been added, removed or moved; template results are kept if they did not.
+     */
+    public void onContentRootsChanged() {
+        if (!templateMatcher.isEmpty()) {
+            templateMatcher.onContentRootsChanged();
+            modificationCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Exact annotation for the folder or file, or else, for folders, the matching template or the first matching rule.
+     */
+    @Nullable
+    public FolderAnnotation resolveAnnotation(@NotNull VirtualFile folder) {
+        long start = AnnotatorMetrics.start();
+        try {
+            FolderAnnotation exact = getAnnotation(folder);
+            if (exact != null || !folder.isDirectory()) return exact;
+            FolderAnnotation template = templateMatcher.match(folder);
+            if (template != null) return template;
+            return getRuleMatcher().match(folder);
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.LOOKUP, start);
+        }
+    }
+
+    private RuleMatcher getRuleMatcher() {
+        RuleMatcher matcher = ruleMatcher;
+        if (matcher == null) {
+            List<AnnotationRule> current = rules;
+            matcher = current.isEmpty() || project == null
+                    ? RuleMatcher.EMPTY
+                    : new RuleMatcher(current, ProjectUtil.guessProjectDir(project));
+            ruleMatcher = matcher;
+        }
+        return matcher;
+    }
+
+    /**
+     * Whether the folder itself or anything below it is annotated, by VirtualFile id.
+     */
+    public boolean hasAnnotationsAtOrBelow(@NotNull VirtualFile folder) {
+        return getAnnotation(folder) != null || hasAnnotationsBelow(folder);
+    }
+
+    /**
+     * Get annotation for a folder by its VirtualFile id; does not build the path string.
+     */
+    @Nullable
+    public FolderAnnotation getAnnotation(@NotNull VirtualFile folder) {
+        if (!(folder instanceof VirtualFileWithId)) {
+            return getAnnotation(folder.getPath());
+        }
+        int id = ((VirtualFileWithId) folder).getId();
+        FolderAnnotation personal = snapshot.get().index().get(id);
+        if (personal != null) return personal;
+        AnnotationSnapshot markers = markerSnapshot.get();
+        FolderAnnotation marker = markers.isEmpty() ? null : markers.index().get(id);
+        if (marker != null) return marker;
+        AnnotationSnapshot shared = sharedSnapshot.get();
+        return shared.isEmpty() ? null : shared.index().get(id);
+    }
+
+    /**
+     * Whether any folder strictly below the given directory is annotated.
+     * Used to skip subtrees without annotations.
+     */
+    public boolean hasAnnotationsBelow(@NotNull VirtualFile directory) {
+        AnnotationSnapshot current = snapshot.get();
+        AnnotationSnapshot markers = markerSnapshot.get();
+        AnnotationSnapshot shared = sharedSnapshot.get();
+        if (!(directory instanceof VirtualFileWithId)) {
+            return !current.isEmpty() || !markers.isEmpty() || !shared.isEmpty();
+        }
+        int id = ((VirtualFileWithId) directory).getId();
+        return current.index().countBelow(id) > 0
+                || !markers.isEmpty() && markers.index().countBelow(id) > 0
+                || !shared.isEmpty() && shared.index().countBelow(id) > 0;
     }
 
     /**
      * Check if a folder has annotation
      */
     public boolean hasAnnotation(String folderPath) {
-        return annotations.containsKey(folderPath);
+        return getAnnotation(folderPath) != null;
+    }
+
+    /**
+     * Display name for a folder node, or null when the node should keep its original name.
+     * The folder name is only read when the folder is annotated.
+     */
+    @Nullable
+    public String getDecoratedName(@NotNull VirtualFile folder) {
+        if (isPreviewingOriginalNames()) {
+            return null;
+        }
+        FolderAnnotation annotation = resolveAnnotation(folder);
+        if (annotation == null) {
+            return null;
+        }
+        return render(annotation, folder.getName());
     }
 
     /**
@@ -93,28 +900,79 @@ public class ChineseNameService implements PersistentStateComponent<ChineseNameS
      */
     public String getDisplayName(String folderPath, String originalName) {
         // Press-and-hold: temporarily show original name
-        if (holdToShowOriginalEnabled && previewOriginalActive) {
+        if (isPreviewingOriginalNames()) {
             return originalName;
         }
         FolderAnnotation annotation = getAnnotation(folderPath);
         if (annotation == null) {
             return originalName;
         }
+        return render(annotation, originalName);
+    }
 
+    /**
+     * The rendered name depends only on the annotation and the original name, never on project settings, so the
+     * cache of an annotation shared through {@link AnnotationInterner} is valid in every project.
+     */
+    private String render(FolderAnnotation annotation, String originalName) {
+        // A hidden original renders alike for every folder
         if (annotation.hideOriginalName) {
+            displayNameCacheHits.increment();
             return annotation.chineseName;
-        } else {
-            return originalName + "(" + annotation.chineseName + ")";
         }
+        // Interned annotations are shared by every folder with the same name, e.g. "test" and "tests" as 测试
+        RenderedNames cached = annotation.rendered;
+        String text = cached != null ? cached.get(originalName) : null;
+        if (text != null) {
+            displayNameCacheHits.increment();
+            return text;
+        }
+        displayNameCacheMisses.increment();
+
+        text = AnnotationInterner.intern(originalName + "(" + annotation.chineseName + ")");
+        annotation.rendered = RenderedNames.with(cached, originalName, text);
+        return text;
+    }
+
+    /**
+     * Pinyin forms of {@code displayText}, or null when it has no Han characters, e.g. plain folder names.
+     * Depends on the text alone, so it works for names rendered in any project or before a reload.
+     */
+    @Nullable
+    public PinyinForms getPinyinForDisplayText(@NotNull String displayText) {
+        Optional<PinyinForms> forms = pinyinByDisplayText.get(displayText);
+        if (forms == null) {
+            forms = Optional.ofNullable(PinyinForms.of(displayText));
+            if (pinyinByDisplayText.size() >= MAX_PINYIN_ENTRIES) pinyinByDisplayText.clear();
+            pinyinByDisplayText.put(displayText, forms);
+        }
+        return forms.orElse(null);
     }
 
     /**
-     * Data class for folder annotation
+     * Handling of annotations whose folder no longer exists, see {@link StaleAnnotationSweeper}.
+     */
+    public enum StaleAnnotationPolicy {
+        /** Never sweep; annotations of missing folders are kept. */
+        OFF,
+        /** Notify about stale annotations and offer to remove them. */
+        REPORT,
+        /** Remove stale annotations automatically. */
+        PRUNE
+    }
+
+    /**
+     * Data class for a folder or file annotation
      */
     public static class FolderAnnotation {
         public String chineseName;
         public boolean hideOriginalName;
 
+        /**
+         * Recently rendered display names by original name; runtime only, never serialized.
+         */
+        private transient volatile RenderedNames rendered;
+
         public FolderAnnotation() {
             this("", false);
         }
@@ -123,6 +981,107 @@ public class ChineseNameService implements PersistentStateComponent<ChineseNameS
             this.chineseName = chineseName;
             this.hideOriginalName = hideOriginalName;
         }
+
+        /**
+         * Value equality, so equal annotations can be shared through {@link AnnotationInterner}.
+         */
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof FolderAnnotation)) return false;
+            FolderAnnotation that = (FolderAnnotation) o;
+            return hideOriginalName == that.hideOriginalName && Objects.equals(chineseName, that.chineseName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hashCode(chineseName) * 31 + (hideOriginalName ? 1 : 0);
+        }
     }
-}
 
+    /**
+     * A folder or file path change from the VFS: rename or move to {@code newPath}, or delete when it is null.
+     */
+    public static final class PathChange {
+        final String oldPath;
+        @Nullable
+        final String newPath;
+
+        public PathChange(@NotNull String oldPath, @Nullable String newPath) {
+            this.oldPath = oldPath;
+            this.newPath = newPath;
+        }
+    }
+
+    /**
+     * Changes appended to the journal for one snapshot version.
+     */
+    private static final class JournaledBatch {
+        final long version;
+        final List<AnnotationChange> changes;
+
+        JournaledBatch(long version, List<AnnotationChange> changes) {
+            this.version = version;
+            this.changes = changes;
+        }
+    }
+
+    /**
+     * Data class for a pattern rule
+     */
+    public static class AnnotationRule {
+        public String pattern;
+        public String chineseName;
+        public boolean hideOriginalName;
+
+        public AnnotationRule() {
+            this("", "", false);
+        }
+
+        public AnnotationRule(String pattern, String chineseName, boolean hideOriginalName) {
+            this.pattern = pattern;
+            this.chineseName = chineseName;
+            this.hideOriginalName = hideOriginalName;
+        }
+    }
+
+    /**
+     * Immutable display names of one annotation for up to {@value #MAX} original names, most recent first.
+     * Published as a single reference so readers never see a torn entry; a racing writer at worst drops a name.
+     */
+    private static final class RenderedNames {
+        static final int MAX = 8;
+
+        final String[] originalNames;
+        final String[] texts;
+
+        private RenderedNames(String[] originalNames, String[] texts) {
+            this.originalNames = originalNames;
+            this.texts = texts;
+        }
+
+        @Nullable
+        String get(String originalName) {
+            for (int i = 0; i < originalNames.length; i++) {
+                if (originalNames[i].equals(originalName)) return texts[i];
+            }
+            return null;
+        }
+
+        /**
+         * {@code names} plus the given entry; the least recent entry is dropped once {@link #MAX} are kept.
+         */
+        static RenderedNames with(@Nullable RenderedNames names, String originalName, String text) {
+            int kept = names == null ? 0 : Math.min(names.originalNames.length, MAX - 1);
+            String[] originalNames = new String[kept + 1];
+            String[] texts = new String[kept + 1];
+            originalNames[0] = originalName;
+            texts[0] = text;
+            if (kept > 0) {
+                System.arraycopy(names.originalNames, 0, originalNames, 1, kept);
+                System.arraycopy(names.texts, 0, texts, 1, kept);
+            }
+            return new RenderedNames(originalNames, texts);
+        }
+    }
+}
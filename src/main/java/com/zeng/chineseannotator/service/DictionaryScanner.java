@@ -0,0 +1,156 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.util.ProgressIndicatorUtils;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ProjectFileIndex;
+import com.intellij.openapi.roots.ProjectRootManager;
+import com.intellij.openapi.vfs.VFileProperty;
+import com.intellij.openapi.vfs.VfsUtilCore;
+import com.intellij.openapi.vfs.VirtualFile;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Walks all content roots in parallel and proposes annotations for folders whose name is in a dictionary.
+ * <p>
+ * Every directory is listed in its own short read action that yields to pending write actions, so a walk
+ * over 100k directories never blocks the IDE. Only the VFS is used; no PSI is loaded. Excluded and ignored
+ * directories are skipped, as are folders that already have an exact annotation.
+ */
+public final class DictionaryScanner {
+
+    /**
+     * A staged annotation waiting for review.
+     */
+    public static final class Proposal {
+        public final String folderPath;
+        public String chineseName;
+        public boolean hideOriginalName;
+        public boolean accepted = true;
+
+        Proposal(String folderPath, String chineseName, boolean hideOriginalName) {
+            this.folderPath = folderPath;
+            this.chineseName = chineseName;
+            this.hideOriginalName = hideOriginalName;
+        }
+    }
+
+    private final Project project;
+    private final Map<String, ChineseNameService.FolderAnnotation> dictionary;
+    private final ProgressIndicator indicator;
+    private final ChineseNameService service;
+    private final ProjectFileIndex fileIndex;
+    private final ConcurrentLinkedQueue<Proposal> proposals = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger scanned = new AtomicInteger();
+
+    public DictionaryScanner(@NotNull Project project,
+                             @NotNull Map<String, ChineseNameService.FolderAnnotation> dictionary,
+                             @NotNull ProgressIndicator indicator) {
+        this.project = project;
+        this.dictionary = dictionary;
+        this.indicator = indicator;
+        this.service = ChineseNameService.getInstance(project);
+        this.fileIndex = ProjectFileIndex.getInstance(project);
+    }
+
+    /**
+     * Runs the walk; throws {@link ProcessCanceledException} when the indicator is cancelled.
+     */
+    @NotNull
+    public List<Proposal> scan() {
+        List<VirtualFile> roots = ReadAction.compute(() -> topLevelRoots(ProjectRootManager.getInstance(project).getContentRoots()));
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors() - 1));
+        try {
+            List<DirectoryTask> tasks = new ArrayList<>(roots.size());
+            for (VirtualFile root : roots) {
+                DirectoryTask task = new DirectoryTask(root);
+                tasks.add(task);
+                pool.execute(task);
+            }
+            for (DirectoryTask task : tasks) {
+                task.join();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        indicator.checkCanceled();
+
+        List<Proposal> result = new ArrayList<>(proposals);
+        result.sort(Comparator.comparing(proposal -> proposal.folderPath));
+        return result;
+    }
+
+    /**
+     * Content roots not nested in another content root, so nested module roots are walked once.
+     */
+    private static List<VirtualFile> topLevelRoots(VirtualFile[] roots) {
+        List<VirtualFile> result = new ArrayList<>(roots.length);
+        for (VirtualFile root : roots) {
+            boolean nested = false;
+            for (VirtualFile other : roots) {
+                if (other != root && VfsUtilCore.isAncestor(other, root, true)) {
+                    nested = true;
+                    break;
+                }
+            }
+            if (!nested) result.add(root);
+        }
+        return result;
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private final VirtualFile directory;
+
+        DirectoryTask(VirtualFile directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            indicator.checkCanceled();
+            List<VirtualFile> subdirectories = new ArrayList<>();
+            // Short cancellable read action per directory; retried if a write action interrupts it
+            while (!ProgressIndicatorUtils.runInReadActionWithWriteActionPriority(() -> visit(subdirectories), indicator)) {
+                indicator.checkCanceled();
+                subdirectories.clear();
+                ProgressIndicatorUtils.yieldToPendingWriteActions();
+            }
+
+            int count = scanned.incrementAndGet();
+            if ((count & 0xFF) == 0) {
+                indicator.setText2("Scanned " + count + " directories, " + proposals.size() + " matches");
+            }
+
+            if (subdirectories.isEmpty()) return;
+            List<DirectoryTask> children = new ArrayList<>(subdirectories.size());
+            for (VirtualFile subdirectory : subdirectories) {
+                children.add(new DirectoryTask(subdirectory));
+            }
+            invokeAll(children);
+        }
+
+        private void visit(List<VirtualFile> subdirectories) {
+            if (!directory.isValid() || fileIndex.isExcluded(directory)) return;
+            ChineseNameService.FolderAnnotation entry = dictionary.get(directory.getName());
+            if (entry != null && service.getAnnotation(directory) == null) {
+                proposals.add(new Proposal(directory.getPath(), entry.chineseName, entry.hideOriginalName));
+            }
+            for (VirtualFile child : directory.getChildren()) {
+                if (child.isDirectory() && !child.is(VFileProperty.SYMLINK)) {
+                    subdirectories.add(child);
+                }
+            }
+        }
+    }
+}
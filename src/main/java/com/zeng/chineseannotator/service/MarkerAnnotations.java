@@ -0,0 +1,271 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.search.FilenameIndex;
+import com.intellij.psi.search.GlobalSearchScope;
+import com.intellij.psi.search.GlobalSearchScopesCore;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zeng.chineseannotator.index.AnnotationMarkerIndex;
+import com.zeng.chineseannotator.io.MarkerFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Publishes the annotations of {@value MarkerFile#FILE_NAME} marker files to {@link ChineseNameService}, where
+ * they apply to the directory containing the marker unless it has a personal annotation.
+ * <p>
+ * Markers come from {@link AnnotationMarkerIndex}: the first load asks the file name index for all markers, and
+ * afterwards only the directories whose marker changed are looked up again, plus the subtrees of directories
+ * created or copied with content. Markers below a renamed, moved or deleted directory are re-keyed or dropped
+ * by path prefix without asking the index. Index reads run off the EDT in smart mode, and are restarted by the
+ * platform if a write action interrupts them.
+ */
+public final class MarkerAnnotations {
+
+    private final Project project;
+    private final ExecutorService executor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Chinese Annotation Markers", 1);
+
+    /**
+     * Directory paths waiting for a lookup; guarded by {@code this}, like the fields below.
+     */
+    private Set<String> pendingDirectories = new HashSet<>();
+    /** Roots of subtrees whose markers are looked up again as a whole. */
+    private Set<String> pendingSubtrees = new HashSet<>();
+    /** Directory renames, moves and deletes, applied in order before any lookup. */
+    private List<ChineseNameService.PathChange> pendingMoves = new ArrayList<>();
+    /** The first lookup is always a full load. */
+    private boolean fullLoadRequested = true;
+    private boolean running;
+
+    /**
+     * Last published directory path to annotation; only written by {@link #publish}, which never overlaps itself.
+     */
+    private volatile Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>();
+    /** Keys of {@link #annotations} in sorted order, published along with them. */
+    private volatile SortedPathIndex paths = SortedPathIndex.EMPTY;
+
+    public MarkerAnnotations(Project project) {
+        this.project = project;
+    }
+
+    public static MarkerAnnotations getInstance(Project project) {
+        return project.getService(MarkerAnnotations.class);
+    }
+
+    /**
+     * Queues a full load of all markers.
+     */
+    public void scheduleFullLoad() {
+        synchronized (this) {
+            fullLoadRequested = true;
+        }
+        queue();
+    }
+
+    /**
+     * Queues one update; requests arriving before it runs are merged into it.
+     *
+     * @param moves          directory renames and moves, or deletes with a null new path, whose markers are
+     *                       re-keyed by path prefix
+     * @param subtreeRoots   directories whose markers at any depth are looked up again, e.g. created or copied ones
+     * @param directoryPaths directories whose own marker is looked up again
+     */
+    public void scheduleUpdate(@NotNull List<ChineseNameService.PathChange> moves, @NotNull Collection<String> subtreeRoots,
+                               @NotNull Collection<String> directoryPaths) {
+        if (moves.isEmpty() && subtreeRoots.isEmpty() && directoryPaths.isEmpty()) return;
+        synchronized (this) {
+            pendingMoves.addAll(moves);
+            pendingSubtrees.addAll(subtreeRoots);
+            pendingDirectories.addAll(directoryPaths);
+        }
+        queue();
+    }
+
+    /**
+     * Whether the given directory or one below it holds a known marker.
+     */
+    public boolean hasMarkersAtOrBelow(@NotNull String directoryPath) {
+        return paths.containsAtOrBelow(directoryPath);
+    }
+
+    /**
+     * Starts one lookup for everything requested so far, unless one is running; that one re-queues when done.
+     */
+    private void queue() {
+        if (project.isDisposed()) return;
+        Request request;
+        synchronized (this) {
+            if (running || !fullLoadRequested && pendingDirectories.isEmpty() && pendingSubtrees.isEmpty()
+                    && pendingMoves.isEmpty()) return;
+            running = true;
+            // A full load reads the current state, which already includes everything pending
+            request = fullLoadRequested ? null : new Request(pendingMoves, pendingSubtrees, pendingDirectories);
+            fullLoadRequested = false;
+            pendingDirectories = new HashSet<>();
+            pendingSubtrees = new HashSet<>();
+            pendingMoves = new ArrayList<>();
+        }
+        ReadAction.nonBlocking(() -> compute(request))
+                .inSmartMode(project)
+                .expireWith(project)
+                .submit(executor)
+                .onProcessed(this::publish);
+    }
+
+    /**
+     * Applies the request, or loads all markers when it is null; restarted as a whole if a write action interrupts it.
+     */
+    private Update compute(@Nullable Request request) {
+        Map<String, ChineseNameService.FolderAnnotation> previous = annotations;
+        Map<String, ChineseNameService.FolderAnnotation> result;
+        if (request == null) {
+            result = new HashMap<>();
+            for (VirtualFile marker : FilenameIndex.getVirtualFilesByName(MarkerFile.FILE_NAME, GlobalSearchScope.projectScope(project))) {
+                put(result, marker);
+            }
+        } else {
+            result = new HashMap<>(previous);
+            for (ChineseNameService.PathChange move : request.moves) {
+                rekey(result, move);
+            }
+            LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+            for (String root : request.subtrees) {
+                rekey(result, new ChineseNameService.PathChange(root, null));
+                VirtualFile directory = fileSystem.findFileByPath(root);
+                if (directory == null || !directory.isDirectory()) continue;
+                GlobalSearchScope scope = GlobalSearchScopesCore.directoryScope(project, directory, true)
+                        .intersectWith(GlobalSearchScope.projectScope(project));
+                for (VirtualFile marker : FilenameIndex.getVirtualFilesByName(MarkerFile.FILE_NAME, scope)) {
+                    put(result, marker);
+                }
+            }
+            for (String directory : request.directories) {
+                result.remove(directory);
+                VirtualFile marker = fileSystem.findFileByPath(directory + "/" + MarkerFile.FILE_NAME);
+                if (marker != null) put(result, marker);
+            }
+        }
+        List<String> changed = new ArrayList<>();
+        diff(previous, result, changed);
+        SortedPathIndex resultPaths = request == null ? SortedPathIndex.build(result.keySet()) : paths.derive(result, changed);
+        return new Update(result, resultPaths, changed);
+    }
+
+    /**
+     * Moves the markers at or below {@code oldPath} to {@code newPath}, or drops them when it is null.
+     */
+    private static void rekey(Map<String, ChineseNameService.FolderAnnotation> markers, ChineseNameService.PathChange move) {
+        String prefix = move.oldPath + "/";
+        Map<String, ChineseNameService.FolderAnnotation> moved = new HashMap<>();
+        markers.entrySet().removeIf(entry -> {
+            if (!entry.getKey().equals(move.oldPath) && !entry.getKey().startsWith(prefix)) return false;
+            moved.put(entry.getKey(), entry.getValue());
+            return true;
+        });
+        if (move.newPath == null) return;
+        moved.forEach((path, annotation) -> markers.put(move.newPath + path.substring(move.oldPath.length()), annotation));
+    }
+
+    private void put(Map<String, ChineseNameService.FolderAnnotation> result, VirtualFile marker) {
+        VirtualFile directory = marker.getParent();
+        if (directory == null || !marker.isValid()) return;
+        ChineseNameService.FolderAnnotation annotation = AnnotationMarkerIndex.read(project, marker);
+        if (annotation != null) {
+            result.put(directory.getPath(), annotation);
+        }
+    }
+
+    private static void diff(Map<String, ChineseNameService.FolderAnnotation> previous,
+                             Map<String, ChineseNameService.FolderAnnotation> next, List<String> changed) {
+        next.forEach((path, annotation) -> {
+            if (!annotation.equals(previous.get(path))) changed.add(path);
+        });
+        for (String path : previous.keySet()) {
+            if (!next.containsKey(path)) changed.add(path);
+        }
+    }
+
+    private void publish(@Nullable Update update) {
+        if (update != null && !update.changed.isEmpty()) {
+            annotations = update.annotations;
+            paths = update.paths;
+            ChineseNameService.getInstance(project).publishMarkerAnnotations(new HashMap<>(update.annotations));
+            refresh(update.changed);
+        }
+        synchronized (this) {
+            running = false;
+            // Null when the lookup failed or was cancelled; the moves and lookups it carried are lost, so reload all
+            if (update == null) fullLoadRequested = true;
+        }
+        queue();
+    }
+
+    private void refresh(List<String> changed) {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        AnnotationSnapshot personal = service.getSnapshot();
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        List<VirtualFile> folders = new ArrayList<>(changed.size());
+        for (String path : changed) {
+            // Personal annotations win, so their nodes look the same as before
+            if (personal.get(path) != null) continue;
+            VirtualFile folder = fileSystem.findFileByPath(path);
+            if (folder != null) folders.add(folder);
+        }
+        if (folders.isEmpty()) return;
+        ApplicationManager.getApplication().invokeLater(
+                () -> ProjectViewRefresher.getInstance(project).refreshFolders(folders), project.getDisposed());
+    }
+
+    public int getMarkerCount() {
+        return annotations.size();
+    }
+
+    private static final class Request {
+        final List<ChineseNameService.PathChange> moves;
+        final Set<String> subtrees;
+        final Set<String> directories;
+
+        Request(List<ChineseNameService.PathChange> moves, Set<String> subtrees, Set<String> directories) {
+            this.moves = moves;
+            this.subtrees = subtrees;
+            this.directories = directories;
+        }
+    }
+
+    private static final class Update {
+        final Map<String, ChineseNameService.FolderAnnotation> annotations;
+        final SortedPathIndex paths;
+        final List<String> changed;
+
+        Update(Map<String, ChineseNameService.FolderAnnotation> annotations, SortedPathIndex paths, List<String> changed) {
+            this.annotations = annotations;
+            this.paths = paths;
+            this.changed = changed;
+        }
+    }
+
+    /**
+     * Loads all markers once the project is open; the read waits for indexing to finish.
+     */
+    public static final class Loader implements StartupActivity.DumbAware {
+        @Override
+        public void runActivity(@NotNull Project project) {
+            getInstance(project).scheduleFullLoad();
+        }
+    }
+}
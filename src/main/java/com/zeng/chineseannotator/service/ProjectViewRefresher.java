@@ -0,0 +1,332 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.ide.projectView.ProjectView;
+import com.intellij.ide.projectView.impl.AbstractProjectViewPane;
+import com.intellij.ide.projectView.ProjectViewNode;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.fileEditor.ex.FileEditorManagerEx;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.psi.PsiElement;
+import com.intellij.psi.PsiManager;
+import com.intellij.util.Alarm;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.intellij.util.ui.tree.TreeUtil;
+import com.intellij.util.ui.update.MergingUpdateQueue;
+import com.intellij.util.ui.update.Update;
+import com.zeng.chineseannotator.diagnostics.AnnotatorMetrics;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.tree.TreePath;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Updates only the Project View nodes whose annotation changed instead of rebuilding the whole tree.
+ * Falls back to a full {@link ProjectView#refresh()} when no pane is available.
+ * Open editor tabs are re-titled along with the tree, since their titles show annotations as well.
+ * <p>
+ * Requests are not executed right away: they are merged over one frame ({@value #MERGE_MILLIS} ms) and then
+ * executed as a single update, with duplicate folders removed and a full refresh superseding everything else.
+ * Requests whose net effect is nothing are dropped at that point:
+ * <ul>
+ *   <li>a preview toggle, when original names are shown exactly as they were at the previous flush;</li>
+ *   <li>a folder, when its display name equals the one recorded by {@link #recordDisplayNames} before the
+ *   first change in the window, e.g. an annotation added and removed again by a script.</li>
+ * </ul>
+ */
+public class ProjectViewRefresher implements Disposable {
+
+    static final int MERGE_MILLIS = 16;
+
+    private final Project project;
+    private final MergingUpdateQueue queue;
+
+    // Pending requests, guarded by this
+    private final Set<VirtualFile> pendingFolders = new LinkedHashSet<>();
+    /** Display names before the first change of the window; a null value means "not annotated". */
+    private final Map<String, String> displayNamesBefore = new HashMap<>();
+    /** Folders requested without a recorded display name; these are always updated. */
+    private final Set<String> unrecordedPaths = new LinkedHashSet<>();
+    private boolean visibleAnnotatedPending;
+    private boolean previewTogglePending;
+    private boolean allPending;
+    private long recordedModifications;
+    private long modificationCountAtFlush = -1;
+    /** Preview state the tree showed after the last flush; null before the first one. */
+    @Nullable
+    private Boolean previewAtFlush;
+
+    private long requests;
+    private long flushes;
+    private long droppedRequests;
+
+    public ProjectViewRefresher(Project project) {
+        this.project = project;
+        this.queue = new MergingUpdateQueue("Chinese Annotation Refresh", MERGE_MILLIS, true,
+                MergingUpdateQueue.ANY_COMPONENT, this, null, Alarm.ThreadToUse.SWING_THREAD);
+    }
+
+    public static ProjectViewRefresher getInstance(Project project) {
+        return project.getService(ProjectViewRefresher.class);
+    }
+
+    /**
+     * Update the node of a single folder after its annotation was added, edited or removed.
+     */
+    public void refreshFolder(@NotNull VirtualFile folder) {
+        refreshFolders(Collections.singletonList(folder));
+    }
+
+    /**
+     * Update the nodes of the given folders. PSI is resolved in a background read action, so a large
+     * selection does not block the EDT; the nodes are then updated in one pass on the EDT.
+     */
+    public void refreshFolders(@NotNull Collection<VirtualFile> folders) {
+        if (folders.isEmpty()) return;
+        synchronized (this) {
+            requests++;
+            for (VirtualFile folder : folders) {
+                if (pendingFolders.add(folder) && !displayNamesBefore.containsKey(folder.getPath())) {
+                    unrecordedPaths.add(folder.getPath());
+                }
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Update only the annotated folders that are currently visible, e.g. after an import.
+     */
+    public void refreshVisibleAnnotated() {
+        synchronized (this) {
+            requests++;
+            visibleAnnotatedPending = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Update the visible annotated folders after original names were shown or hidden; dropped if the
+     * preview ends up where it was, e.g. after an even number of presses.
+     */
+    public void refreshPreviewToggled() {
+        synchronized (this) {
+            requests++;
+            previewTogglePending = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Rebuild the whole tree, e.g. after rules or templates changed and any directory may be affected.
+     */
+    public void refreshAll() {
+        synchronized (this) {
+            requests++;
+            allPending = true;
+        }
+        schedule();
+    }
+
+    /**
+     * Called by {@link ChineseNameService#update} with the display names of the changed paths as they were
+     * before the change. Only the first record of a path within a window is kept.
+     */
+    synchronized void recordDisplayNames(@NotNull Map<String, String> before) {
+        recordedModifications++;
+        before.forEach((path, displayName) -> {
+            if (!displayNamesBefore.containsKey(path) && !unrecordedPaths.contains(path)) {
+                displayNamesBefore.put(path, displayName);
+            }
+        });
+    }
+
+    private void schedule() {
+        if (project.isDisposed()) return;
+        queue.queue(Update.create(this, () -> flush(false)));
+    }
+
+    /**
+     * Executes all pending requests now, PSI lookups included; for tests and for callers that must see the
+     * tree updated before they continue. Must be called on the EDT.
+     */
+    public void flush() {
+        queue.cancelAllUpdates();
+        flush(true);
+    }
+
+    private void flush(boolean synchronous) {
+        if (project.isDisposed()) return;
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        List<VirtualFile> pending;
+        Map<String, String> before;
+        boolean all;
+        boolean visibleAnnotated;
+        boolean recordsComplete;
+        synchronized (this) {
+            flushes++;
+            all = allPending;
+            boolean preview = service.isPreviewingOriginalNames();
+            boolean previewChanged = previewTogglePending && !Objects.equals(previewAtFlush, preview);
+            if (previewTogglePending && !previewChanged) droppedRequests++;
+            visibleAnnotated = visibleAnnotatedPending || previewChanged;
+            // Recorded names are only trustworthy if every change since the last flush recorded them
+            long modificationCount = service.getModificationCount();
+            recordsComplete = modificationCountAtFlush >= 0
+                    && modificationCount - modificationCountAtFlush == recordedModifications;
+            pending = new ArrayList<>(pendingFolders);
+            before = new HashMap<>(displayNamesBefore);
+            before.keySet().removeAll(unrecordedPaths);
+
+            pendingFolders.clear();
+            displayNamesBefore.clear();
+            unrecordedPaths.clear();
+            visibleAnnotatedPending = false;
+            previewTogglePending = false;
+            allPending = false;
+            recordedModifications = 0;
+            modificationCountAtFlush = modificationCount;
+            previewAtFlush = preview;
+        }
+
+        List<VirtualFile> folders = new ArrayList<>(pending.size());
+        int dropped = 0;
+        for (VirtualFile folder : pending) {
+            String path = folder.getPath();
+            if (recordsComplete && before.containsKey(path) && Objects.equals(before.get(path), service.getDecoratedName(folder))) {
+                dropped++;
+            } else {
+                folders.add(folder);
+            }
+        }
+        if (dropped > 0) {
+            synchronized (this) {
+                droppedRequests += dropped;
+            }
+        }
+
+        if (all) {
+            long start = AnnotatorMetrics.start();
+            try {
+                ProjectView.getInstance(project).refresh();
+                refreshEditorTabs();
+            } finally {
+                AnnotatorMetrics.stop(AnnotatorMetrics.Probe.REFRESH, start);
+            }
+            return;
+        }
+        if (folders.isEmpty()) {
+            if (visibleAnnotated) updateNodes(Collections.emptyList(), true);
+            return;
+        }
+        if (synchronous) {
+            updateNodes(ReadAction.compute(() -> findElements(folders)), visibleAnnotated);
+            return;
+        }
+        ReadAction.nonBlocking(() -> findElements(folders))
+                .expireWith(project)
+                .finishOnUiThread(ModalityState.defaultModalityState(), elements -> updateNodes(elements, visibleAnnotated))
+                .submit(AppExecutorUtil.getAppExecutorService());
+    }
+
+    private List<PsiElement> findElements(List<VirtualFile> folders) {
+        PsiManager psiManager = PsiManager.getInstance(project);
+        List<PsiElement> result = new ArrayList<>(folders.size());
+        for (VirtualFile folder : folders) {
+            if (!folder.isValid()) continue;
+            PsiElement element = folder.isDirectory() ? psiManager.findDirectory(folder) : psiManager.findFile(folder);
+            if (element != null) {
+                result.add(element);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * One pass over the given elements plus, if requested, the visible annotated ones; then the editor tabs.
+     */
+    private void updateNodes(List<PsiElement> elements, boolean visibleAnnotated) {
+        long start = AnnotatorMetrics.start();
+        try {
+            AbstractProjectViewPane pane = getPane();
+            if (pane == null) {
+                if (!project.isDisposed()) ProjectView.getInstance(project).refresh();
+            } else {
+                Set<Object> unique = new LinkedHashSet<>(elements);
+                if (visibleAnnotated) collectVisibleAnnotated(pane, unique);
+                for (Object element : unique) {
+                    // Presentation only: the children of the node do not change
+                    pane.updateFrom(element, false, false);
+                }
+            }
+            refreshEditorTabs();
+        } finally {
+            AnnotatorMetrics.stop(AnnotatorMetrics.Probe.REFRESH, start);
+        }
+    }
+
+    private void collectVisibleAnnotated(AbstractProjectViewPane pane, Set<Object> elements) {
+        JTree tree = pane.getTree();
+        if (tree == null) return;
+
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        for (int row = 0; row < tree.getRowCount(); row++) {
+            TreePath path = tree.getPathForRow(row);
+            Object node = path == null ? null : TreeUtil.getLastUserObject(path);
+            if (!(node instanceof ProjectViewNode)) continue;
+            VirtualFile file = ((ProjectViewNode<?>) node).getVirtualFile();
+            Object element = ((ProjectViewNode<?>) node).getValue();
+            if (file != null && element instanceof PsiElement && service.resolveAnnotation(file) != null) {
+                elements.add(element);
+            }
+        }
+    }
+
+    /**
+     * Re-title the open editor tabs; the titles themselves come from a cache invalidated by the service.
+     */
+    public void refreshEditorTabs() {
+        if (project.isDisposed()) return;
+        FileEditorManagerEx manager = FileEditorManagerEx.getInstanceEx(project);
+        for (VirtualFile file : manager.getOpenFiles()) {
+            manager.updateFilePresentation(file);
+        }
+    }
+
+    public synchronized long getRequestCount() {
+        return requests;
+    }
+
+    public synchronized long getFlushCount() {
+        return flushes;
+    }
+
+    /**
+     * Requests dropped at flush time because they would not have changed anything.
+     */
+    public synchronized long getDroppedRequestCount() {
+        return droppedRequests;
+    }
+
+    @Nullable
+    private AbstractProjectViewPane getPane() {
+        if (project.isDisposed()) return null;
+        return ProjectView.getInstance(project).getCurrentProjectViewPane();
+    }
+
+    @Override
+    public void dispose() {
+    }
+}
@@ -0,0 +1,220 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.VirtualFileWithId;
+import com.intellij.util.containers.ConcurrentIntObjectMap;
+import com.intellij.util.containers.ContainerUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * All annotation rules compiled into one segment automaton.
+ * <p>
+ * Patterns are matched against the directory path relative to the project directory, segment by segment.
+ * {@code **} matches any number of segments, {@code *} and {@code ?} match within one segment.
+ * A pattern starting with {@code /} is anchored at the project directory; any other pattern matches at any depth,
+ * as if prefixed with {@code **}{@code /}. When several rules match, the first one in the list wins.
+ * <p>
+ * Each directory is matched once; the result is cached by VirtualFile id for the lifetime of this matcher,
+ * which is replaced whenever the rules change. The cache is cleared when it reaches {@value #MAX_CACHED} entries,
+ * so browsing a large tree for a whole session does not keep one entry for every directory ever painted.
+ */
+final class RuleMatcher {
+
+    static final RuleMatcher EMPTY = new RuleMatcher(Collections.emptyList(), null);
+
+    private static final Object NO_MATCH = new Object();
+    static final int MAX_CACHED = 1 << 16;
+
+    private final Node root = new Node();
+    private final List<ChineseNameService.FolderAnnotation> results = new ArrayList<>();
+    @Nullable
+    private final VirtualFile projectDir;
+    @Nullable
+    private final String projectPath;
+    private volatile ConcurrentIntObjectMap<Object> cache = ContainerUtil.createConcurrentIntObjectMap();
+
+    RuleMatcher(@NotNull List<ChineseNameService.AnnotationRule> rules, @Nullable VirtualFile projectDir) {
+        this(rules, projectDir, projectDir != null ? projectDir.getPath() : null);
+    }
+
+    private RuleMatcher(List<ChineseNameService.AnnotationRule> rules, @Nullable VirtualFile projectDir,
+                        @Nullable String projectPath) {
+        this.projectDir = projectDir;
+        this.projectPath = projectPath;
+        for (ChineseNameService.AnnotationRule rule : rules) {
+            if (rule.pattern == null || rule.pattern.isBlank() || rule.chineseName == null || rule.chineseName.isBlank()) continue;
+            results.add(AnnotationInterner.intern(new ChineseNameService.FolderAnnotation(rule.chineseName, rule.hideOriginalName)));
+            add(rule.pattern.trim(), results.size() - 1);
+        }
+    }
+
+    /**
+     * Matcher that only answers {@link #matchPath} and {@link #matchesPath}, for a project directory given as a path.
+     */
+    static RuleMatcher forProjectPath(@NotNull List<ChineseNameService.AnnotationRule> rules, @NotNull String projectPath) {
+        return new RuleMatcher(rules, null, projectPath);
+    }
+
+    boolean isEmpty() {
+        return results.isEmpty();
+    }
+
+    /**
+     * Drops cached results, e.g. after directories were renamed or moved.
+     */
+    void clearCache() {
+        cache = ContainerUtil.createConcurrentIntObjectMap();
+    }
+
+    @Nullable
+    ChineseNameService.FolderAnnotation match(@NotNull VirtualFile directory) {
+        if (results.isEmpty() || projectDir == null) return null;
+        if (!(directory instanceof VirtualFileWithId)) return compute(directory);
+        int id = ((VirtualFileWithId) directory).getId();
+        ConcurrentIntObjectMap<Object> current = cache;
+        Object cached = current.get(id);
+        if (cached == null) {
+            ChineseNameService.FolderAnnotation computed = compute(directory);
+            cached = computed != null ? computed : NO_MATCH;
+            if (current.size() >= MAX_CACHED) current.clear();
+            current.put(id, cached);
+        }
+        return cached == NO_MATCH ? null : (ChineseNameService.FolderAnnotation) cached;
+    }
+
+    /**
+     * Whether some rule matches the given absolute path, decided from the string alone for callers that must not
+     * touch the VFS. Whether the path is a directory, which rules require, is not checked.
+     */
+    boolean matchesPath(@NotNull String path) {
+        return matchPath(path) != null;
+    }
+
+    /**
+     * Annotation of the first rule matching the given absolute path, see {@link #matchesPath}.
+     */
+    @Nullable
+    ChineseNameService.FolderAnnotation matchPath(@NotNull String path) {
+        if (results.isEmpty() || projectPath == null || !path.startsWith(projectPath + "/")) return null;
+        String relative = path.substring(projectPath.length() + 1);
+        return relative.isEmpty() ? null : matchSegments(Arrays.asList(relative.split("/")));
+    }
+
+    private ChineseNameService.FolderAnnotation compute(VirtualFile directory) {
+        // Collect segments up to the project directory without building a path string
+        List<String> segments = new ArrayList<>();
+        VirtualFile current = directory;
+        while (current != null && !current.equals(projectDir)) {
+            segments.add(current.getName());
+            current = current.getParent();
+        }
+        if (current == null || segments.isEmpty()) return null;
+        Collections.reverse(segments);
+        return matchSegments(segments);
+    }
+
+    @Nullable
+    private ChineseNameService.FolderAnnotation matchSegments(List<String> segments) {
+        Set<Node> states = Collections.newSetFromMap(new IdentityHashMap<>());
+        addWithClosure(states, root);
+        for (String segment : segments) {
+            Set<Node> next = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Node state : states) {
+                state.step(segment, next);
+            }
+            if (next.isEmpty()) return null;
+            states = next;
+        }
+        int best = Integer.MAX_VALUE;
+        for (Node state : states) {
+            if (state.rule >= 0 && state.rule < best) best = state.rule;
+        }
+        return best == Integer.MAX_VALUE ? null : results.get(best);
+    }
+
+    private void add(String pattern, int rule) {
+        String normalized = pattern.replace('\\', '/');
+        Node node = root;
+        if (normalized.startsWith("/")) {
+            normalized = normalized.substring(1);
+        } else if (!normalized.startsWith("**/")) {
+            node = node.anyDepth();
+        }
+        for (String segment : normalized.split("/")) {
+            if (segment.isEmpty()) continue;
+            node = "**".equals(segment) ? node.anyDepth() : node.child(segment);
+        }
+        if (node.rule < 0 || rule < node.rule) node.rule = rule;
+    }
+
+    private static void addWithClosure(Set<Node> states, Node node) {
+        if (!states.add(node)) return;
+        // "**" may match zero segments
+        if (node.anyDepth != null) addWithClosure(states, node.anyDepth);
+    }
+
+    /**
+     * Automaton state. Literal segments are looked up by hash; wildcard segments are tried in order.
+     */
+    private static final class Node {
+        final Map<String, Node> literals = new HashMap<>();
+        final List<Pattern> wildcardPatterns = new ArrayList<>();
+        final List<Node> wildcardNodes = new ArrayList<>();
+        /** Target of "**": loops on any segment, then continues with its own children. */
+        Node anyDepth;
+        boolean loops;
+        int rule = -1;
+
+        Node child(String segment) {
+            if (segment.indexOf('*') < 0 && segment.indexOf('?') < 0) {
+                return literals.computeIfAbsent(segment, s -> new Node());
+            }
+            String regex = toRegex(segment);
+            for (int i = 0; i < wildcardPatterns.size(); i++) {
+                if (wildcardPatterns.get(i).pattern().equals(regex)) return wildcardNodes.get(i);
+            }
+            Node node = new Node();
+            wildcardPatterns.add(Pattern.compile(regex));
+            wildcardNodes.add(node);
+            return node;
+        }
+
+        Node anyDepth() {
+            if (anyDepth == null) {
+                anyDepth = new Node();
+                anyDepth.loops = true;
+            }
+            return anyDepth;
+        }
+
+        void step(String segment, Set<Node> next) {
+            if (loops) addWithClosure(next, this);
+            Node literal = literals.get(segment);
+            if (literal != null) addWithClosure(next, literal);
+            for (int i = 0; i < wildcardPatterns.size(); i++) {
+                if (wildcardPatterns.get(i).matcher(segment).matches()) addWithClosure(next, wildcardNodes.get(i));
+            }
+        }
+
+        private static String toRegex(String glob) {
+            StringBuilder regex = new StringBuilder();
+            for (char c : glob.toCharArray()) {
+                if (c == '*') regex.append("[^/]*");
+                else if (c == '?') regex.append("[^/]");
+                else regex.append(Pattern.quote(String.valueOf(c)));
+            }
+            return regex.toString();
+        }
+    }
+}
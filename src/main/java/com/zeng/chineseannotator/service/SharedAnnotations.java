@@ -0,0 +1,173 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zeng.chineseannotator.io.AnnotationPathResolver;
+import com.zeng.chineseannotator.io.SharedAnnotationFile;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Loads the team-shared {@value SharedAnnotationFile#FILE_NAME} from the project root into
+ * {@link ChineseNameService}, where it applies to every path without a personal annotation.
+ * Shared entries are never written to chineseName.xml or the compact file.
+ * <p>
+ * The file is reloaded off the EDT whenever the VFS reports a change, e.g. after a pull. New records are diffed
+ * against the previous ones: unchanged entries keep their annotation objects and cached display names, and only
+ * the nodes of added, edited or removed paths are refreshed.
+ */
+public final class SharedAnnotations {
+
+    private static final Logger LOG = Logger.getInstance(SharedAnnotations.class);
+
+    /**
+     * Above this many changed paths one full Project View refresh is cheaper than updating node by node.
+     */
+    private static final int MAX_TARGETED_REFRESH = 512;
+
+    private final Project project;
+    private final ExecutorService executor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Chinese Annotation Shared File", 1);
+    private final AtomicBoolean reloadQueued = new AtomicBoolean();
+
+    /**
+     * Last published content; only touched on {@link #executor}.
+     */
+    @Nullable
+    private SharedAnnotationFile.Contents contents;
+
+    public SharedAnnotations(Project project) {
+        this.project = project;
+    }
+
+    public static SharedAnnotations getInstance(Project project) {
+        return project.getService(SharedAnnotations.class);
+    }
+
+    /**
+     * Absolute path of the shared file, whether or not it exists.
+     */
+    @Nullable
+    public String getFilePath() {
+        String basePath = project.getBasePath();
+        return basePath != null ? basePath + "/" + SharedAnnotationFile.FILE_NAME : null;
+    }
+
+    /**
+     * Queues a reload; requests arriving while one is still queued are merged into it.
+     */
+    public void scheduleReload() {
+        if (!reloadQueued.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            reloadQueued.set(false);
+            reload();
+        });
+    }
+
+    private void reload() {
+        String filePath = getFilePath();
+        if (filePath == null || project.isDisposed()) return;
+        SharedAnnotationFile.Contents previous = contents;
+        if (previous == null) {
+            // Registers the file with the VFS, so later changes to it are reported
+            LocalFileSystem.getInstance().refreshAndFindFileByPath(filePath);
+            previous = SharedAnnotationFile.Contents.EMPTY;
+        }
+
+        Path file = Path.of(filePath);
+        SharedAnnotationFile.Contents next;
+        try {
+            next = Files.isRegularFile(file)
+                    ? SharedAnnotationFile.read(file, new AnnotationPathResolver(project.getBasePath()), previous)
+                    : SharedAnnotationFile.Contents.EMPTY;
+        } catch (IOException e) {
+            // Keep the previous annotations, e.g. while the file is half written during a checkout
+            LOG.warn("Failed to read " + filePath, e);
+            return;
+        }
+        if (next == previous) {
+            contents = previous;
+            return;
+        }
+
+        Map<String, ChineseNameService.FolderAnnotation> merged = new HashMap<>(next.annotations.size());
+        List<String> changed = diff(previous.annotations, next.annotations, merged);
+        contents = new SharedAnnotationFile.Contents(next.checksum, merged);
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        service.publishSharedAnnotations(merged);
+        if (!changed.isEmpty()) {
+            refresh(service, changed);
+        }
+    }
+
+    /**
+     * Fills {@code merged} with the new records, reusing the previous annotation object wherever the record is
+     * unchanged, and returns the paths that were added, edited or removed.
+     */
+    private static List<String> diff(Map<String, ChineseNameService.FolderAnnotation> previous,
+                                     Map<String, ChineseNameService.FolderAnnotation> next,
+                                     Map<String, ChineseNameService.FolderAnnotation> merged) {
+        List<String> changed = new ArrayList<>();
+        for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : next.entrySet()) {
+            ChineseNameService.FolderAnnotation old = previous.get(entry.getKey());
+            ChineseNameService.FolderAnnotation annotation = entry.getValue();
+            if (annotation.equals(old)) {
+                merged.put(entry.getKey(), old);
+            } else {
+                merged.put(entry.getKey(), annotation);
+                changed.add(entry.getKey());
+            }
+        }
+        for (String path : previous.keySet()) {
+            if (!next.containsKey(path)) {
+                changed.add(path);
+            }
+        }
+        return changed;
+    }
+
+    private void refresh(ChineseNameService service, List<String> changed) {
+        if (changed.size() > MAX_TARGETED_REFRESH) {
+            ApplicationManager.getApplication().invokeLater(() -> ProjectViewRefresher.getInstance(project).refreshAll(), project.getDisposed());
+            return;
+        }
+        LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+        List<VirtualFile> files = new ArrayList<>(changed.size());
+        for (String path : changed) {
+            // Personal and marker annotations win, so their nodes look the same as before
+            if (service.shadowsSharedAnnotation(path)) continue;
+            VirtualFile file = fileSystem.findFileByPath(path);
+            if (file != null) {
+                files.add(file);
+            }
+        }
+        if (files.isEmpty()) return;
+        ApplicationManager.getApplication().invokeLater(
+                () -> ProjectViewRefresher.getInstance(project).refreshFolders(files), project.getDisposed());
+    }
+
+    /**
+     * Reads the shared file once the project is open.
+     */
+    public static final class Loader implements StartupActivity.DumbAware {
+        @Override
+        public void runActivity(@NotNull Project project) {
+            getInstance(project).scheduleReload();
+        }
+    }
+}
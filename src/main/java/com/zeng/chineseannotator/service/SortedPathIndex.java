@@ -0,0 +1,147 @@
+package com.zeng.chineseannotator.service;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Annotated paths in sorted order, so the paths at or below a folder are found without scanning all of them.
+ * <p>
+ * Paths are kept in sorted chunks of at most {@value #MAX_CHUNK} entries. An index is immutable; the index of
+ * the next snapshot copies the chunk list and only the chunks the changed paths fall into, so it costs
+ * O(n / {@value #CHUNK} + k * {@value #CHUNK}) instead of sorting all paths again.
+ */
+final class SortedPathIndex {
+
+    static final SortedPathIndex EMPTY = new SortedPathIndex(new String[0][]);
+
+    private static final int CHUNK = 128;
+    private static final int MAX_CHUNK = 2 * CHUNK;
+
+    /** Non-empty, each sorted, and in order: the last path of a chunk sorts before the first of the next. */
+    private final String[][] chunks;
+
+    private SortedPathIndex(String[][] chunks) {
+        this.chunks = chunks;
+    }
+
+    static SortedPathIndex build(@NotNull Collection<String> paths) {
+        String[] sorted = paths.toArray(new String[0]);
+        Arrays.sort(sorted);
+        String[][] chunks = new String[(sorted.length + CHUNK - 1) / CHUNK][];
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = Arrays.copyOfRange(sorted, i * CHUNK, Math.min(sorted.length, (i + 1) * CHUNK));
+        }
+        return new SortedPathIndex(chunks);
+    }
+
+    /**
+     * Index for {@code annotations}, which differ from the map this index was built for only in {@code changedPaths}.
+     */
+    SortedPathIndex derive(@NotNull Map<String, ?> annotations, @NotNull Collection<String> changedPaths) {
+        if (changedPaths.isEmpty()) return this;
+        List<String[]> result = new ArrayList<>(Arrays.asList(chunks));
+        for (String path : changedPaths) {
+            boolean present = annotations.containsKey(path);
+            int chunk = findChunk(result, path);
+            if (chunk < 0) {
+                if (present) result.add(new String[]{path});
+                continue;
+            }
+            String[] keys = result.get(chunk);
+            int position = Arrays.binarySearch(keys, path);
+            if (present == (position >= 0)) continue;
+            if (present) {
+                int insert = -position - 1;
+                String[] grown = new String[keys.length + 1];
+                System.arraycopy(keys, 0, grown, 0, insert);
+                grown[insert] = path;
+                System.arraycopy(keys, insert, grown, insert + 1, keys.length - insert);
+                if (grown.length > MAX_CHUNK) {
+                    int half = grown.length / 2;
+                    result.set(chunk, Arrays.copyOfRange(grown, 0, half));
+                    result.add(chunk + 1, Arrays.copyOfRange(grown, half, grown.length));
+                } else {
+                    result.set(chunk, grown);
+                }
+            } else if (keys.length == 1) {
+                result.remove(chunk);
+            } else {
+                String[] shrunk = new String[keys.length - 1];
+                System.arraycopy(keys, 0, shrunk, 0, position);
+                System.arraycopy(keys, position + 1, shrunk, position, keys.length - position - 1);
+                result.set(chunk, shrunk);
+            }
+        }
+        return new SortedPathIndex(result.toArray(new String[0][]));
+    }
+
+    /**
+     * {@code root} itself, if present, and every path below it, in sorted order.
+     */
+    @NotNull
+    List<String> atOrBelow(@NotNull String root) {
+        List<String> result = new ArrayList<>();
+        List<String[]> list = Arrays.asList(chunks);
+        int chunk = findChunk(list, root);
+        if (chunk < 0) return result;
+        String prefix = root + "/";
+        // '0' follows '/': [root, root0) holds root, everything below it and siblings like "root-old"
+        String end = root + '0';
+        int position = Arrays.binarySearch(chunks[chunk], root);
+        if (position < 0) position = -position - 1;
+        for (; chunk < chunks.length; chunk++, position = 0) {
+            String[] keys = chunks[chunk];
+            for (; position < keys.length; position++) {
+                String path = keys[position];
+                if (path.compareTo(end) >= 0) return result;
+                if (path.equals(root) || path.startsWith(prefix)) result.add(path);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Whether {@code root} itself or a path below it is present.
+     */
+    boolean containsAtOrBelow(@NotNull String root) {
+        String prefix = root + "/";
+        // The paths below root form one range starting at the first path not before "root/"
+        String first = ceiling(prefix);
+        return first != null && first.startsWith(prefix) || root.equals(ceiling(root));
+    }
+
+    /**
+     * The first path not before {@code path}, or null if there is none.
+     */
+    private String ceiling(String path) {
+        int chunk = findChunk(Arrays.asList(chunks), path);
+        if (chunk < 0) return null;
+        int position = Arrays.binarySearch(chunks[chunk], path);
+        if (position < 0) position = -position - 1;
+        if (position < chunks[chunk].length) return chunks[chunk][position];
+        return chunk + 1 < chunks.length ? chunks[chunk + 1][0] : null;
+    }
+
+    /**
+     * The last chunk whose first path is not after {@code path}, the first chunk if there is none, or -1 if empty.
+     */
+    private static int findChunk(List<String[]> chunks, String path) {
+        int low = 0;
+        int high = chunks.size() - 1;
+        if (high < 0) return -1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (chunks.get(middle)[0].compareTo(path) <= 0) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,279 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.ide.IdeEventQueue;
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.PersistentStateComponent;
+import com.intellij.openapi.components.State;
+import com.intellij.openapi.components.Storage;
+import com.intellij.openapi.components.StoragePathMacros;
+import com.intellij.openapi.project.DumbService;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.startup.StartupActivity;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zeng.chineseannotator.ui.AnnotatorNotifications;
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Finds personal annotations whose folder no longer exists, e.g. after a branch was deleted or a folder was
+ * renamed outside the IDE, and reports or removes them according to
+ * {@link ChineseNameService#staleAnnotationPolicy}. Folders deleted in the IDE, a VCS checkout included,
+ * are {@link #markMissing reported} by the VFS listener right away and then handled the same way.
+ * <p>
+ * A sweep checks the paths of one snapshot against the VFS in slices of at most {@value #SLICE_MILLIS} ms
+ * on a single background thread, never on the EDT. Slices are spaced out, and much further while the user is
+ * typing or the IDE is indexing, so a sweep over many annotations takes a while but costs nothing noticeable.
+ * A folder counts as stale once it has been missing in every sweep for
+ * {@link ChineseNameService#staleRetentionDays} days; the first-missing times are kept in the workspace file.
+ */
+@State(
+        name = "ChineseNameStaleAnnotations",
+        storages = @Storage(StoragePathMacros.WORKSPACE_FILE)
+)
+public final class StaleAnnotationSweeper implements PersistentStateComponent<StaleAnnotationSweeper.SweepState>, Disposable {
+
+    static final long SLICE_MILLIS = 2;
+    private static final long PAUSE_MILLIS = 20;
+    /** Pause between slices while the user was active within {@link #USER_IDLE_MILLIS}, or while indexing. */
+    private static final long BUSY_PAUSE_MILLIS = 1000;
+    private static final long USER_IDLE_MILLIS = 3000;
+    private static final long FIRST_SWEEP_DELAY_MINUTES = 2;
+    private static final long SWEEP_INTERVAL_HOURS = 6;
+    private static final long DAY_MILLIS = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Persisted sweep results.
+     */
+    public static final class SweepState {
+        /** Path of each missing folder to the time it was first found missing. */
+        public Map<String, Long> missingSince = new HashMap<>();
+        /** Number of stale annotations last reported, so the same finding is not reported twice. */
+        public int reportedStaleCount;
+    }
+
+    private final Project project;
+    private final ScheduledExecutorService executor =
+            AppExecutorUtil.createBoundedScheduledExecutorService("Chinese Annotation Sweeper", 1);
+
+    /** Guarded by this. */
+    private SweepState state = new SweepState();
+    /** Only touched on {@link #executor}. */
+    private Sweep sweep;
+    private ScheduledFuture<?> periodicSweep;
+    private volatile boolean disposed;
+
+    public StaleAnnotationSweeper(Project project) {
+        this.project = project;
+    }
+
+    public static StaleAnnotationSweeper getInstance(Project project) {
+        return project.getService(StaleAnnotationSweeper.class);
+    }
+
+    @NotNull
+    @Override
+    public synchronized SweepState getState() {
+        return state;
+    }
+
+    @Override
+    public synchronized void loadState(@NotNull SweepState state) {
+        this.state = state;
+    }
+
+    /**
+     * Starts the periodic sweeps; the first one runs shortly after the project opened.
+     */
+    public synchronized void start() {
+        if (periodicSweep != null || disposed) return;
+        periodicSweep = executor.scheduleWithFixedDelay(this::startSweep,
+                TimeUnit.MINUTES.toMillis(FIRST_SWEEP_DELAY_MINUTES), TimeUnit.HOURS.toMillis(SWEEP_INTERVAL_HOURS),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sweeps now instead of waiting for the next period, e.g. after changing the policy.
+     */
+    public void sweepNow() {
+        executor.execute(this::startSweep);
+    }
+
+    /**
+     * Paths of the annotations currently considered stale.
+     */
+    @NotNull
+    public List<String> getStalePaths() {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        long cutoff = System.currentTimeMillis() - Math.max(0, service.staleRetentionDays) * DAY_MILLIS;
+        AnnotationSnapshot snapshot = service.getSnapshot();
+        List<String> result = new ArrayList<>();
+        synchronized (this) {
+            state.missingSince.forEach((path, since) -> {
+                if (since <= cutoff && snapshot.get(path) != null) result.add(path);
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Records folders deleted in the IDE as missing from now on, without waiting for the next sweep.
+     */
+    public void markMissing(@NotNull Collection<String> paths) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (String path : paths) {
+                state.missingSince.putIfAbsent(path, now);
+            }
+        }
+    }
+
+    public synchronized int getMissingCount() {
+        return state.missingSince.size();
+    }
+
+    /**
+     * Removes the given annotations in one update; their folders are gone, so there is nothing to refresh.
+     */
+    public void prune(@NotNull List<String> paths) {
+        if (paths.isEmpty()) return;
+        ChineseNameService.getInstance(project).update(map -> {
+            for (String path : paths) {
+                map.remove(path);
+            }
+        });
+        synchronized (this) {
+            state.missingSince.keySet().removeAll(paths);
+            state.reportedStaleCount = 0;
+        }
+    }
+
+    private void startSweep() {
+        if (disposed || project.isDisposed() || sweep != null) return;
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        if (service.staleAnnotationPolicy == ChineseNameService.StaleAnnotationPolicy.OFF) return;
+        AnnotationSnapshot snapshot = service.getSnapshot();
+        if (snapshot.isEmpty() && getMissingCount() == 0) return;
+        sweep = new Sweep(new ArrayList<>(snapshot.getAnnotations().keySet()));
+        runSlice();
+    }
+
+    private void runSlice() {
+        Sweep current = sweep;
+        if (current == null) return;
+        if (disposed || project.isDisposed()) {
+            sweep = null;
+            return;
+        }
+        if (current.slice()) {
+            sweep = null;
+            finish(current.missing, current.startedAt);
+            return;
+        }
+        executor.schedule(this::runSlice, isBusy() ? BUSY_PAUSE_MILLIS : PAUSE_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean isBusy() {
+        return IdeEventQueue.getInstance().getIdleTime() < USER_IDLE_MILLIS || DumbService.isDumb(project);
+    }
+
+    private void finish(List<String> missing, long startedAt) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            // Folders that came back are forgotten, the others keep their first-missing time
+            Map<String, Long> missingSince = new HashMap<>(missing.size());
+            for (String path : missing) {
+                missingSince.put(path, state.missingSince.getOrDefault(path, now));
+            }
+            // Deletes reported while the sweep ran may postdate its check of the path
+            state.missingSince.forEach((path, since) -> {
+                if (since >= startedAt) missingSince.putIfAbsent(path, since);
+            });
+            state.missingSince = missingSince;
+        }
+
+        List<String> stale = getStalePaths();
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        if (service.staleAnnotationPolicy == ChineseNameService.StaleAnnotationPolicy.PRUNE) {
+            if (stale.isEmpty()) return;
+            prune(stale);
+            AnnotatorNotifications.info(project, "Removed " + stale.size() + " annotations of folders missing for "
+                    + service.staleRetentionDays + " days or more");
+            return;
+        }
+        synchronized (this) {
+            boolean grew = stale.size() > state.reportedStaleCount;
+            state.reportedStaleCount = stale.size();
+            if (!grew) return;
+        }
+        AnnotatorNotifications.info(project, stale.size() + " Chinese annotations point to folders missing for "
+                + service.staleRetentionDays + " days or more", "Remove them", () -> executor.execute(() -> prune(getStalePaths())));
+    }
+
+    @Override
+    public void dispose() {
+        disposed = true;
+        synchronized (this) {
+            if (periodicSweep != null) periodicSweep.cancel(false);
+        }
+    }
+
+    /**
+     * Progress of one sweep over a fixed list of paths.
+     */
+    private static final class Sweep {
+        final List<String> paths;
+        final List<String> missing = new ArrayList<>();
+        final long startedAt = System.currentTimeMillis();
+        int next;
+
+        Sweep(List<String> paths) {
+            this.paths = paths;
+        }
+
+        /**
+         * Checks paths until the time slice is used up; true once all paths are checked.
+         */
+        boolean slice() {
+            LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SLICE_MILLIS);
+            while (next < paths.size() && System.nanoTime() < deadline) {
+                String path = paths.get(next++);
+                // The VFS may not have seen a folder created outside the IDE yet, so a miss is confirmed on disk
+                if (fileSystem.findFileByPath(path) == null && !existsOnDisk(path)) {
+                    missing.add(path);
+                }
+            }
+            return next >= paths.size();
+        }
+
+        private static boolean existsOnDisk(String path) {
+            try {
+                return Files.exists(Path.of(path));
+            } catch (InvalidPathException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Starts the periodic sweeps once the project is open.
+     */
+    public static final class Starter implements StartupActivity.DumbAware {
+        @Override
+        public void runActivity(@NotNull Project project) {
+            getInstance(project).start();
+        }
+    }
+}
@@ -0,0 +1,235 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.application.ReadAction;
+import com.intellij.openapi.module.Module;
+import com.intellij.openapi.module.ModuleManager;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.roots.ModuleRootManager;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.newvfs.VirtualFileWithId;
+import com.intellij.util.containers.ConcurrentIntObjectMap;
+import com.intellij.util.containers.ContainerUtil;
+import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
+import it.unimi.dsi.fastutil.ints.IntSet;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Annotation templates keyed by a path relative to a module content root, e.g. {@code src/main/resources/script}.
+ * <p>
+ * Templates are stored in a trie of reversed segments. A directory is resolved by walking up its parent chain
+ * and the trie together, starting with its own name; it matches when the walk reaches a template node right
+ * below a content root, so the nearest content root wins. Most directories stop at the first lookup.
+ * <p>
+ * Results are memoized per directory id, grouped by directory name. A template only affects directories named
+ * like its last segment, so editing templates drops just those groups. A roots change clears the memo only
+ * when the set of content roots actually changed. A group is cleared when it reaches {@value #MAX_MEMO_PER_NAME}
+ * entries, so a common name like {@code resources} does not keep one entry for every such directory ever painted.
+ */
+final class TemplateMatcher {
+
+    private static final Object NO_MATCH = new Object();
+    static final int MAX_MEMO_PER_NAME = 1 << 14;
+
+    @Nullable
+    private final Project project;
+    private volatile State state = new State(new Node(), Collections.emptyMap(), null, new ConcurrentHashMap<>());
+
+    TemplateMatcher(@Nullable Project project) {
+        this.project = project;
+    }
+
+    /**
+     * Trie, template list and memo published together, so a lookup never caches a result of an older trie
+     * into a group that is still current.
+     */
+    private static final class State {
+        final Node root;
+        /** Normalized relative path to annotation, for diffing the next template list. */
+        final Map<String, ChineseNameService.FolderAnnotation> templates;
+        /** VirtualFile ids of all content roots; null until first needed. */
+        @Nullable
+        final IntSet contentRoots;
+        final ConcurrentHashMap<String, ConcurrentIntObjectMap<Object>> memo;
+
+        State(Node root, Map<String, ChineseNameService.FolderAnnotation> templates, @Nullable IntSet contentRoots,
+              ConcurrentHashMap<String, ConcurrentIntObjectMap<Object>> memo) {
+            this.root = root;
+            this.templates = templates;
+            this.contentRoots = contentRoots;
+            this.memo = memo;
+        }
+    }
+
+    boolean isEmpty() {
+        return state.templates.isEmpty();
+    }
+
+    /**
+     * Replaces the templates; memoized results survive for every directory name no changed template ends with.
+     */
+    synchronized void setTemplates(@NotNull List<ChineseNameService.AnnotationRule> rules) {
+        Map<String, ChineseNameService.FolderAnnotation> templates = new HashMap<>();
+        for (ChineseNameService.AnnotationRule rule : rules) {
+            String path = normalize(rule.pattern);
+            if (path == null || rule.chineseName == null || rule.chineseName.isBlank()) continue;
+            // The first template for a path wins, as with rules
+            templates.putIfAbsent(path, AnnotationInterner.intern(
+                    new ChineseNameService.FolderAnnotation(rule.chineseName.trim(), rule.hideOriginalName)));
+        }
+        State current = state;
+        Set<String> changedNames = new HashSet<>();
+        collectChangedNames(current.templates, templates, changedNames);
+        collectChangedNames(templates, current.templates, changedNames);
+
+        Node root = new Node();
+        templates.forEach((path, annotation) -> root.add(path, annotation));
+        ConcurrentHashMap<String, ConcurrentIntObjectMap<Object>> memo = new ConcurrentHashMap<>(current.memo);
+        memo.keySet().removeAll(changedNames);
+        state = new State(root, templates, current.contentRoots, memo);
+    }
+
+    /**
+     * Re-reads the content roots and clears the memo if they differ from the ones it was built with.
+     */
+    void onContentRootsChanged() {
+        if (state.contentRoots == null) return;
+        // Read outside the lock: a lookup holding it must never wait for a read action behind a write
+        IntSet roots = readContentRoots();
+        synchronized (this) {
+            State current = state;
+            if (roots.equals(current.contentRoots)) return;
+            state = new State(current.root, current.templates, roots, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * Drops all memoized results, e.g. after directories were renamed or moved.
+     */
+    synchronized void clearCache() {
+        State current = state;
+        state = new State(current.root, current.templates, current.contentRoots, new ConcurrentHashMap<>());
+    }
+
+    @Nullable
+    ChineseNameService.FolderAnnotation match(@NotNull VirtualFile directory) {
+        State current = state;
+        String name = directory.getName();
+        // Not the last segment of any template: nothing to walk and nothing to remember
+        if (!current.root.children.containsKey(name)) return null;
+        if (current.contentRoots == null) current = withContentRoots();
+        if (!(directory instanceof VirtualFileWithId)) return compute(current, directory);
+
+        int id = ((VirtualFileWithId) directory).getId();
+        ConcurrentIntObjectMap<Object> group = current.memo.computeIfAbsent(name, n -> ContainerUtil.createConcurrentIntObjectMap());
+        Object cached = group.get(id);
+        if (cached == null) {
+            ChineseNameService.FolderAnnotation computed = compute(current, directory);
+            cached = computed != null ? computed : NO_MATCH;
+            if (group.size() >= MAX_MEMO_PER_NAME) group.clear();
+            group.put(id, cached);
+        }
+        return cached == NO_MATCH ? null : (ChineseNameService.FolderAnnotation) cached;
+    }
+
+    /**
+     * Whether some template may match the given absolute path, decided from its last segment alone for callers
+     * that must not touch the VFS or the content roots. Never false for a path that {@link #match} would match.
+     */
+    boolean mayMatchPath(@NotNull String path) {
+        return state.root.children.containsKey(path.substring(path.lastIndexOf('/') + 1));
+    }
+
+    private State withContentRoots() {
+        IntSet roots = readContentRoots();
+        synchronized (this) {
+            State current = state;
+            if (current.contentRoots == null) {
+                current = new State(current.root, current.templates, roots, current.memo);
+                state = current;
+            }
+            return current;
+        }
+    }
+
+    @Nullable
+    private static ChineseNameService.FolderAnnotation compute(State state, VirtualFile directory) {
+        IntSet contentRoots = Objects.requireNonNull(state.contentRoots);
+        Node node = state.root;
+        for (VirtualFile current = directory; current != null; current = current.getParent()) {
+            node = node.children.get(current.getName());
+            if (node == null) return null;
+            VirtualFile parent = current.getParent();
+            if (node.annotation != null && parent instanceof VirtualFileWithId
+                    && contentRoots.contains(((VirtualFileWithId) parent).getId())) {
+                return node.annotation;
+            }
+        }
+        return null;
+    }
+
+    private IntSet readContentRoots() {
+        IntSet result = new IntOpenHashSet();
+        if (project == null || project.isDisposed()) return result;
+        ReadAction.run(() -> {
+            for (Module module : ModuleManager.getInstance(project).getModules()) {
+                for (VirtualFile root : ModuleRootManager.getInstance(module).getContentRoots()) {
+                    if (root instanceof VirtualFileWithId) {
+                        result.add(((VirtualFileWithId) root).getId());
+                    }
+                }
+            }
+        });
+        return result;
+    }
+
+    private static void collectChangedNames(Map<String, ChineseNameService.FolderAnnotation> from,
+                                            Map<String, ChineseNameService.FolderAnnotation> to, Set<String> names) {
+        from.forEach((path, annotation) -> {
+            if (!annotation.equals(to.get(path))) {
+                names.add(path.substring(path.lastIndexOf('/') + 1));
+            }
+        });
+    }
+
+    /**
+     * Relative path with '/' separators and no leading or trailing slash, or null if empty.
+     */
+    @Nullable
+    static String normalize(@Nullable String path) {
+        if (path == null) return null;
+        List<String> segments = new ArrayList<>();
+        for (String segment : path.trim().replace('\\', '/').split("/")) {
+            if (!segment.isEmpty() && !".".equals(segment)) segments.add(segment);
+        }
+        return segments.isEmpty() ? null : String.join("/", segments);
+    }
+
+    /**
+     * Trie node; children are keyed by the next segment towards the content root.
+     */
+    private static final class Node {
+        final Map<String, Node> children = new HashMap<>();
+        @Nullable
+        ChineseNameService.FolderAnnotation annotation;
+
+        void add(String path, ChineseNameService.FolderAnnotation value) {
+            String[] segments = path.split("/");
+            Node node = this;
+            for (int i = segments.length - 1; i >= 0; i--) {
+                node = node.children.computeIfAbsent(segments[i], s -> new Node());
+            }
+            node.annotation = value;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Map;
+
+/**
+ * One absolute change to the annotation map, as recorded in the journal.
+ * Replaying a sequence of changes onto a state that already contains them yields the same state,
+ * which keeps replay safe after a crash between compaction and journal truncation.
+ */
+public final class AnnotationChange {
+
+    public enum Kind {PUT, REMOVE, CLEAR}
+
+    private static final AnnotationChange CLEAR = new AnnotationChange(Kind.CLEAR, "", null);
+
+    private final Kind kind;
+    private final String path;
+    private final ChineseNameService.FolderAnnotation annotation;
+
+    private AnnotationChange(Kind kind, String path, @Nullable ChineseNameService.FolderAnnotation annotation) {
+        this.kind = kind;
+        this.path = path;
+        this.annotation = annotation;
+    }
+
+    public static AnnotationChange put(@NotNull String path, @NotNull ChineseNameService.FolderAnnotation annotation) {
+        return new AnnotationChange(Kind.PUT, path, annotation);
+    }
+
+    public static AnnotationChange remove(@NotNull String path) {
+        return new AnnotationChange(Kind.REMOVE, path, null);
+    }
+
+    public static AnnotationChange clear() {
+        return CLEAR;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    @Nullable
+    public ChineseNameService.FolderAnnotation getAnnotation() {
+        return annotation;
+    }
+
+    public void applyTo(@NotNull Map<String, ChineseNameService.FolderAnnotation> map) {
+        switch (kind) {
+            case PUT -> map.put(path, annotation);
+            case REMOVE -> map.remove(path);
+            case CLEAR -> map.clear();
+        }
+    }
+}
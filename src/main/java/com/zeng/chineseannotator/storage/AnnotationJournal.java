@@ -0,0 +1,151 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of annotation changes written next to the compact snapshot file.
+ * <p>
+ * Each record is {@code int payloadLength, int crc32, payload} where the payload holds one batch of
+ * {@link AnnotationChange}s. Replay stops at the first truncated or corrupt record, which is what a crash
+ * in the middle of an append leaves behind, and cuts the file back to the last complete record.
+ */
+final class AnnotationJournal {
+
+    private static final int RECORD_HEADER_SIZE = 2 * Integer.BYTES;
+
+    private final Path file;
+    @Nullable
+    private final String projectDir;
+
+    AnnotationJournal(@NotNull Path file, @Nullable String projectDir) {
+        this.file = file;
+        this.projectDir = projectDir;
+    }
+
+    /**
+     * Applies every complete record to {@code target} and returns the size of the valid journal prefix.
+     */
+    long replay(@NotNull Map<String, ChineseNameService.FolderAnnotation> target) throws IOException {
+        if (!Files.isRegularFile(file)) return 0;
+        byte[] content = Files.readAllBytes(file);
+        ByteBuffer buffer = ByteBuffer.wrap(content);
+        int valid = 0;
+        while (buffer.remaining() >= RECORD_HEADER_SIZE) {
+            int length = buffer.getInt();
+            int checksum = buffer.getInt();
+            if (length < 0 || length > buffer.remaining()) break;
+            CRC32 crc = new CRC32();
+            crc.update(content, buffer.position(), length);
+            if ((int) crc.getValue() != checksum) break;
+            readBatch(content, buffer.position(), length, target);
+            buffer.position(buffer.position() + length);
+            valid = buffer.position();
+        }
+        if (valid < content.length) {
+            // Drop the torn tail so new appends follow a complete record
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        return valid;
+    }
+
+    /**
+     * Appends one batch and returns the number of bytes written.
+     */
+    int append(@NotNull List<AnnotationChange> changes) throws IOException {
+        byte[] payload = writeBatch(changes);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + payload.length);
+        record.putInt(payload.length).putInt((int) crc.getValue()).put(payload).flip();
+        Files.createDirectories(file.getParent());
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+                channel.write(record);
+            }
+        }
+        return record.limit();
+    }
+
+    /**
+     * Forces appended records to disk.
+     */
+    void sync() throws IOException {
+        if (!Files.isRegularFile(file)) return;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.force(false);
+        }
+    }
+
+    void reset() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    private byte[] writeBatch(List<AnnotationChange> changes) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 * changes.size());
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(changes.size());
+        for (AnnotationChange change : changes) {
+            out.writeByte(change.getKind().ordinal());
+            if (change.getKind() == AnnotationChange.Kind.CLEAR) continue;
+            writeString(out, ProjectPathMacro.collapse(projectDir, change.getPath()));
+            if (change.getKind() == AnnotationChange.Kind.PUT) {
+                ChineseNameService.FolderAnnotation annotation = change.getAnnotation();
+                out.writeBoolean(annotation.hideOriginalName);
+                writeString(out, annotation.chineseName);
+            }
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private void readBatch(byte[] content, int offset, int length,
+                                  Map<String, ChineseNameService.FolderAnnotation> target) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content, offset, length));
+        int count = in.readInt();
+        AnnotationChange.Kind[] kinds = AnnotationChange.Kind.values();
+        for (int i = 0; i < count; i++) {
+            AnnotationChange.Kind kind = kinds[in.readByte()];
+            switch (kind) {
+                case CLEAR -> target.clear();
+                case REMOVE -> target.remove(ProjectPathMacro.expand(projectDir, readString(in)));
+                case PUT -> {
+                    String path = ProjectPathMacro.expand(projectDir, readString(in));
+                    boolean hideOriginal = in.readBoolean();
+                    target.put(path, AnnotationInterner.intern(new ChineseNameService.FolderAnnotation(readString(in), hideOriginal)));
+                }
+            }
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
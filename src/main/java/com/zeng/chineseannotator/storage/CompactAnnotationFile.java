@@ -0,0 +1,135 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Compact binary storage for large annotation sets.
+ * <p>
+ * Layout (all ints big-endian):
+ * <pre>
+ * int magic, int entryCount, int restartInterval, int restartCount, int restartTableOffset
+ * entries, sorted by the UTF-8 bytes of the path:
+ *     varint sharedPrefixLength, varint suffixLength, suffix bytes,
+ *     byte flags, varint nameLength, name bytes
+ * int[restartCount] restart offsets
+ * </pre>
+ * Paths are prefix-compressed against the previous entry. Every {@code restartInterval}-th entry stores its
+ * full path and is listed in the restart table, so a lookup binary-searches restarts and decodes at most one block.
+ * The file is memory-mapped and read with absolute gets only, so one mapping can serve any number of threads.
+ * Paths under the project directory are stored relative to it (see {@link ProjectPathMacro}).
+ */
+public final class CompactAnnotationFile {
+
+    static final int MAGIC = 0x434E4131; // "CNA1"
+    static final int HEADER_SIZE = 5 * Integer.BYTES;
+    static final int RESTART_INTERVAL = 16;
+    static final byte FLAG_HIDE_ORIGINAL = 1;
+
+    private CompactAnnotationFile() {
+    }
+
+    /**
+     * Writes the annotations to {@code target}, replacing it atomically where the file system allows.
+     */
+    public static void write(@NotNull Path target, @NotNull Map<String, ChineseNameService.FolderAnnotation> annotations,
+                             @Nullable String projectDir) throws IOException {
+        int count = annotations.size();
+        byte[][] keys = new byte[count][];
+        ChineseNameService.FolderAnnotation[] values = new ChineseNameService.FolderAnnotation[count];
+        Integer[] order = new Integer[count];
+        int n = 0;
+        for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
+            keys[n] = ProjectPathMacro.collapse(projectDir, entry.getKey()).getBytes(StandardCharsets.UTF_8);
+            values[n] = entry.getValue();
+            order[n] = n;
+            n++;
+        }
+        Arrays.sort(order, (a, b) -> Arrays.compareUnsigned(keys[a], keys[b]));
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(Math.max(64, count * 32));
+        DataOutputStream out = new DataOutputStream(body);
+        int restartCount = (count + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+        int[] restarts = new int[restartCount];
+        byte[] previous = new byte[0];
+        for (int i = 0; i < order.length; i++) {
+            byte[] key = keys[order[i]];
+            int shared = 0;
+            if (i % RESTART_INTERVAL == 0) {
+                restarts[i / RESTART_INTERVAL] = HEADER_SIZE + out.size();
+            } else {
+                shared = Arrays.mismatch(previous, key);
+                if (shared < 0) shared = key.length;
+            }
+            ChineseNameService.FolderAnnotation annotation = values[order[i]];
+            byte[] name = annotation.chineseName.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(out, shared);
+            writeVarInt(out, key.length - shared);
+            out.write(key, shared, key.length - shared);
+            out.writeByte(annotation.hideOriginalName ? FLAG_HIDE_ORIGINAL : 0);
+            writeVarInt(out, name.length);
+            out.write(name);
+            previous = key;
+        }
+        out.flush();
+
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.createDirectories(target.getParent());
+        try (OutputStream stream = new BufferedOutputStream(Files.newOutputStream(temp));
+             DataOutputStream file = new DataOutputStream(stream)) {
+            file.writeInt(MAGIC);
+            file.writeInt(count);
+            file.writeInt(RESTART_INTERVAL);
+            file.writeInt(restartCount);
+            file.writeInt(HEADER_SIZE + body.size());
+            body.writeTo(file);
+            for (int restart : restarts) {
+                file.writeInt(restart);
+            }
+        }
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Maps the file read-only. Nothing is decoded until a lookup or iteration asks for it.
+     */
+    @NotNull
+    public static CompactAnnotationMap open(@NotNull Path file, @Nullable String projectDir) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a compact annotation file: " + file);
+        }
+        return new CompactAnnotationMap(buffer, projectDir);
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -0,0 +1,235 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Read-only map view over a mapped {@link CompactAnnotationFile}.
+ * <p>
+ * Paths and annotations are decoded on demand. A {@link ChineseNameService.FolderAnnotation} is materialized on its
+ * first lookup and then reused, so its rendered-name cache survives between paints.
+ */
+public final class CompactAnnotationMap extends AbstractMap<String, ChineseNameService.FolderAnnotation> {
+
+    private final ByteBuffer buffer;
+    @Nullable
+    private final String projectDir;
+    private final int size;
+    private final int restartInterval;
+    private final int restartCount;
+    private final int restartTableOffset;
+    private final AtomicReferenceArray<ChineseNameService.FolderAnnotation> materialized;
+    private Set<Entry<String, ChineseNameService.FolderAnnotation>> entrySet;
+
+    CompactAnnotationMap(ByteBuffer buffer, @Nullable String projectDir) {
+        this.buffer = buffer;
+        this.projectDir = projectDir;
+        this.size = buffer.getInt(4);
+        this.restartInterval = buffer.getInt(8);
+        this.restartCount = buffer.getInt(12);
+        this.restartTableOffset = buffer.getInt(16);
+        this.materialized = new AtomicReferenceArray<>(size);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Nullable
+    @Override
+    public ChineseNameService.FolderAnnotation get(Object key) {
+        if (!(key instanceof String) || size == 0) return null;
+        byte[] target = ProjectPathMacro.collapse(projectDir, (String) key).getBytes(StandardCharsets.UTF_8);
+
+        // Binary search for the last restart whose full key is <= target
+        int low = 0;
+        int high = restartCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (compareRestartKey(mid, target) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        Cursor cursor = new Cursor(restartOffset(low), low * restartInterval);
+        int end = Math.min(size, (low + 1) * restartInterval);
+        while (cursor.ordinal < end) {
+            cursor.advance();
+            int cmp = Arrays.compareUnsigned(cursor.key, 0, cursor.keyLength, target, 0, target.length);
+            if (cmp == 0) return annotationAt(cursor.ordinal - 1, cursor.valueOffset);
+            if (cmp > 0) return null;
+        }
+        return null;
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, ChineseNameService.FolderAnnotation>> entrySet() {
+        Set<Entry<String, ChineseNameService.FolderAnnotation>> result = entrySet;
+        if (result == null) {
+            result = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, ChineseNameService.FolderAnnotation>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = result;
+        }
+        return result;
+    }
+
+    private int restartOffset(int restart) {
+        return buffer.getInt(restartTableOffset + restart * Integer.BYTES);
+    }
+
+    private int compareRestartKey(int restart, byte[] target) {
+        int position = restartOffset(restart);
+        // Restart entries have no shared prefix
+        position = skipVarInt(position);
+        int length = readVarInt(position);
+        position = skipVarInt(position);
+        for (int i = 0; i < length && i < target.length; i++) {
+            int cmp = Byte.toUnsignedInt(buffer.get(position + i)) - Byte.toUnsignedInt(target[i]);
+            if (cmp != 0) return cmp;
+        }
+        return length - target.length;
+    }
+
+    private ChineseNameService.FolderAnnotation annotationAt(int ordinal, int valueOffset) {
+        ChineseNameService.FolderAnnotation annotation = materialized.get(ordinal);
+        if (annotation != null) return annotation;
+
+        boolean hideOriginal = (buffer.get(valueOffset) & CompactAnnotationFile.FLAG_HIDE_ORIGINAL) != 0;
+        int position = valueOffset + 1;
+        int nameLength = readVarInt(position);
+        position = skipVarInt(position);
+        byte[] name = new byte[nameLength];
+        buffer.get(position, name);
+        annotation = AnnotationInterner.intern(
+                new ChineseNameService.FolderAnnotation(new String(name, StandardCharsets.UTF_8), hideOriginal));
+        return materialized.compareAndSet(ordinal, null, annotation) ? annotation : materialized.get(ordinal);
+    }
+
+    private int readVarInt(int position) {
+        int result = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position++);
+            result |= (b & 0x7F) << shift;
+            if (b >= 0) return result;
+        }
+    }
+
+    private int skipVarInt(int position) {
+        while (buffer.get(position++) < 0) {
+            // continuation bit set
+        }
+        return position;
+    }
+
+    /**
+     * Sequential decoder; reuses one key buffer while walking prefix-compressed entries.
+     */
+    private final class Cursor {
+        int position;
+        int ordinal;
+        byte[] key = new byte[256];
+        int keyLength;
+        int valueOffset;
+
+        Cursor(int position, int ordinal) {
+            this.position = position;
+            this.ordinal = ordinal;
+        }
+
+        void advance() {
+            int shared = readVarInt(position);
+            position = skipVarInt(position);
+            int suffix = readVarInt(position);
+            position = skipVarInt(position);
+            keyLength = shared + suffix;
+            if (keyLength > key.length) {
+                key = Arrays.copyOf(key, Math.max(keyLength, key.length * 2));
+            }
+            buffer.get(position, key, shared, suffix);
+            position += suffix;
+            valueOffset = position;
+            position++; // flags
+            int nameLength = readVarInt(position);
+            position = skipVarInt(position) + nameLength;
+            ordinal++;
+        }
+    }
+
+    private final class EntryIterator implements Iterator<Entry<String, ChineseNameService.FolderAnnotation>> {
+        private final Cursor cursor = new Cursor(CompactAnnotationFile.HEADER_SIZE, 0);
+
+        @Override
+        public boolean hasNext() {
+            return cursor.ordinal < size;
+        }
+
+        @Override
+        public Entry<String, ChineseNameService.FolderAnnotation> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            cursor.advance();
+            String path = new String(cursor.key, 0, cursor.keyLength, StandardCharsets.UTF_8);
+            return new LazyEntry(ProjectPathMacro.expand(projectDir, path), cursor.ordinal - 1, cursor.valueOffset);
+        }
+    }
+
+    /**
+     * Entry whose annotation is only decoded when {@link #getValue()} is called.
+     */
+    private final class LazyEntry implements Map.Entry<String, ChineseNameService.FolderAnnotation> {
+        private final String key;
+        private final int ordinal;
+        private final int valueOffset;
+
+        LazyEntry(String key, int ordinal, int valueOffset) {
+            this.key = key;
+            this.ordinal = ordinal;
+            this.valueOffset = valueOffset;
+        }
+
+        @Override
+        public String getKey() {
+            return key;
+        }
+
+        @Override
+        public ChineseNameService.FolderAnnotation getValue() {
+            return annotationAt(ordinal, valueOffset);
+        }
+
+        @Override
+        public ChineseNameService.FolderAnnotation setValue(ChineseNameService.FolderAnnotation value) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
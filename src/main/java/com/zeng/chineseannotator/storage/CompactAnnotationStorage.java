@@ -0,0 +1,239 @@
+package com.zeng.chineseannotator.storage;
+
+import com.intellij.openapi.diagnostic.Logger;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Compact snapshot file plus append-only journal.
+ * <p>
+ * Every write appends only its own changes to the journal, so its cost depends on the change size and not on
+ * the number of annotations. Once the journal passes {@link #COMPACTION_THRESHOLD_BYTES}, it is folded into a
+ * new snapshot file in the background. All file work runs on one sequential pooled thread, so journal appends
+ * and compactions are applied in submission order.
+ * <p>
+ * Each compaction writes a new generation file ({@code <name>.<generation>}) and then switches the small
+ * pointer file ({@code <name>.current}) to it. The mapped file of the previous generation is never overwritten,
+ * so compaction works while older snapshots are still being read, also on Windows where a mapped file can be
+ * neither replaced nor deleted. Older generations are deleted once their mapping is gone.
+ */
+public final class CompactAnnotationStorage {
+
+    private static final Logger LOG = Logger.getInstance(CompactAnnotationStorage.class);
+
+    static final long COMPACTION_THRESHOLD_BYTES = 1L << 20;
+    static final String JOURNAL_SUFFIX = ".journal";
+    static final String POINTER_SUFFIX = ".current";
+
+    private final Path snapshotFile;
+    @Nullable
+    private final String projectDir;
+    private final AnnotationJournal journal;
+    private final ExecutorService executor =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Chinese Annotation Storage", 1);
+    private final AtomicLong journalSize = new AtomicLong();
+    private final AtomicBoolean compactionScheduled = new AtomicBoolean();
+    /** Journal size that triggers the next compaction; only written on {@link #executor}. */
+    private volatile long compactionThreshold = COMPACTION_THRESHOLD_BYTES;
+    /** Generation of the current snapshot; 0 for none, or for the single file written before generations existed. */
+    private volatile long generation;
+
+    public CompactAnnotationStorage(@NotNull Path snapshotFile, @Nullable String projectDir) {
+        this.snapshotFile = snapshotFile;
+        this.projectDir = projectDir;
+        this.journal = new AnnotationJournal(snapshotFile.resolveSibling(snapshotFile.getFileName() + JOURNAL_SUFFIX), projectDir);
+    }
+
+    /**
+     * Maps the snapshot file and replays the journal on top of it.
+     * Returns null when neither file exists.
+     */
+    @Nullable
+    public LayeredAnnotationMap load() throws IOException {
+        generation = readGeneration();
+        Path file = generationFile(generation);
+        boolean hasSnapshot = Files.isRegularFile(file);
+        Map<String, ChineseNameService.FolderAnnotation> base =
+                hasSnapshot ? CompactAnnotationFile.open(file, projectDir) : Collections.emptyMap();
+        LayeredAnnotationMap map = new LayeredAnnotationMap(base);
+        long replayed = journal.replay(map);
+        journalSize.set(replayed);
+        deleteOldGenerations();
+        return hasSnapshot || replayed > 0 ? map : null;
+    }
+
+    /**
+     * Queues one batch of changes for the journal. {@code onAppended} receives, on the storage thread, whether
+     * the batch was written; after a failure the journal misses this batch, so it must not be relied on until
+     * a full snapshot has been written.
+     */
+    public void append(@NotNull List<AnnotationChange> changes, @NotNull Consumer<Boolean> onAppended) {
+        executor.execute(() -> {
+            boolean appended;
+            try {
+                if (!changes.isEmpty()) journalSize.addAndGet(journal.append(changes));
+                appended = true;
+            } catch (IOException e) {
+                LOG.warn("Failed to append to annotation journal", e);
+                appended = false;
+            }
+            onAppended.accept(appended);
+        });
+    }
+
+    public boolean needsCompaction() {
+        return journalSize.get() > compactionThreshold && !compactionScheduled.get();
+    }
+
+    /**
+     * Folds the journal into a new snapshot file in the background. {@code state} must be the annotation state
+     * after the last batch passed to {@link #append}; later appends go to the fresh journal.
+     * {@code onCompacted} receives the newly mapped snapshot on the storage thread.
+     */
+    public void compactInBackground(@NotNull Map<String, ChineseNameService.FolderAnnotation> state,
+                                    @NotNull Consumer<CompactAnnotationMap> onCompacted) {
+        if (!compactionScheduled.compareAndSet(false, true)) return;
+        executor.execute(() -> {
+            try {
+                onCompacted.accept(compact(state));
+            } catch (IOException e) {
+                // Retry once another threshold's worth of changes piled up, so the journal stays bounded
+                compactionThreshold = journalSize.get() + COMPACTION_THRESHOLD_BYTES;
+                LOG.warn("Failed to compact annotation journal", e);
+            } finally {
+                compactionScheduled.set(false);
+            }
+        });
+    }
+
+    /**
+     * Writes a full snapshot after all queued work, and waits for it.
+     */
+    @NotNull
+    public CompactAnnotationMap writeSnapshot(@NotNull Map<String, ChineseNameService.FolderAnnotation> state) throws IOException {
+        return await(executor.submit(() -> compact(state)));
+    }
+
+    /**
+     * Waits for queued appends and forces the journal to disk.
+     */
+    public void flush() throws IOException {
+        await(executor.submit(() -> {
+            journal.sync();
+            return null;
+        }));
+    }
+
+    private CompactAnnotationMap compact(Map<String, ChineseNameService.FolderAnnotation> state) throws IOException {
+        long nextGeneration = generation + 1;
+        Path file = generationFile(nextGeneration);
+        CompactAnnotationFile.write(file, state, projectDir);
+        writeGeneration(nextGeneration);
+        generation = nextGeneration;
+        // A crash right here only leaves already-folded records behind; replaying them is harmless
+        journal.reset();
+        journalSize.set(0);
+        compactionThreshold = COMPACTION_THRESHOLD_BYTES;
+        CompactAnnotationMap map = CompactAnnotationFile.open(file, projectDir);
+        deleteOldGenerations();
+        return map;
+    }
+
+    /**
+     * Generation named by the pointer file; 0 if there is none yet, which selects the pre-generation snapshot file.
+     */
+    private long readGeneration() throws IOException {
+        Path pointer = pointerFile();
+        if (!Files.isRegularFile(pointer)) return 0;
+        String text = Files.readString(pointer, StandardCharsets.UTF_8).trim();
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            throw new IOException("Invalid compact annotation pointer: " + text, e);
+        }
+    }
+
+    private void writeGeneration(long value) throws IOException {
+        Path pointer = pointerFile();
+        Path temp = pointer.resolveSibling(pointer.getFileName() + ".tmp");
+        Files.writeString(temp, Long.toString(value), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, pointer, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(temp, pointer, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes the snapshot files of earlier generations. A file that is still mapped cannot be deleted on
+     * Windows; it stays until a later compaction or the next load tries again.
+     */
+    private void deleteOldGenerations() {
+        Path directory = snapshotFile.getParent();
+        if (directory == null || !Files.isDirectory(directory)) return;
+        String prefix = snapshotFile.getFileName() + ".";
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                boolean old = name.equals(snapshotFile.getFileName().toString()) && generation > 0;
+                if (!old && name.startsWith(prefix)) {
+                    try {
+                        old = Long.parseLong(name.substring(prefix.length())) < generation;
+                    } catch (NumberFormatException ignored) {
+                        // journal, pointer or temporary file
+                    }
+                }
+                if (old) deleteQuietly(file);
+            }
+        } catch (IOException e) {
+            LOG.debug("Failed to list old compact annotation files", e);
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOG.debug("Old compact annotation file still in use: " + file, e);
+        }
+    }
+
+    private Path generationFile(long value) {
+        return value == 0 ? snapshotFile : snapshotFile.resolveSibling(snapshotFile.getFileName() + "." + value);
+    }
+
+    private Path pointerFile() {
+        return snapshotFile.resolveSibling(snapshotFile.getFileName() + POINTER_SUFFIX);
+    }
+
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) throw (IOException) cause;
+            throw new IOException(cause);
+        }
+    }
+}
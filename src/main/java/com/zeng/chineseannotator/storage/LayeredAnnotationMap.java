@@ -0,0 +1,171 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Annotation map made of a read-only base (usually a mapped {@link CompactAnnotationMap}) and a small overlay
+ * of changes made since the base was written. Removed base entries are kept in the overlay as null values.
+ * <p>
+ * Copying only copies the overlay, so a copy-on-write update costs O(changes since compaction)
+ * instead of O(all annotations). Copies made with {@link #mutableCopy()} also record their changes for the journal.
+ */
+public final class LayeredAnnotationMap extends AbstractMap<String, ChineseNameService.FolderAnnotation> {
+
+    private Map<String, ChineseNameService.FolderAnnotation> base;
+    private final HashMap<String, ChineseNameService.FolderAnnotation> overlay;
+    private int size;
+    @Nullable
+    private final List<AnnotationChange> changes;
+    private Set<Entry<String, ChineseNameService.FolderAnnotation>> entrySet;
+
+    public LayeredAnnotationMap(@NotNull Map<String, ChineseNameService.FolderAnnotation> base) {
+        this(base, new HashMap<>(), base.size(), null);
+    }
+
+    private LayeredAnnotationMap(Map<String, ChineseNameService.FolderAnnotation> base,
+                                 HashMap<String, ChineseNameService.FolderAnnotation> overlay,
+                                 int size,
+                                 @Nullable List<AnnotationChange> changes) {
+        this.base = base;
+        this.overlay = overlay;
+        this.size = size;
+        this.changes = changes;
+    }
+
+    /**
+     * Copy sharing the same base, with its own overlay and a change log.
+     */
+    public LayeredAnnotationMap mutableCopy() {
+        return new LayeredAnnotationMap(base, new HashMap<>(overlay), size, new ArrayList<>());
+    }
+
+    /**
+     * Changes applied to this copy since {@link #mutableCopy()}, in order.
+     */
+    @NotNull
+    public List<AnnotationChange> getChanges() {
+        return changes != null ? changes : Collections.emptyList();
+    }
+
+    public int getOverlaySize() {
+        return overlay.size();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation get(Object key) {
+        if (overlay.containsKey(key)) {
+            return overlay.get(key);
+        }
+        return base.get(key);
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation put(String key, ChineseNameService.FolderAnnotation value) {
+        if (value == null) throw new NullPointerException("value");
+        ChineseNameService.FolderAnnotation previous = get(key);
+        if (previous == null) size++;
+        overlay.put(key, value);
+        if (changes != null) changes.add(AnnotationChange.put(key, value));
+        return previous;
+    }
+
+    @Override
+    public ChineseNameService.FolderAnnotation remove(Object key) {
+        if (!(key instanceof String)) return null;
+        ChineseNameService.FolderAnnotation previous = get(key);
+        if (previous == null) return null;
+        size--;
+        if (base.containsKey(key)) {
+            overlay.put((String) key, null);
+        } else {
+            overlay.remove(key);
+        }
+        if (changes != null) changes.add(AnnotationChange.remove((String) key));
+        return previous;
+    }
+
+    @Override
+    public void clear() {
+        base = Collections.emptyMap();
+        overlay.clear();
+        size = 0;
+        if (changes != null) changes.add(AnnotationChange.clear());
+    }
+
+    @NotNull
+    @Override
+    public Set<Entry<String, ChineseNameService.FolderAnnotation>> entrySet() {
+        Set<Entry<String, ChineseNameService.FolderAnnotation>> result = entrySet;
+        if (result == null) {
+            result = new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<String, ChineseNameService.FolderAnnotation>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+            };
+            entrySet = result;
+        }
+        return result;
+    }
+
+    /**
+     * Overlay entries first, then base entries not shadowed by the overlay.
+     */
+    private final class EntryIterator implements Iterator<Entry<String, ChineseNameService.FolderAnnotation>> {
+        private final Iterator<Entry<String, ChineseNameService.FolderAnnotation>> overlayIterator = overlay.entrySet().iterator();
+        private final Iterator<Entry<String, ChineseNameService.FolderAnnotation>> baseIterator = base.entrySet().iterator();
+        private Entry<String, ChineseNameService.FolderAnnotation> next;
+
+        @Override
+        public boolean hasNext() {
+            while (next == null) {
+                if (overlayIterator.hasNext()) {
+                    Entry<String, ChineseNameService.FolderAnnotation> entry = overlayIterator.next();
+                    if (entry.getValue() != null) next = entry;
+                } else if (baseIterator.hasNext()) {
+                    Entry<String, ChineseNameService.FolderAnnotation> entry = baseIterator.next();
+                    if (!overlay.containsKey(entry.getKey())) next = entry;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Entry<String, ChineseNameService.FolderAnnotation> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            Entry<String, ChineseNameService.FolderAnnotation> result = next;
+            next = null;
+            return result;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.zeng.chineseannotator.storage;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Stores annotation paths relative to the project directory, so a relocated checkout keeps its annotations
+ * without rewriting any file. Runtime keys stay absolute; only the persisted forms use the macro.
+ */
+public final class ProjectPathMacro {
+
+    public static final String PROJECT_DIR = "$PROJECT_DIR$";
+
+    private ProjectPathMacro() {
+    }
+
+    @NotNull
+    public static String collapse(@Nullable String projectDir, @NotNull String path) {
+        if (projectDir == null || !path.startsWith(projectDir)) return path;
+        int length = projectDir.length();
+        if (path.length() != length && path.charAt(length) != '/') return path;
+        return PROJECT_DIR + path.substring(length);
+    }
+
+    @NotNull
+    public static String expand(@Nullable String projectDir, @NotNull String path) {
+        if (projectDir == null || !path.startsWith(PROJECT_DIR)) return path;
+        return projectDir + path.substring(PROJECT_DIR.length());
+    }
+}
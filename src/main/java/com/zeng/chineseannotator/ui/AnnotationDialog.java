@@ -2,6 +2,8 @@ package com.zeng.chineseannotator.ui;
 
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.ui.UIUtil;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
@@ -10,24 +12,35 @@ import javax.swing.event.DocumentListener;
 import java.awt.*;
 
 /**
- * Dialog for adding or editing Chinese annotation for a folder.
+ * Dialog for adding or editing Chinese annotation for a folder or file.
  */
 public class AnnotationDialog extends DialogWrapper {
 
     private JTextField chineseNameField;
     private JCheckBox hideOriginalNameCheckBox;
     private final String folderName;
+    @Nullable
+    private final String note;
 
     public AnnotationDialog(Project project, String folderName, String existingChineseName, boolean hideOriginal) {
+        this(project, folderName, existingChineseName, hideOriginal, null);
+    }
+
+    /**
+     * @param note shown below the preview, e.g. where an annotation the folder shows without a personal one comes from
+     */
+    public AnnotationDialog(Project project, String folderName, String existingChineseName, boolean hideOriginal,
+                            @Nullable String note) {
         super(project, true);
         this.folderName = folderName;
+        this.note = note;
 
         setTitle("Add Chinese Annotation");
         setOKButtonText("OK");
         setCancelButtonText("Cancel");
 
         chineseNameField = new JTextField(20);
-        hideOriginalNameCheckBox = new JCheckBox("Hide original folder name (show only Chinese name)");
+        hideOriginalNameCheckBox = new JCheckBox("Hide original name (show only Chinese name)");
 
         chineseNameField.setText(existingChineseName);
         hideOriginalNameCheckBox.setSelected(hideOriginal);
@@ -58,7 +71,7 @@ public class AnnotationDialog extends DialogWrapper {
         // Folder name label
         gbc.gridx = 0;
         gbc.gridy = 0;
-        panel.add(new JLabel("Folder Name:"), gbc);
+        panel.add(new JLabel("Name:"), gbc);
 
         gbc.gridx = 1;
         gbc.fill = GridBagConstraints.HORIZONTAL;
@@ -118,6 +131,15 @@ public class AnnotationDialog extends DialogWrapper {
 
         hideOriginalNameCheckBox.addActionListener(e -> updatePreview(previewLabel));
 
+        if (note != null) {
+            gbc.gridx = 0;
+            gbc.gridy = 4;
+            gbc.gridwidth = 2;
+            JLabel noteLabel = new JLabel("<html>" + StringUtil.escapeXmlEntities(note) + "</html>");
+            noteLabel.setForeground(UIUtil.getContextHelpForeground());
+            panel.add(noteLabel, gbc);
+        }
+
         updatePreview(previewLabel);
 
         return panel;
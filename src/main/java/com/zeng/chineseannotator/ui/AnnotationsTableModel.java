@@ -0,0 +1,275 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+import com.intellij.openapi.util.text.StringUtil;
+import com.intellij.util.concurrency.AppExecutorUtil;
+import com.zeng.chineseannotator.service.AnnotationSnapshot;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Annotation table backed directly by a service snapshot.
+ * <p>
+ * Rows are only path keys; names and flags are read from the snapshot when a cell is painted, so opening
+ * the settings does not copy every entry. Sorting and filtering run on a pooled thread and are published
+ * back on the EDT. Edits are kept as a delta over the snapshot and applied with {@link #applyTo(Map)}.
+ * All methods except the background filter must be called on the EDT.
+ */
+class AnnotationsTableModel extends AbstractTableModel {
+
+    private static final ExecutorService FILTER_EXECUTOR =
+            AppExecutorUtil.createBoundedApplicationPoolExecutor("Chinese Annotation Filter", 1);
+
+    private final JComponent owner;
+    private final Runnable onRowsChanged;
+
+    private AnnotationSnapshot base;
+    private List<String> visible = new ArrayList<>();
+
+    /**
+     * Pending changes over {@link #base}: edited entries, removed paths, and whether everything was cleared.
+     */
+    private final Map<String, ChineseNameService.FolderAnnotation> edited = new HashMap<>();
+    private final Set<String> removed = new HashSet<>();
+    private boolean cleared;
+
+    private String query = "";
+    /**
+     * All keys of {@link #base}, sorted once per snapshot off the EDT.
+     */
+    @Nullable
+    private String[] sortedKeys;
+    /**
+     * Keys of {@link #base} matching {@link #lastQuery}, before removals; refined in place when the query grows.
+     */
+    @Nullable
+    private String[] lastMatches;
+    private String lastQuery = "";
+    private int filterGeneration;
+    private boolean loading;
+
+    AnnotationsTableModel(@NotNull JComponent owner, @NotNull Runnable onRowsChanged) {
+        this.owner = owner;
+        this.onRowsChanged = onRowsChanged;
+    }
+
+    /**
+     * Shows the given snapshot and drops all pending edits; the current filter is kept.
+     */
+    void load(@NotNull AnnotationSnapshot snapshot) {
+        base = snapshot;
+        edited.clear();
+        removed.clear();
+        cleared = false;
+        sortedKeys = null;
+        lastMatches = null;
+        lastQuery = "";
+        visible = new ArrayList<>();
+        fireTableDataChanged();
+        refilter();
+    }
+
+    /**
+     * Filters rows by path or Chinese name, case-insensitively.
+     */
+    void setFilter(@NotNull String text) {
+        String trimmed = text.trim();
+        if (trimmed.equals(query)) return;
+        query = trimmed;
+        refilter();
+    }
+
+    private void refilter() {
+        int generation = ++filterGeneration;
+        AnnotationSnapshot snapshot = base;
+        String currentQuery = query;
+        // Typing more characters only narrows the result, so the previous matches are searched instead of everything
+        String[] source = lastMatches != null && StringUtil.containsIgnoreCase(currentQuery, lastQuery) ? lastMatches : sortedKeys;
+        loading = true;
+        onRowsChanged.run();
+        FILTER_EXECUTOR.execute(() -> {
+            String[] keys = source != null ? source : sortedKeys(snapshot);
+            String[] matches = filter(snapshot, keys, currentQuery);
+            ApplicationManager.getApplication().invokeLater(() -> {
+                if (generation != filterGeneration || snapshot != base) return;
+                if (source == null) sortedKeys = keys;
+                lastMatches = matches;
+                lastQuery = currentQuery;
+                loading = false;
+                publish(matches);
+            }, ModalityState.stateForComponent(owner));
+        });
+    }
+
+    private static String[] sortedKeys(AnnotationSnapshot snapshot) {
+        String[] keys = snapshot.getAnnotations().keySet().toArray(new String[0]);
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    private static String[] filter(AnnotationSnapshot snapshot, String[] source, String query) {
+        if (query.isEmpty()) return source;
+        List<String> result = new ArrayList<>();
+        for (String path : source) {
+            ChineseNameService.FolderAnnotation annotation = snapshot.get(path);
+            if (StringUtil.containsIgnoreCase(path, query)
+                    || annotation != null && StringUtil.containsIgnoreCase(annotation.chineseName, query)) {
+                result.add(path);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private void publish(String[] matches) {
+        List<String> rows = new ArrayList<>(matches.length);
+        if (!cleared) {
+            for (String path : matches) {
+                if (removed.isEmpty() || !removed.contains(path)) {
+                    rows.add(path);
+                }
+            }
+        }
+        visible = rows;
+        fireTableDataChanged();
+        onRowsChanged.run();
+    }
+
+    boolean isLoading() {
+        return loading;
+    }
+
+    int getTotalCount() {
+        return cleared ? 0 : base.size() - removed.size();
+    }
+
+    @Override
+    public int getRowCount() {
+        return visible.size();
+    }
+
+    @Override
+    public int getColumnCount() {
+        return 3;
+    }
+
+    @Override
+    public String getColumnName(int column) {
+        return switch (column) {
+            case 0 -> "Path";
+            case 1 -> "Chinese Name";
+            case 2 -> "Hide Original";
+            default -> "";
+        };
+    }
+
+    @Override
+    public Object getValueAt(int rowIndex, int columnIndex) {
+        String path = visible.get(rowIndex);
+        if (columnIndex == 0) return path;
+        ChineseNameService.FolderAnnotation annotation = current(path);
+        if (annotation == null) return columnIndex == 2 ? Boolean.FALSE : "";
+        return columnIndex == 1 ? annotation.chineseName : annotation.hideOriginalName;
+    }
+
+    @Nullable
+    private ChineseNameService.FolderAnnotation current(String path) {
+        ChineseNameService.FolderAnnotation annotation = edited.get(path);
+        return annotation != null ? annotation : base.get(path);
+    }
+
+    @Override
+    public Class<?> getColumnClass(int columnIndex) {
+        return columnIndex == 2 ? Boolean.class : String.class;
+    }
+
+    @Override
+    public boolean isCellEditable(int rowIndex, int columnIndex) {
+        return columnIndex == 1 || columnIndex == 2;
+    }
+
+    @Override
+    public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+        String path = visible.get(rowIndex);
+        ChineseNameService.FolderAnnotation annotation = current(path);
+        if (annotation == null) return;
+        String chineseName = annotation.chineseName;
+        boolean hideOriginal = annotation.hideOriginalName;
+        if (columnIndex == 1) {
+            chineseName = ((String) aValue).trim();
+            if (chineseName.isEmpty()) return;
+        } else if (columnIndex == 2) {
+            hideOriginal = (Boolean) aValue;
+        } else {
+            return;
+        }
+        // Snapshot entries are shared and never mutated; an edit back to the stored value is no longer a change
+        ChineseNameService.FolderAnnotation stored = base.get(path);
+        if (stored != null && stored.chineseName.equals(chineseName) && stored.hideOriginalName == hideOriginal) {
+            edited.remove(path);
+        } else {
+            edited.put(path, new ChineseNameService.FolderAnnotation(chineseName, hideOriginal));
+        }
+        fireTableCellUpdated(rowIndex, columnIndex);
+    }
+
+    void removeRow(int rowIndex) {
+        String path = visible.remove(rowIndex);
+        edited.remove(path);
+        removed.add(path);
+        fireTableRowsDeleted(rowIndex, rowIndex);
+        onRowsChanged.run();
+    }
+
+    void clear() {
+        cleared = true;
+        edited.clear();
+        removed.clear();
+        visible = new ArrayList<>();
+        fireTableDataChanged();
+        onRowsChanged.run();
+    }
+
+    boolean isModified() {
+        return cleared || !edited.isEmpty() || !removed.isEmpty();
+    }
+
+    boolean isCleared() {
+        return cleared;
+    }
+
+    /**
+     * Paths whose annotation is added, edited or removed by {@link #applyTo(Map)}; everything after a clear.
+     */
+    Collection<String> getChangedPaths() {
+        if (cleared) return base.getAnnotations().keySet();
+        Set<String> result = new HashSet<>(edited.keySet());
+        result.addAll(removed);
+        return result;
+    }
+
+    /**
+     * Applies only the pending changes, so concurrent edits to untouched folders survive and the journal gets
+     * one entry per changed folder.
+     */
+    void applyTo(Map<String, ChineseNameService.FolderAnnotation> map) {
+        if (cleared) map.clear();
+        for (String path : removed) {
+            map.remove(path);
+        }
+        map.putAll(edited);
+    }
+}
@@ -0,0 +1,44 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.notification.NotificationAction;
+import com.intellij.notification.NotificationGroupManager;
+import com.intellij.notification.NotificationType;
+import com.intellij.openapi.project.Project;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Balloon notifications of the plugin's notification group (registered in plugin.xml).
+ */
+public final class AnnotatorNotifications {
+
+    public static final String GROUP_ID = "Folder Chinese Annotator";
+
+    private AnnotatorNotifications() {
+    }
+
+    public static void info(@NotNull Project project, @NotNull String content) {
+        notify(project, content, NotificationType.INFORMATION);
+    }
+
+    /**
+     * Information balloon with a link that runs {@code action} and then expires the balloon.
+     */
+    public static void info(@NotNull Project project, @NotNull String content, @NotNull String actionText, @NotNull Runnable action) {
+        NotificationGroupManager.getInstance()
+                .getNotificationGroup(GROUP_ID)
+                .createNotification(content, NotificationType.INFORMATION)
+                .addAction(NotificationAction.createSimpleExpiring(actionText, action))
+                .notify(project);
+    }
+
+    public static void error(@NotNull Project project, @NotNull String content) {
+        notify(project, content, NotificationType.ERROR);
+    }
+
+    private static void notify(Project project, String content, NotificationType type) {
+        NotificationGroupManager.getInstance()
+                .getNotificationGroup(GROUP_ID)
+                .createNotification(content, type)
+                .notify(project);
+    }
+}
@@ -0,0 +1,141 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.zeng.chineseannotator.service.DictionaryScanner;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Review dialog for annotations proposed by the dictionary scan.
+ * Proposals can be unchecked or renamed before they are applied.
+ */
+public class AutoAnnotateReviewDialog extends DialogWrapper {
+
+    private final List<DictionaryScanner.Proposal> proposals;
+    private final ProposalsTableModel tableModel;
+
+    public AutoAnnotateReviewDialog(Project project, List<DictionaryScanner.Proposal> proposals) {
+        super(project, true);
+        this.proposals = proposals;
+        this.tableModel = new ProposalsTableModel();
+
+        setTitle("Review Proposed Chinese Annotations");
+        setOKButtonText("Apply Selected");
+        setCancelButtonText("Cancel");
+
+        init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JBLabel(proposals.size() + " folders matched the dictionary"), BorderLayout.NORTH);
+
+        JTable table = new JTable(tableModel);
+        table.setRowHeight(25);
+        table.getColumnModel().getColumn(0).setMaxWidth(60);
+        JBScrollPane scrollPane = new JBScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(800, 400));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton selectAllButton = new JButton("Select All");
+        selectAllButton.addActionListener(e -> tableModel.setAllAccepted(true));
+        buttonsPanel.add(selectAllButton);
+        JButton selectNoneButton = new JButton("Select None");
+        selectNoneButton.addActionListener(e -> tableModel.setAllAccepted(false));
+        buttonsPanel.add(selectNoneButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    /**
+     * Proposals that are still checked and have a non-empty name.
+     */
+    public List<DictionaryScanner.Proposal> getAcceptedProposals() {
+        List<DictionaryScanner.Proposal> result = new ArrayList<>();
+        for (DictionaryScanner.Proposal proposal : proposals) {
+            if (proposal.accepted && !proposal.chineseName.isBlank()) {
+                result.add(proposal);
+            }
+        }
+        return result;
+    }
+
+    private class ProposalsTableModel extends AbstractTableModel {
+
+        @Override
+        public int getRowCount() {
+            return proposals.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 4;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return switch (column) {
+                case 0 -> "Apply";
+                case 1 -> "Folder Path";
+                case 2 -> "Chinese Name";
+                case 3 -> "Hide Original";
+                default -> "";
+            };
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            DictionaryScanner.Proposal proposal = proposals.get(rowIndex);
+            return switch (columnIndex) {
+                case 0 -> proposal.accepted;
+                case 1 -> proposal.folderPath;
+                case 2 -> proposal.chineseName;
+                case 3 -> proposal.hideOriginalName;
+                default -> "";
+            };
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return columnIndex == 0 || columnIndex == 3 ? Boolean.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int rowIndex, int columnIndex) {
+            return columnIndex != 1;
+        }
+
+        @Override
+        public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+            DictionaryScanner.Proposal proposal = proposals.get(rowIndex);
+            switch (columnIndex) {
+                case 0 -> proposal.accepted = (Boolean) aValue;
+                case 2 -> proposal.chineseName = ((String) aValue).trim();
+                case 3 -> proposal.hideOriginalName = (Boolean) aValue;
+                default -> {
+                    return;
+                }
+            }
+            fireTableCellUpdated(rowIndex, columnIndex);
+        }
+
+        void setAllAccepted(boolean accepted) {
+            for (DictionaryScanner.Proposal proposal : proposals) {
+                proposal.accepted = accepted;
+            }
+            fireTableDataChanged();
+        }
+    }
+}
@@ -0,0 +1,184 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.DialogWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Grid for annotating several selected folders or files at once.
+ * A row whose name is cleared removes the annotation, as the "clear" button does in {@link AnnotationDialog}.
+ */
+public class BatchAnnotationDialog extends DialogWrapper {
+
+    /**
+     * One selected folder or file; {@link #chineseName} and {@link #hideOriginalName} hold the edited values.
+     */
+    public static final class Row {
+        public final String path;
+        public final String originalName;
+        private final String initialChineseName;
+        private final boolean initialHideOriginal;
+        public String chineseName;
+        public boolean hideOriginalName;
+
+        public Row(@NotNull String path, @NotNull String originalName, @NotNull String chineseName, boolean hideOriginalName) {
+            this.path = path;
+            this.originalName = originalName;
+            this.initialChineseName = chineseName;
+            this.initialHideOriginal = hideOriginalName;
+            this.chineseName = chineseName;
+            this.hideOriginalName = hideOriginalName;
+        }
+
+        /**
+         * Whether applying this row changes anything; an empty name only counts if there was one before.
+         */
+        public boolean isModified() {
+            if (chineseName.isEmpty()) return !initialChineseName.isEmpty();
+            return !chineseName.equals(initialChineseName) || hideOriginalName != initialHideOriginal;
+        }
+    }
+
+    private final List<Row> rows;
+    private final RowsTableModel tableModel;
+    private JTable table;
+
+    public BatchAnnotationDialog(Project project, List<Row> rows) {
+        super(project, true);
+        this.rows = rows;
+        this.tableModel = new RowsTableModel();
+
+        setTitle("Add Chinese Annotations");
+        setOKButtonText("OK");
+        setCancelButtonText("Cancel");
+
+        init();
+    }
+
+    @Nullable
+    @Override
+    protected JComponent createCenterPanel() {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JBLabel(rows.size() + " items selected; leave a name empty to remove its annotation"), BorderLayout.NORTH);
+
+        table = new JTable(tableModel);
+        table.setRowHeight(25);
+        table.setAutoCreateRowSorter(true);
+        table.getColumnModel().getColumn(3).setMaxWidth(110);
+        JBScrollPane scrollPane = new JBScrollPane(table);
+        scrollPane.setPreferredSize(new Dimension(800, 400));
+        panel.add(scrollPane, BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton hideAllButton = new JButton("Hide All Originals");
+        hideAllButton.addActionListener(e -> tableModel.setAllHideOriginal(true));
+        buttonsPanel.add(hideAllButton);
+        JButton showAllButton = new JButton("Show All Originals");
+        showAllButton.addActionListener(e -> tableModel.setAllHideOriginal(false));
+        buttonsPanel.add(showAllButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        return panel;
+    }
+
+    @Nullable
+    @Override
+    public JComponent getPreferredFocusedComponent() {
+        return table;
+    }
+
+    @Override
+    protected void doOKAction() {
+        // Keep the value still being typed in a cell
+        if (table.isEditing()) table.getCellEditor().stopCellEditing();
+        super.doOKAction();
+    }
+
+    /**
+     * Rows the user actually changed.
+     */
+    public List<Row> getModifiedRows() {
+        List<Row> result = new ArrayList<>();
+        for (Row row : rows) {
+            if (row.isModified()) {
+                result.add(row);
+            }
+        }
+        return result;
+    }
+
+    private class RowsTableModel extends AbstractTableModel {
+
+        @Override
+        public int getRowCount() {
+            return rows.size();
+        }
+
+        @Override
+        public int getColumnCount() {
+            return 4;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return switch (column) {
+                case 0 -> "Name";
+                case 1 -> "Path";
+                case 2 -> "Chinese Name";
+                case 3 -> "Hide Original";
+                default -> "";
+            };
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            Row row = rows.get(rowIndex);
+            return switch (columnIndex) {
+                case 0 -> row.originalName;
+                case 1 -> row.path;
+                case 2 -> row.chineseName;
+                case 3 -> row.hideOriginalName;
+                default -> "";
+            };
+        }
+
+        @Override
+        public Class<?> getColumnClass(int columnIndex) {
+            return columnIndex == 3 ? Boolean.class : String.class;
+        }
+
+        @Override
+        public boolean isCellEditable(int rowIndex, int columnIndex) {
+            return columnIndex >= 2;
+        }
+
+        @Override
+        public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
+            Row row = rows.get(rowIndex);
+            switch (columnIndex) {
+                case 2 -> row.chineseName = ((String) aValue).trim();
+                case 3 -> row.hideOriginalName = (Boolean) aValue;
+                default -> {
+                    return;
+                }
+            }
+            fireTableCellUpdated(rowIndex, columnIndex);
+        }
+
+        void setAllHideOriginal(boolean hide) {
+            for (Row row : rows) {
+                row.hideOriginalName = hide;
+            }
+            fireTableDataChanged();
+        }
+    }
+}
@@ -1,16 +1,28 @@
 package com.zeng.chineseannotator.ui;
 
 import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.ComboBox;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.ui.DocumentAdapter;
+import com.intellij.ui.JBSplitter;
+import com.intellij.ui.SearchTextField;
+import com.intellij.ui.SimpleListCellRenderer;
 import com.intellij.ui.components.JBLabel;
 import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.components.JBTabbedPane;
+import com.intellij.ui.table.JBTable;
 import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
+import com.zeng.chineseannotator.service.StaleAnnotationSweeper;
+import org.jetbrains.annotations.NotNull;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import javax.swing.table.AbstractTableModel;
 import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
 /**
  * Settings panel for managing Chinese name annotations.
@@ -18,10 +30,19 @@ import java.util.Map;
 public class ChineseNameSettingsPanel {
 
     private JPanel mainPanel;
-    private JTable annotationsTable;
+    private JBTable annotationsTable;
     private AnnotationsTableModel tableModel;
+    private SearchTextField filterField;
+    private JBLabel countLabel;
+    private JTable rulesTable;
+    private RulesTableModel rulesModel;
+    private JTable templatesTable;
+    private RulesTableModel templatesModel;
     private JCheckBox holdPreviewCheckBox;
     private JCheckBox defaultHideOnAddCheckBox;
+    private JCheckBox compactStorageCheckBox;
+    private ComboBox<ChineseNameService.StaleAnnotationPolicy> stalePolicyComboBox;
+    private JSpinner staleRetentionSpinner;
     private final Project project;
     private final ChineseNameService service;
 
@@ -53,16 +74,52 @@ public class ChineseNameSettingsPanel {
         northPanel.add(Box.createVerticalStrut(6));
         northPanel.add(defaultHideOnAddCheckBox);
 
+        compactStorageCheckBox = new JCheckBox("Use compact storage for large annotation sets (.idea/" + ChineseNameService.COMPACT_FILE_NAME + ")");
+        compactStorageCheckBox.setAlignmentX(Component.LEFT_ALIGNMENT);
+        northPanel.add(Box.createVerticalStrut(6));
+        northPanel.add(compactStorageCheckBox);
+
+        JPanel stalePanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+        stalePanel.setAlignmentX(Component.LEFT_ALIGNMENT);
+        stalePanel.add(new JBLabel("Annotations of missing folders: "));
+        stalePolicyComboBox = new ComboBox<>(ChineseNameService.StaleAnnotationPolicy.values());
+        stalePolicyComboBox.setRenderer(SimpleListCellRenderer.create("", policy -> switch (policy) {
+            case OFF -> "Keep";
+            case REPORT -> "Report";
+            case PRUNE -> "Remove automatically";
+        }));
+        stalePanel.add(stalePolicyComboBox);
+        stalePanel.add(new JBLabel("  once missing for "));
+        staleRetentionSpinner = new JSpinner(new SpinnerNumberModel(30, 0, 3650, 1));
+        stalePanel.add(staleRetentionSpinner);
+        stalePanel.add(new JBLabel(" days"));
+        northPanel.add(Box.createVerticalStrut(6));
+        northPanel.add(stalePanel);
+
         mainPanel.add(northPanel, BorderLayout.NORTH);
 
-        // Table
-        tableModel = new AnnotationsTableModel();
-        annotationsTable = new JTable(tableModel);
+        // Table: rows are read lazily from the service snapshot, filtering runs off the EDT
+        JPanel annotationsPanel = new JPanel(new BorderLayout());
+        tableModel = new AnnotationsTableModel(annotationsPanel, this::updateCountLabel);
+        annotationsTable = new JBTable(tableModel);
         annotationsTable.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
         annotationsTable.setRowHeight(25);
 
+        JPanel filterPanel = new JPanel(new BorderLayout());
+        filterField = new SearchTextField(false);
+        filterField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                tableModel.setFilter(filterField.getText());
+            }
+        });
+        filterPanel.add(filterField, BorderLayout.CENTER);
+        countLabel = new JBLabel();
+        filterPanel.add(countLabel, BorderLayout.EAST);
+        annotationsPanel.add(filterPanel, BorderLayout.NORTH);
+
         JBScrollPane scrollPane = new JBScrollPane(annotationsTable);
-        mainPanel.add(scrollPane, BorderLayout.CENTER);
+        annotationsPanel.add(scrollPane, BorderLayout.CENTER);
 
         // Buttons panel
         JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
@@ -71,8 +128,8 @@ public class ChineseNameSettingsPanel {
         deleteButton.addActionListener(e -> {
             int selectedRow = annotationsTable.getSelectedRow();
             if (selectedRow >= 0) {
+                if (annotationsTable.isEditing()) annotationsTable.getCellEditor().cancelCellEditing();
                 tableModel.removeRow(selectedRow);
-                annotationsTable.repaint();
             }
         });
         buttonsPanel.add(deleteButton);
@@ -84,17 +141,79 @@ public class ChineseNameSettingsPanel {
                     "Confirm",
                     JOptionPane.YES_NO_OPTION);
             if (result == JOptionPane.YES_OPTION) {
+                if (annotationsTable.isEditing()) annotationsTable.getCellEditor().cancelCellEditing();
                 tableModel.clear();
-                annotationsTable.repaint();
             }
         });
         buttonsPanel.add(clearAllButton);
 
-        mainPanel.add(buttonsPanel, BorderLayout.SOUTH);
+        annotationsPanel.add(buttonsPanel, BorderLayout.SOUTH);
+
+        // Rules: pattern-based annotations, e.g. **/dao -> 数据访问
+        rulesModel = new RulesTableModel("Pattern");
+        rulesTable = new JTable(rulesModel);
+        JPanel rulesPanel = createRulesPanel(
+                "Rules (glob over project-relative paths, e.g. **/dao; exact annotations win, first rule wins)",
+                rulesModel, rulesTable, "Rule");
+
+        // Templates: paths relative to every module content root, e.g. src/main/resources/script -> 脚本
+        templatesModel = new RulesTableModel("Relative Path");
+        templatesTable = new JTable(templatesModel);
+        JPanel templatesPanel = createRulesPanel(
+                "Templates (path relative to any module content root, e.g. src/main/resources/script; win over rules)",
+                templatesModel, templatesTable, "Template");
+
+        JBTabbedPane patternTabs = new JBTabbedPane();
+        patternTabs.addTab("Rules", rulesPanel);
+        patternTabs.addTab("Templates", templatesPanel);
+
+        JBSplitter splitter = new JBSplitter(true, 0.65f);
+        splitter.setFirstComponent(annotationsPanel);
+        splitter.setSecondComponent(patternTabs);
+        mainPanel.add(splitter, BorderLayout.CENTER);
 
         reset();
     }
 
+    private static JPanel createRulesPanel(String title, RulesTableModel model, JTable table, String itemName) {
+        JPanel panel = new JPanel(new BorderLayout());
+        panel.add(new JBLabel(title), BorderLayout.NORTH);
+
+        table.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        table.setRowHeight(25);
+        panel.add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        JPanel buttonsPanel = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JButton addButton = new JButton("Add " + itemName);
+        addButton.addActionListener(e -> {
+            int row = model.addRow();
+            table.editCellAt(row, 0);
+        });
+        buttonsPanel.add(addButton);
+
+        JButton removeButton = new JButton("Remove " + itemName);
+        removeButton.addActionListener(e -> {
+            int selectedRow = table.getSelectedRow();
+            if (selectedRow >= 0) {
+                if (table.isEditing()) table.getCellEditor().cancelCellEditing();
+                model.removeRow(selectedRow);
+            }
+        });
+        buttonsPanel.add(removeButton);
+        panel.add(buttonsPanel, BorderLayout.SOUTH);
+        return panel;
+    }
+
+    private void updateCountLabel() {
+        if (tableModel.isLoading()) {
+            countLabel.setText("Loading...");
+            annotationsTable.getEmptyText().setText("Loading...");
+        } else {
+            countLabel.setText(tableModel.getRowCount() + " / " + tableModel.getTotalCount());
+            annotationsTable.getEmptyText().setText("No annotations");
+        }
+    }
+
     public JPanel getPanel() {
         return mainPanel;
     }
@@ -103,21 +222,70 @@ public class ChineseNameSettingsPanel {
         boolean tableChanged = tableModel.isModified();
         boolean holdChanged = holdPreviewCheckBox != null && holdPreviewCheckBox.isSelected() != service.holdToShowOriginalEnabled;
         boolean defaultHideChanged = defaultHideOnAddCheckBox != null && defaultHideOnAddCheckBox.isSelected() != service.defaultHideOriginalOnAdd;
-        return tableChanged || holdChanged || defaultHideChanged;
+        boolean compactChanged = compactStorageCheckBox != null && compactStorageCheckBox.isSelected() != service.compactStorageEnabled;
+        boolean staleChanged = stalePolicyComboBox.getSelectedItem() != service.staleAnnotationPolicy
+                || (Integer) staleRetentionSpinner.getValue() != service.staleRetentionDays;
+        return tableChanged || holdChanged || defaultHideChanged || compactChanged || staleChanged
+                || rulesModel.isModified() || templatesModel.isModified();
     }
 
     public void apply() {
         // Persist toggles
-        if (holdPreviewCheckBox != null) {
-            service.holdToShowOriginalEnabled = holdPreviewCheckBox.isSelected();
+        if (holdPreviewCheckBox != null && holdPreviewCheckBox.isSelected() != service.holdToShowOriginalEnabled) {
+            service.setHoldToShowOriginalEnabled(holdPreviewCheckBox.isSelected());
+            // Disabling the toggle while original names are shown brings the annotations back
+            ProjectViewRefresher.getInstance(project).refreshPreviewToggled();
         }
         if (defaultHideOnAddCheckBox != null) {
             service.defaultHideOriginalOnAdd = defaultHideOnAddCheckBox.isSelected();
         }
-        // Persist annotations from table (unchanged rows will be re-added as-is)
-        service.annotations.clear();
-        for (AnnotationRow row : tableModel.getRows()) {
-            service.addAnnotation(row.folderPath, row.chineseName, row.hideOriginal);
+        if (compactStorageCheckBox != null) {
+            service.compactStorageEnabled = compactStorageCheckBox.isSelected();
+        }
+        ChineseNameService.StaleAnnotationPolicy stalePolicy = (ChineseNameService.StaleAnnotationPolicy) stalePolicyComboBox.getSelectedItem();
+        int staleRetentionDays = (Integer) staleRetentionSpinner.getValue();
+        if (stalePolicy != service.staleAnnotationPolicy || staleRetentionDays != service.staleRetentionDays) {
+            service.staleAnnotationPolicy = stalePolicy;
+            service.staleRetentionDays = staleRetentionDays;
+            // Apply the new policy to what earlier sweeps found, without waiting hours for the next one
+            StaleAnnotationSweeper.getInstance(project).sweepNow();
+        }
+        // Persist only the rows that were added, edited or removed, as one atomic snapshot
+        if (annotationsTable.isEditing()) annotationsTable.getCellEditor().stopCellEditing();
+        if (tableModel.isModified()) {
+            boolean cleared = tableModel.isCleared();
+            List<VirtualFile> changedFolders = new ArrayList<>();
+            if (!cleared) {
+                LocalFileSystem fileSystem = LocalFileSystem.getInstance();
+                for (String path : tableModel.getChangedPaths()) {
+                    VirtualFile folder = fileSystem.findFileByPath(path);
+                    if (folder != null) changedFolders.add(folder);
+                }
+            }
+            service.update(tableModel::applyTo);
+            tableModel.load(service.getSnapshot());
+            if (cleared) {
+                // The cleared folders no longer resolve to annotations, so they cannot be looked up in the tree
+                ProjectViewRefresher.getInstance(project).refreshAll();
+            } else {
+                ProjectViewRefresher.getInstance(project).refreshFolders(changedFolders);
+            }
+        }
+
+        if (rulesTable.isEditing()) rulesTable.getCellEditor().stopCellEditing();
+        if (rulesModel.isModified()) {
+            service.replaceRules(rulesModel.getCompleteRules());
+            rulesModel.setRules(service.getAnnotationRules());
+            // A rule may affect any directory in the tree
+            ProjectViewRefresher.getInstance(project).refreshAll();
+        }
+
+        if (templatesTable.isEditing()) templatesTable.getCellEditor().stopCellEditing();
+        if (templatesModel.isModified()) {
+            service.replaceTemplates(templatesModel.getCompleteRules());
+            templatesModel.setRules(service.getAnnotationTemplates());
+            // A template may apply in every module
+            ProjectViewRefresher.getInstance(project).refreshAll();
         }
     }
 
@@ -128,20 +296,32 @@ public class ChineseNameSettingsPanel {
         if (defaultHideOnAddCheckBox != null) {
             defaultHideOnAddCheckBox.setSelected(service.defaultHideOriginalOnAdd);
         }
-        tableModel.setRows(service.annotations);
+        if (compactStorageCheckBox != null) {
+            compactStorageCheckBox.setSelected(service.compactStorageEnabled);
+        }
+        stalePolicyComboBox.setSelectedItem(service.staleAnnotationPolicy);
+        staleRetentionSpinner.setValue(service.staleRetentionDays);
+        tableModel.load(service.getSnapshot());
+        rulesModel.setRules(service.getAnnotationRules());
+        templatesModel.setRules(service.getAnnotationTemplates());
     }
 
     /**
-     * Table model for displaying annotations.
+     * Editable table model for annotation rules and templates.
      */
-    private static class AnnotationsTableModel extends AbstractTableModel {
+    private static class RulesTableModel extends AbstractTableModel {
 
-        private final List<AnnotationRow> rows = new ArrayList<>();
+        private final String patternColumnName;
+        private final List<ChineseNameService.AnnotationRule> rules = new ArrayList<>();
         private boolean modified = false;
 
+        RulesTableModel(String patternColumnName) {
+            this.patternColumnName = patternColumnName;
+        }
+
         @Override
         public int getRowCount() {
-            return rows.size();
+            return rules.size();
         }
 
         @Override
@@ -152,7 +332,7 @@ public class ChineseNameSettingsPanel {
         @Override
         public String getColumnName(int column) {
             return switch (column) {
-                case 0 -> "Folder Path";
+                case 0 -> patternColumnName;
                 case 1 -> "Chinese Name";
                 case 2 -> "Hide Original";
                 default -> "";
@@ -161,11 +341,11 @@ public class ChineseNameSettingsPanel {
 
         @Override
         public Object getValueAt(int rowIndex, int columnIndex) {
-            AnnotationRow row = rows.get(rowIndex);
+            ChineseNameService.AnnotationRule rule = rules.get(rowIndex);
             return switch (columnIndex) {
-                case 0 -> row.folderPath;
-                case 1 -> row.chineseName;
-                case 2 -> row.hideOriginal;
+                case 0 -> rule.pattern;
+                case 1 -> rule.chineseName;
+                case 2 -> rule.hideOriginalName;
                 default -> "";
             };
         }
@@ -177,61 +357,66 @@ public class ChineseNameSettingsPanel {
 
         @Override
         public boolean isCellEditable(int rowIndex, int columnIndex) {
-            return columnIndex == 2; // Only hide original column is editable
+            return true;
         }
 
         @Override
         public void setValueAt(Object aValue, int rowIndex, int columnIndex) {
-            if (columnIndex == 2) {
-                rows.get(rowIndex).hideOriginal = (Boolean) aValue;
-                modified = true;
-                fireTableCellUpdated(rowIndex, columnIndex);
+            ChineseNameService.AnnotationRule rule = rules.get(rowIndex);
+            switch (columnIndex) {
+                case 0 -> rule.pattern = ((String) aValue).trim();
+                case 1 -> rule.chineseName = ((String) aValue).trim();
+                case 2 -> rule.hideOriginalName = (Boolean) aValue;
+                default -> {
+                    return;
+                }
             }
+            modified = true;
+            fireTableCellUpdated(rowIndex, columnIndex);
         }
 
-        public void setRows(Map<String, ChineseNameService.FolderAnnotation> annotations) {
-            rows.clear();
-            for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : annotations.entrySet()) {
-                rows.add(new AnnotationRow(entry.getKey(), entry.getValue().chineseName, entry.getValue().hideOriginalName));
+        public void setRules(List<ChineseNameService.AnnotationRule> source) {
+            rules.clear();
+            for (ChineseNameService.AnnotationRule rule : source) {
+                rules.add(new ChineseNameService.AnnotationRule(rule.pattern, rule.chineseName, rule.hideOriginalName));
             }
             modified = false;
             fireTableDataChanged();
         }
 
-        public List<AnnotationRow> getRows() {
-            return rows;
+        public List<ChineseNameService.AnnotationRule> getRules() {
+            return rules;
         }
 
-        public void removeRow(int rowIndex) {
-            rows.remove(rowIndex);
+        /**
+         * Rows with both a pattern and a Chinese name; rows added but never filled in are not persisted.
+         */
+        public List<ChineseNameService.AnnotationRule> getCompleteRules() {
+            List<ChineseNameService.AnnotationRule> result = new ArrayList<>(rules.size());
+            for (ChineseNameService.AnnotationRule rule : rules) {
+                if (rule.pattern != null && !rule.pattern.isEmpty()
+                        && rule.chineseName != null && !rule.chineseName.isEmpty()) {
+                    result.add(rule);
+                }
+            }
+            return result;
+        }
+
+        public int addRow() {
+            rules.add(new ChineseNameService.AnnotationRule());
             modified = true;
-            fireTableRowsDeleted(rowIndex, rowIndex);
+            fireTableRowsInserted(rules.size() - 1, rules.size() - 1);
+            return rules.size() - 1;
         }
 
-        public void clear() {
-            rows.clear();
+        public void removeRow(int rowIndex) {
+            rules.remove(rowIndex);
             modified = true;
-            fireTableDataChanged();
+            fireTableRowsDeleted(rowIndex, rowIndex);
         }
 
         public boolean isModified() {
             return modified;
         }
     }
-
-    /**
-     * Data class for annotation row.
-     */
-    private static class AnnotationRow {
-        String folderPath;
-        String chineseName;
-        boolean hideOriginal;
-
-        AnnotationRow(String folderPath, String chineseName, boolean hideOriginal) {
-            this.folderPath = folderPath;
-            this.chineseName = chineseName;
-            this.hideOriginal = hideOriginal;
-        }
-    }
 }
-
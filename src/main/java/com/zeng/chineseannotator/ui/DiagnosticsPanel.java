@@ -0,0 +1,186 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.fileChooser.FileChooserFactory;
+import com.intellij.openapi.fileChooser.FileSaverDescriptor;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.openapi.vfs.VirtualFileWrapper;
+import com.intellij.ui.components.JBLabel;
+import com.intellij.ui.components.JBScrollPane;
+import com.intellij.ui.table.JBTable;
+import com.zeng.chineseannotator.diagnostics.AnnotatorMetrics;
+import com.zeng.chineseannotator.diagnostics.LatencyHistogram;
+import com.zeng.chineseannotator.service.AnnotationInterner;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import com.zeng.chineseannotator.service.ProjectViewRefresher;
+import com.zeng.chineseannotator.service.StaleAnnotationSweeper;
+
+import javax.swing.*;
+import javax.swing.table.AbstractTableModel;
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content of the diagnostics tool window: live call counts and latency percentiles per probe.
+ * Refreshes once a second while collection is on and the panel is visible.
+ */
+public class DiagnosticsPanel implements Disposable {
+
+    private static final int REFRESH_INTERVAL_MS = 1000;
+
+    private final Project project;
+    private final JPanel mainPanel;
+    private final MetricsTableModel tableModel = new MetricsTableModel();
+    private final JBLabel cacheLabel = new JBLabel();
+    private final Timer timer;
+
+    public DiagnosticsPanel(Project project) {
+        this.project = project;
+        mainPanel = new JPanel(new BorderLayout());
+
+        JPanel toolbar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        JCheckBox enabledCheckBox = new JCheckBox("Collect metrics", AnnotatorMetrics.isEnabled());
+        enabledCheckBox.addActionListener(e -> {
+            AnnotatorMetrics.setEnabled(enabledCheckBox.isSelected());
+            refresh();
+        });
+        toolbar.add(enabledCheckBox);
+
+        JButton resetButton = new JButton("Reset");
+        resetButton.addActionListener(e -> {
+            AnnotatorMetrics.reset();
+            refresh();
+        });
+        toolbar.add(resetButton);
+
+        JButton exportButton = new JButton("Export...");
+        exportButton.addActionListener(e -> export());
+        toolbar.add(exportButton);
+        toolbar.add(cacheLabel);
+        mainPanel.add(toolbar, BorderLayout.NORTH);
+
+        JBTable table = new JBTable(tableModel);
+        table.getColumnModel().getColumn(0).setPreferredWidth(260);
+        mainPanel.add(new JBScrollPane(table), BorderLayout.CENTER);
+
+        timer = new Timer(REFRESH_INTERVAL_MS, e -> {
+            if (AnnotatorMetrics.isEnabled() && mainPanel.isShowing()) {
+                refresh();
+            }
+        });
+        timer.start();
+        refresh();
+    }
+
+    public JPanel getPanel() {
+        return mainPanel;
+    }
+
+    private void refresh() {
+        tableModel.update();
+        // Not counters(): counting the interned values copies them, which is fine for an export but not per tick
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        cacheLabel.setText("Display name cache: " + service.getDisplayNameCacheHits() + " hits / "
+                + service.getDisplayNameCacheMisses() + " misses");
+    }
+
+    private Map<String, Long> counters() {
+        ChineseNameService service = ChineseNameService.getInstance(project);
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("annotations", (long) service.getSnapshot().size());
+        counters.put("sharedAnnotations", (long) service.getSharedAnnotationCount());
+        counters.put("markerAnnotations", (long) service.getMarkerAnnotationCount());
+        counters.put("missingFolderAnnotations", (long) StaleAnnotationSweeper.getInstance(project).getMissingCount());
+        counters.put("internedAnnotations", (long) AnnotationInterner.getAnnotationCount());
+        counters.put("internedStrings", (long) AnnotationInterner.getStringCount());
+        counters.put("displayNameCacheHits", service.getDisplayNameCacheHits());
+        counters.put("displayNameCacheMisses", service.getDisplayNameCacheMisses());
+        ProjectViewRefresher refresher = ProjectViewRefresher.getInstance(project);
+        counters.put("refreshRequests", refresher.getRequestCount());
+        counters.put("refreshFlushes", refresher.getFlushCount());
+        counters.put("refreshRequestsDropped", refresher.getDroppedRequestCount());
+        return counters;
+    }
+
+    private void export() {
+        FileSaverDescriptor descriptor = new FileSaverDescriptor("Export Annotator Metrics",
+                "Save a snapshot of the collected metrics as JSON", "json");
+        VirtualFileWrapper wrapper = FileChooserFactory.getInstance()
+                .createSaveFileDialog(descriptor, project)
+                .save((VirtualFile) null, "chinese-annotator-metrics.json");
+        if (wrapper == null) return;
+
+        Path path = wrapper.getFile().toPath();
+        try {
+            Files.writeString(path, AnnotatorMetrics.toJson(counters()), StandardCharsets.UTF_8);
+            AnnotatorNotifications.info(project, "Exported metrics to " + path);
+        } catch (IOException ex) {
+            AnnotatorNotifications.error(project, "Failed to export metrics: " + ex.getMessage());
+        }
+    }
+
+    @Override
+    public void dispose() {
+        timer.stop();
+    }
+
+    /**
+     * One row per probe; times shown in microseconds.
+     */
+    private static class MetricsTableModel extends AbstractTableModel {
+
+        private static final String[] COLUMNS = {"Probe", "Calls", "Mean (µs)", "p50", "p90", "p99", "p99.9", "Max"};
+
+        private final AnnotatorMetrics.Probe[] probes = AnnotatorMetrics.Probe.values();
+        private final LatencyHistogram.Snapshot[] snapshots = new LatencyHistogram.Snapshot[probes.length];
+
+        void update() {
+            for (int i = 0; i < probes.length; i++) {
+                snapshots[i] = probes[i].snapshot();
+            }
+            fireTableRowsUpdated(0, probes.length - 1);
+        }
+
+        @Override
+        public int getRowCount() {
+            return probes.length;
+        }
+
+        @Override
+        public int getColumnCount() {
+            return COLUMNS.length;
+        }
+
+        @Override
+        public String getColumnName(int column) {
+            return COLUMNS[column];
+        }
+
+        @Override
+        public Object getValueAt(int rowIndex, int columnIndex) {
+            LatencyHistogram.Snapshot snapshot = snapshots[rowIndex];
+            if (columnIndex == 0) return probes[rowIndex].getLabel();
+            if (snapshot == null) return "";
+            return switch (columnIndex) {
+                case 1 -> String.valueOf(snapshot.count);
+                case 2 -> micros(snapshot.meanNanos());
+                case 3 -> micros(snapshot.p50Nanos);
+                case 4 -> micros(snapshot.p90Nanos);
+                case 5 -> micros(snapshot.p99Nanos);
+                case 6 -> micros(snapshot.p999Nanos);
+                case 7 -> micros(snapshot.maxNanos);
+                default -> "";
+            };
+        }
+
+        private static String micros(long nanos) {
+            return String.format("%.1f", nanos / 1000.0);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.zeng.chineseannotator.ui;
+
+import com.intellij.openapi.project.DumbAware;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.util.Disposer;
+import com.intellij.openapi.wm.ToolWindow;
+import com.intellij.openapi.wm.ToolWindowFactory;
+import com.intellij.ui.content.Content;
+import com.intellij.ui.content.ContentFactory;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Tool window showing the plugin's own performance metrics.
+ */
+public class DiagnosticsToolWindowFactory implements ToolWindowFactory, DumbAware {
+
+    @Override
+    public void createToolWindowContent(@NotNull Project project, @NotNull ToolWindow toolWindow) {
+        DiagnosticsPanel panel = new DiagnosticsPanel(project);
+        Content content = ContentFactory.getInstance().createContent(panel.getPanel(), "", false);
+        Disposer.register(content, panel);
+        toolWindow.getContentManager().addContent(content);
+    }
+}
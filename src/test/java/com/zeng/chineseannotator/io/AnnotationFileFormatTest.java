@@ -0,0 +1,87 @@
+package com.zeng.chineseannotator.io;
+
+import com.intellij.openapi.progress.DumbProgressIndicator;
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnnotationFileFormatTest {
+
+    @Test
+    public void skipsHeaderAndBlankLines() throws IOException {
+        List<String> records = readCsv("path,chineseName,hideOriginal\n/a,甲,false\n\n/b,乙,true\n");
+        assertEquals(List.of("/a|甲|false", "/b|乙|true"), records);
+    }
+
+    @Test
+    public void skipsByteOrderMarkBeforeHeader() throws IOException {
+        List<String> records = readCsv("\uFEFFpath,chineseName,hideOriginal\r\n/a,甲,false\r\n");
+        assertEquals(List.of("/a|甲|false"), records);
+    }
+
+    @Test
+    public void readsWithoutHeader() throws IOException {
+        assertEquals(List.of("/a|甲|false"), readCsv("\uFEFF/a,甲"));
+    }
+
+    @Test
+    public void readsQuotedFields() throws IOException {
+        List<String> records = readCsv("\"/a,b\",\"名\"\"称\",TRUE\n\"/c\",\"第一行\n第二行\"\n");
+        assertEquals(List.of("/a,b|名\"称|true", "/c|第一行\n第二行|false"), records);
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsUnterminatedQuote() throws IOException {
+        readCsv("/a,\"甲\n");
+    }
+
+    @Test
+    public void csvRoundTrip() throws IOException {
+        assertRoundTrip(AnnotationFileFormat.CSV);
+    }
+
+    @Test
+    public void jsonRoundTrip() throws IOException {
+        assertRoundTrip(AnnotationFileFormat.JSON);
+    }
+
+    @Test
+    public void formatFollowsExtension() {
+        assertEquals(AnnotationFileFormat.JSON, AnnotationFileFormat.forFileName("annotations.JSON"));
+        assertEquals(AnnotationFileFormat.CSV, AnnotationFileFormat.forFileName("annotations.csv"));
+        assertEquals(AnnotationFileFormat.CSV, AnnotationFileFormat.forFileName("annotations"));
+    }
+
+    private static void assertRoundTrip(AnnotationFileFormat format) throws IOException {
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new LinkedHashMap<>();
+        annotations.put("/p/a", new ChineseNameService.FolderAnnotation("甲", false));
+        annotations.put("/p/b,c", new ChineseNameService.FolderAnnotation("引号\"与,逗号", true));
+        annotations.put("/p/d", new ChineseNameService.FolderAnnotation("两\n行", false));
+        StringWriter writer = new StringWriter();
+        format.write(writer, annotations, path -> "$PROJECT_DIR$" + path.substring(2), DumbProgressIndicator.INSTANCE);
+
+        List<String> records = read(format, writer.toString());
+        assertEquals(List.of("$PROJECT_DIR$/a|甲|false", "$PROJECT_DIR$/b,c|引号\"与,逗号|true",
+                "$PROJECT_DIR$/d|两\n行|false"), records);
+    }
+
+    private static List<String> readCsv(String text) throws IOException {
+        return read(AnnotationFileFormat.CSV, text);
+    }
+
+    private static List<String> read(AnnotationFileFormat format, String text) throws IOException {
+        List<String> records = new ArrayList<>();
+        format.read(new StringReader(text), (path, chineseName, hideOriginal) ->
+                records.add(path + "|" + chineseName + "|" + hideOriginal), DumbProgressIndicator.INSTANCE);
+        return records;
+    }
+}
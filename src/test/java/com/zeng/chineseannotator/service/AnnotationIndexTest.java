@@ -0,0 +1,128 @@
+package com.zeng.chineseannotator.service;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class AnnotationIndexTest {
+
+    private static final ChineseNameService.FolderAnnotation ANNOTATION = new ChineseNameService.FolderAnnotation("测试", false);
+
+    @Test
+    public void countsAncestorsOfAnnotatedFolders() {
+        FakeFileSystem files = new FakeFileSystem("/p", "/p/a", "/p/a/x", "/p/b");
+        AnnotationIndex index = AnnotationIndex.build(Map.of("/p/a/x", ANNOTATION), files);
+
+        assertSame(ANNOTATION, index.get(files.id("/p/a/x")));
+        assertEquals(1, index.countBelow(files.id("/p")));
+        assertEquals(1, index.countBelow(files.id("/p/a")));
+        assertEquals(0, index.countBelow(files.id("/p/b")));
+    }
+
+    @Test
+    public void moveWithNewPathFirst() {
+        assertMove("/p/b/x", "/p/a/x");
+    }
+
+    @Test
+    public void moveWithOldPathFirst() {
+        assertMove("/p/a/x", "/p/b/x");
+    }
+
+    private static void assertMove(String first, String second) {
+        FakeFileSystem files = new FakeFileSystem("/p", "/p/a", "/p/a/x", "/p/b");
+        int id = files.id("/p/a/x");
+        AnnotationIndex before = AnnotationIndex.build(Map.of("/p/a/x", ANNOTATION), files);
+
+        files.move("/p/a/x", "/p/b/x");
+        AnnotationIndex after = before.derive(Map.of("/p/b/x", ANNOTATION),
+                new LinkedHashSet<>(Arrays.asList(first, second)), false, files);
+
+        assertSame(ANNOTATION, after.get(id));
+        assertEquals(1, after.size());
+        assertEquals(1, after.countBelow(files.id("/p")));
+        assertEquals(0, after.countBelow(files.id("/p/a")));
+        assertEquals(1, after.countBelow(files.id("/p/b")));
+        // The index it was derived from is unchanged
+        assertEquals(1, before.countBelow(files.id("/p/a")));
+    }
+
+    @Test
+    public void removeDropsAncestorCounts() {
+        FakeFileSystem files = new FakeFileSystem("/p", "/p/a", "/p/a/x", "/p/a/y");
+        AnnotationIndex index = AnnotationIndex.build(Map.of("/p/a/x", ANNOTATION, "/p/a/y", ANNOTATION), files);
+
+        AnnotationIndex derived = index.derive(Map.of("/p/a/y", ANNOTATION), List.of("/p/a/x"), false, files);
+        assertNull(derived.get(files.id("/p/a/x")));
+        assertEquals(1, derived.countBelow(files.id("/p/a")));
+
+        derived = derived.derive(Map.of(), List.of("/p/a/y"), false, files);
+        assertEquals(0, derived.size());
+        assertEquals(0, derived.countBelow(files.id("/p")));
+    }
+
+    @Test
+    public void unknownPathsStayUnresolvedUntilTheyAppear() {
+        FakeFileSystem files = new FakeFileSystem("/p");
+        Map<String, ChineseNameService.FolderAnnotation> annotations = Map.of("/p/a/x", ANNOTATION);
+        AnnotationIndex index = AnnotationIndex.build(annotations, files);
+        assertEquals(0, index.size());
+        assertEquals(List.of("/p/a/x"), index.unresolvedAtOrBelow("/p/a"));
+        assertEquals(List.of(), index.unresolvedAtOrBelow("/p/ab"));
+
+        files.create("/p/a");
+        files.create("/p/a/x");
+        index = index.derive(annotations, index.unresolvedAtOrBelow("/p/a"), false, files);
+        assertSame(ANNOTATION, index.get(files.id("/p/a/x")));
+        assertEquals(List.of(), index.unresolvedAtOrBelow("/p"));
+    }
+
+    /**
+     * Paths with stable ids; a path resolves if it and all of its ancestors exist.
+     */
+    private static final class FakeFileSystem implements AnnotationIndex.FileIds {
+        private final Map<String, Integer> ids = new HashMap<>();
+        private int nextId = 1;
+
+        FakeFileSystem(String... paths) {
+            for (String path : paths) {
+                create(path);
+            }
+        }
+
+        void create(String path) {
+            ids.put(path, nextId++);
+        }
+
+        void move(String from, String to) {
+            ids.put(to, ids.remove(from));
+        }
+
+        int id(String path) {
+            return ids.get(path);
+        }
+
+        @Nullable
+        @Override
+        public int[] resolve(@NotNull String path) {
+            if (!ids.containsKey(path)) return null;
+            int depth = (int) path.chars().filter(c -> c == '/').count();
+            int[] result = new int[depth];
+            for (int i = 0; i < depth; i++) {
+                result[i] = ids.get(path);
+                path = path.substring(0, path.lastIndexOf('/'));
+            }
+            return result;
+        }
+    }
+}
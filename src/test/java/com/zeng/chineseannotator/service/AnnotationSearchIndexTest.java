@@ -0,0 +1,110 @@
+package com.zeng.chineseannotator.service;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnnotationSearchIndexTest {
+
+    private final AnnotationSearchIndex index = new AnnotationSearchIndex();
+
+    private static ChineseNameService.FolderAnnotation annotation(String name) {
+        return new ChineseNameService.FolderAnnotation(name, false);
+    }
+
+    private static AnnotationSnapshot snapshot(Map<String, ChineseNameService.FolderAnnotation> annotations) {
+        return AnnotationSnapshot.EMPTY.next(new HashMap<>(annotations));
+    }
+
+    /**
+     * Publishes the successor of {@code previous} with the given changes and tells the index about it.
+     */
+    private AnnotationSnapshot update(AnnotationSnapshot previous, Map<String, ChineseNameService.FolderAnnotation> puts,
+                                      Set<String> removes) {
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>(previous.getAnnotations());
+        annotations.putAll(puts);
+        annotations.keySet().removeAll(removes);
+        Set<String> changed = new HashSet<>(puts.keySet());
+        changed.addAll(removes);
+        AnnotationSnapshot next = previous.next(annotations, changed, false);
+        index.onUpdate(previous.getVersion(), next, changed, false);
+        return next;
+    }
+
+    @Test
+    public void ranksPrefixMatchesThenShorterNamesThenPaths() {
+        AnnotationSnapshot snapshot = snapshot(Map.of(
+                "/p/a", annotation("旧用户管理"),
+                "/p/b", annotation("用户管理模块"),
+                "/p/c", annotation("用户管理"),
+                "/p/d", annotation("用户"),
+                "/p/e", annotation("用户管理"),
+                "/p/f", annotation("订单")));
+        assertEquals(List.of("/p/c", "/p/e", "/p/b", "/p/a"), index.search(snapshot, "用户管理", 10));
+        assertEquals(List.of("/p/d", "/p/c", "/p/e", "/p/b", "/p/a"), index.search(snapshot, "用户", 10));
+        assertEquals(List.of("/p/d", "/p/c"), index.search(snapshot, "用户", 2));
+    }
+
+    @Test
+    public void singleCharactersAndCase() {
+        AnnotationSnapshot snapshot = snapshot(Map.of(
+                "/p/a", annotation("API 接口"),
+                "/p/b", annotation("工具")));
+        assertEquals(List.of("/p/a"), index.search(snapshot, "接", 10));
+        assertEquals(List.of("/p/a"), index.search(snapshot, " api ", 10));
+        assertEquals(List.of(), index.search(snapshot, "具工", 10));
+        assertEquals(List.of(), index.search(snapshot, "  ", 10));
+        assertEquals(List.of(), index.search(snapshot, "工具", 0));
+    }
+
+    @Test
+    public void bigramsMustBeAdjacent() {
+        // Both bigrams of "abc" occur, but never as one run
+        AnnotationSnapshot snapshot = snapshot(Map.of("/p/a", annotation("ab-bc")));
+        assertEquals(List.of(), index.search(snapshot, "abc", 10));
+        assertEquals(List.of("/p/a"), index.search(snapshot, "b-b", 10));
+    }
+
+    @Test
+    public void appliesUpdatesAndRecyclesIds() {
+        AnnotationSnapshot snapshot = snapshot(Map.of("/p/a", annotation("前端"), "/p/b", annotation("后端")));
+        assertEquals(List.of("/p/a"), index.search(snapshot, "前端", 10));
+
+        snapshot = update(snapshot, Map.of(), Set.of("/p/a"));
+        assertEquals(List.of(), index.search(snapshot, "前端", 10));
+
+        // Takes the id freed by /p/a, whose postings must not leak into it
+        snapshot = update(snapshot, Map.of("/p/c", annotation("测试")), Set.of());
+        assertEquals(List.of(), index.search(snapshot, "前端", 10));
+        assertEquals(List.of("/p/c"), index.search(snapshot, "测试", 10));
+
+        snapshot = update(snapshot, Map.of("/p/b", annotation("前端服务")), Set.of());
+        assertEquals(List.of("/p/b"), index.search(snapshot, "前端", 10));
+        assertEquals(List.of(), index.search(snapshot, "后端", 10));
+    }
+
+    @Test
+    public void rebuildsAfterAMissedUpdate() {
+        AnnotationSnapshot first = snapshot(Map.of("/p/a", annotation("文档")));
+        assertEquals(List.of("/p/a"), index.search(first, "文档", 10));
+
+        // Published without onUpdate, e.g. by loadState
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>(first.getAnnotations());
+        annotations.put("/p/b", annotation("文档草稿"));
+        AnnotationSnapshot second = first.next(annotations);
+        assertEquals(List.of("/p/a", "/p/b"), index.search(second, "文档", 10));
+
+        // A delta based on a snapshot the index does not reflect is dropped, and the index rebuilt
+        annotations = new HashMap<>(second.getAnnotations());
+        annotations.put("/p/c", annotation("文档"));
+        AnnotationSnapshot third = second.next(annotations, Set.of("/p/c"), false);
+        index.onUpdate(first.getVersion(), third, Set.of("/p/c"), false);
+        assertEquals(List.of("/p/a", "/p/c", "/p/b"), index.search(third, "文档", 10));
+    }
+}
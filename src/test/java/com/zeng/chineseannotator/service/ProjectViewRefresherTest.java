@@ -0,0 +1,104 @@
+package com.zeng.chineseannotator.service;
+
+import com.intellij.openapi.util.io.FileUtil;
+import com.intellij.openapi.vfs.LocalFileSystem;
+import com.intellij.openapi.vfs.VirtualFile;
+import com.intellij.testFramework.fixtures.BasePlatformTestCase;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+
+/**
+ * Runs the merged refresh synchronously through {@link ProjectViewRefresher#flush()} and checks which requests
+ * are dropped as no-ops. Folders live on the local file system, where the service resolves annotations by id.
+ */
+public class ProjectViewRefresherTest extends BasePlatformTestCase {
+
+    private Path directory;
+    private VirtualFile folder;
+    private ChineseNameService service;
+    private ProjectViewRefresher refresher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("refresher");
+        Files.createDirectory(directory.resolve("src"));
+        folder = LocalFileSystem.getInstance().refreshAndFindFileByNioFile(directory.resolve("src"));
+        assertNotNull(folder);
+        service = ChineseNameService.getInstance(getProject());
+        refresher = ProjectViewRefresher.getInstance(getProject());
+        // Starts a new window, so the display names recorded from here on are trusted
+        refresher.flush();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        try {
+            service.replaceAnnotations(Map.of());
+            service.setPreviewOriginalActive(false);
+            service.setHoldToShowOriginalEnabled(false);
+            refresher.flush();
+            FileUtil.delete(directory.toFile());
+        } catch (Throwable e) {
+            addSuppressedException(e);
+        } finally {
+            super.tearDown();
+        }
+    }
+
+    public void testAnnotationAddedAndRemovedIsDropped() {
+        long dropped = refresher.getDroppedRequestCount();
+        service.addAnnotation(folder.getPath(), "源码", false);
+        refresher.refreshFolder(folder);
+        service.removeAnnotation(folder.getPath());
+        refresher.refreshFolder(folder);
+        refresher.flush();
+        assertEquals(dropped + 1, refresher.getDroppedRequestCount());
+    }
+
+    public void testChangedAnnotationIsKept() {
+        long dropped = refresher.getDroppedRequestCount();
+        long flushes = refresher.getFlushCount();
+        service.addAnnotation(folder.getPath(), "源码", false);
+        refresher.refreshFolder(folder);
+        refresher.flush();
+        assertEquals(dropped, refresher.getDroppedRequestCount());
+        assertEquals(flushes + 1, refresher.getFlushCount());
+        assertNotNull(service.getDecoratedName(folder));
+    }
+
+    public void testUnchangedAfterEditAndRevertIsDropped() {
+        service.addAnnotation(folder.getPath(), "源码", false);
+        refresher.refreshFolder(folder);
+        refresher.flush();
+
+        long dropped = refresher.getDroppedRequestCount();
+        service.addAnnotation(folder.getPath(), "代码", true);
+        refresher.refreshFolder(folder);
+        service.addAnnotation(folder.getPath(), "源码", false);
+        refresher.refreshFolder(folder);
+        refresher.flush();
+        assertEquals(dropped + 1, refresher.getDroppedRequestCount());
+    }
+
+    public void testPreviewToggledBackIsDropped() {
+        service.setHoldToShowOriginalEnabled(true);
+        refresher.refreshPreviewToggled();
+        refresher.flush();
+
+        long dropped = refresher.getDroppedRequestCount();
+        service.setPreviewOriginalActive(true);
+        refresher.refreshPreviewToggled();
+        service.setPreviewOriginalActive(false);
+        refresher.refreshPreviewToggled();
+        refresher.flush();
+        assertEquals(dropped + 1, refresher.getDroppedRequestCount());
+
+        service.setPreviewOriginalActive(true);
+        refresher.refreshPreviewToggled();
+        refresher.flush();
+        assertEquals(dropped + 1, refresher.getDroppedRequestCount());
+    }
+}
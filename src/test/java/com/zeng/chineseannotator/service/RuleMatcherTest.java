@@ -0,0 +1,89 @@
+package com.zeng.chineseannotator.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RuleMatcherTest {
+
+    private static final String PROJECT = "/work/project";
+
+    @Test
+    public void unanchoredPatternMatchesAtAnyDepth() {
+        RuleMatcher matcher = matcher("build", "构建");
+        assertTrue(matcher.matchesPath(PROJECT + "/build"));
+        assertTrue(matcher.matchesPath(PROJECT + "/a/b/build"));
+        assertFalse(matcher.matchesPath(PROJECT + "/build2"));
+        assertFalse(matcher.matchesPath(PROJECT + "/build/classes"));
+    }
+
+    @Test
+    public void leadingSlashAnchorsAtProjectDirectory() {
+        RuleMatcher matcher = matcher("/src/main", "主代码");
+        assertTrue(matcher.matchesPath(PROJECT + "/src/main"));
+        assertFalse(matcher.matchesPath(PROJECT + "/module/src/main"));
+    }
+
+    @Test
+    public void starAndQuestionMarkStayWithinOneSegment() {
+        RuleMatcher matcher = matcher("v?", "版本", "*.cache", "缓存");
+        assertTrue(matcher.matchesPath(PROJECT + "/v1"));
+        assertFalse(matcher.matchesPath(PROJECT + "/v10"));
+        assertTrue(matcher.matchesPath(PROJECT + "/a/.cache"));
+        assertTrue(matcher.matchesPath(PROJECT + "/a/x.cache"));
+        assertFalse(matcher.matchesPath(PROJECT + "/a/xcache"));
+    }
+
+    @Test
+    public void doubleStarMatchesZeroOrMoreSegments() {
+        RuleMatcher matcher = matcher("/docs/**/images", "图片");
+        assertTrue(matcher.matchesPath(PROJECT + "/docs/images"));
+        assertTrue(matcher.matchesPath(PROJECT + "/docs/a/b/images"));
+        assertFalse(matcher.matchesPath(PROJECT + "/other/docs/images"));
+    }
+
+    @Test
+    public void backslashesAreSeparators() {
+        RuleMatcher matcher = matcher("src\\test", "测试代码");
+        assertTrue(matcher.matchesPath(PROJECT + "/module/src/test"));
+    }
+
+    @Test
+    public void firstMatchingRuleWins() {
+        RuleMatcher matcher = matcher("gen*", "生成", "generated", "已生成");
+        assertEquals("生成", matcher.matchPath(PROJECT + "/generated").chineseName);
+        assertEquals("已生成", matcher("generated", "已生成", "gen*", "生成").matchPath(PROJECT + "/generated").chineseName);
+    }
+
+    @Test
+    public void ignoresPathsOutsideTheProject() {
+        RuleMatcher matcher = matcher("**", "任意");
+        assertTrue(matcher.matchesPath(PROJECT + "/a"));
+        assertFalse(matcher.matchesPath(PROJECT));
+        assertFalse(matcher.matchesPath("/work/project2/a"));
+    }
+
+    @Test
+    public void skipsBlankRules() {
+        RuleMatcher matcher = matcher(" ", "空", "build", " ");
+        assertTrue(matcher.isEmpty());
+        assertNull(matcher.matchPath(PROJECT + "/build"));
+    }
+
+    /**
+     * Matcher for alternating patterns and names.
+     */
+    private static RuleMatcher matcher(String... patternsAndNames) {
+        List<ChineseNameService.AnnotationRule> rules = new ArrayList<>();
+        for (int i = 0; i < patternsAndNames.length; i += 2) {
+            rules.add(new ChineseNameService.AnnotationRule(patternsAndNames[i], patternsAndNames[i + 1], false));
+        }
+        return RuleMatcher.forProjectPath(rules, PROJECT);
+    }
+}
@@ -0,0 +1,123 @@
+package com.zeng.chineseannotator.service;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SortedPathIndexTest {
+
+    @Test
+    public void emptyIndex() {
+        assertEquals(List.of(), SortedPathIndex.EMPTY.atOrBelow("/p"));
+        assertFalse(SortedPathIndex.EMPTY.containsAtOrBelow("/p"));
+        assertEquals(List.of(), SortedPathIndex.build(List.of()).atOrBelow("/p"));
+    }
+
+    @Test
+    public void siblingsSharingAPrefixAreNotBelow() {
+        SortedPathIndex index = SortedPathIndex.build(List.of("/p/a", "/p/a-old", "/p/a-old/x", "/p/a/x", "/p/a/x/y", "/p/ab", "/p/b"));
+        assertEquals(List.of("/p/a", "/p/a/x", "/p/a/x/y"), index.atOrBelow("/p/a"));
+        assertEquals(List.of("/p/a-old", "/p/a-old/x"), index.atOrBelow("/p/a-old"));
+        assertEquals(List.of(), index.atOrBelow("/p/c"));
+        assertTrue(index.containsAtOrBelow("/p/a/x"));
+        assertTrue(index.containsAtOrBelow("/p"));
+        assertFalse(index.containsAtOrBelow("/p/a/x/y/z"));
+        assertFalse(index.containsAtOrBelow("/p/a-"));
+        assertFalse(index.containsAtOrBelow("/q"));
+    }
+
+    @Test
+    public void findsDescendantsBehindManySiblings() {
+        // "root-..." sorts between "root" and "root/..." and may fill whole chunks
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            paths.add("/p/root-" + i);
+        }
+        paths.add("/p/root/child");
+        SortedPathIndex index = SortedPathIndex.build(paths);
+        assertEquals(List.of("/p/root/child"), index.atOrBelow("/p/root"));
+        assertTrue(index.containsAtOrBelow("/p/root"));
+        assertFalse(index.containsAtOrBelow("/p/root-1000"));
+    }
+
+    @Test
+    public void splitsChunksAsOnePlaceGrows() {
+        Map<String, Integer> paths = new HashMap<>();
+        SortedPathIndex index = SortedPathIndex.EMPTY;
+        for (int i = 0; i < 2000; i++) {
+            String path = String.format("/p/dir/%05d", i);
+            paths.put(path, i);
+            index = index.derive(paths, Set.of(path));
+        }
+        List<String> all = index.atOrBelow("/p/dir");
+        assertEquals(2000, all.size());
+        assertEquals(new ArrayList<>(new TreeMap<>(paths).keySet()), all);
+    }
+
+    @Test
+    public void dropsChunksThatBecomeEmpty() {
+        Map<String, Integer> paths = new HashMap<>();
+        for (int i = 0; i < 600; i++) {
+            paths.put("/p/" + i, i);
+        }
+        SortedPathIndex index = SortedPathIndex.build(paths.keySet());
+        Set<String> removed = new HashSet<>(paths.keySet());
+        paths.clear();
+        index = index.derive(paths, removed);
+        assertEquals(List.of(), index.atOrBelow("/p"));
+        assertFalse(index.containsAtOrBelow("/p"));
+
+        paths.put("/p/again", 1);
+        index = index.derive(paths, Set.of("/p/again"));
+        assertEquals(List.of("/p/again"), index.atOrBelow("/p"));
+    }
+
+    @Test
+    public void derivedIndexLeavesItsBaseUnchanged() {
+        SortedPathIndex base = SortedPathIndex.build(List.of("/p/a", "/p/b"));
+        base.derive(Map.of("/p/b", 1, "/p/c", 1), Set.of("/p/a", "/p/c"));
+        assertEquals(List.of("/p/a", "/p/b"), base.atOrBelow("/p"));
+    }
+
+    @Test
+    public void matchesSortedMapUnderRandomChanges() {
+        Random random = new Random(1);
+        TreeMap<String, Integer> expected = new TreeMap<>();
+        SortedPathIndex index = SortedPathIndex.EMPTY;
+        for (int round = 0; round < 300; round++) {
+            Set<String> changed = new HashSet<>();
+            int changes = random.nextInt(50) + 1;
+            for (int i = 0; i < changes; i++) {
+                String path = "/p/" + random.nextInt(20) + "/" + random.nextInt(30) + (random.nextBoolean() ? "" : "-x");
+                changed.add(path);
+                if (random.nextInt(3) == 0) {
+                    expected.remove(path);
+                } else {
+                    expected.put(path, i);
+                }
+            }
+            index = round % 50 == 0 ? SortedPathIndex.build(expected.keySet()) : index.derive(expected, changed);
+
+            for (int query = 0; query < 20; query++) {
+                String root = "/p/" + random.nextInt(20) + (random.nextBoolean() ? "/" + random.nextInt(30) : "");
+                List<String> below = new ArrayList<>();
+                for (String path : expected.keySet()) {
+                    if (path.equals(root) || path.startsWith(root + "/")) below.add(path);
+                }
+                assertEquals(root, below, index.atOrBelow(root));
+                assertEquals(root, !below.isEmpty(), index.containsAtOrBelow(root));
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.zeng.chineseannotator.service;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TemplateMatcherTest {
+
+    @Test
+    public void normalizesSeparatorsAndDots() {
+        assertEquals("src/main/resources", TemplateMatcher.normalize(" src\\main\\resources "));
+        assertEquals("src/main", TemplateMatcher.normalize("/./src//main/"));
+        assertEquals("script", TemplateMatcher.normalize("script"));
+    }
+
+    @Test
+    public void emptyPathsNormalizeToNull() {
+        assertNull(TemplateMatcher.normalize(null));
+        assertNull(TemplateMatcher.normalize(""));
+        assertNull(TemplateMatcher.normalize(" /./ "));
+    }
+
+    @Test
+    public void mayMatchPathsEndingWithTheLastSegmentOfATemplate() {
+        TemplateMatcher matcher = new TemplateMatcher(null);
+        matcher.setTemplates(List.of(new ChineseNameService.AnnotationRule("src/main/resources/script", "脚本", false)));
+        assertFalse(matcher.isEmpty());
+        assertTrue(matcher.mayMatchPath("/work/project/module/src/main/resources/script"));
+        assertFalse(matcher.mayMatchPath("/work/project/module/src/main/resources"));
+        assertFalse(matcher.mayMatchPath("/work/project/scripts"));
+    }
+
+    @Test
+    public void skipsBlankTemplates() {
+        TemplateMatcher matcher = new TemplateMatcher(null);
+        matcher.setTemplates(List.of(
+                new ChineseNameService.AnnotationRule(" ", "空", false),
+                new ChineseNameService.AnnotationRule("docs", " ", false)));
+        assertTrue(matcher.isEmpty());
+        assertFalse(matcher.mayMatchPath("/work/project/docs"));
+    }
+
+    @Test
+    public void replacingTemplatesForgetsRemovedOnes() {
+        TemplateMatcher matcher = new TemplateMatcher(null);
+        matcher.setTemplates(List.of(new ChineseNameService.AnnotationRule("docs", "文档", false)));
+        matcher.setTemplates(List.of(new ChineseNameService.AnnotationRule("src/test", "测试", false)));
+        assertFalse(matcher.mayMatchPath("/work/project/docs"));
+        assertTrue(matcher.mayMatchPath("/work/project/module/src/test"));
+    }
+}
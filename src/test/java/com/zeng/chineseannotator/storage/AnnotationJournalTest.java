@@ -0,0 +1,138 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+public class AnnotationJournalTest {
+
+    private static final String PROJECT = "/work/project";
+    private static final ChineseNameService.FolderAnnotation A = new ChineseNameService.FolderAnnotation("甲", false);
+    private static final ChineseNameService.FolderAnnotation B = new ChineseNameService.FolderAnnotation("乙", true);
+
+    private Path directory;
+    private Path file;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("annotation-journal");
+        file = directory.resolve("chineseName.journal");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void missingJournalReplaysNothing() throws IOException {
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        assertEquals(0, new AnnotationJournal(file, PROJECT).replay(target));
+        assertEquals(Map.of(), target);
+    }
+
+    @Test
+    public void replaysBatchesInOrder() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        long size = journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A), AnnotationChange.put(PROJECT + "/b", A)));
+        size += journal.append(List.of(AnnotationChange.remove(PROJECT + "/a"), AnnotationChange.put(PROJECT + "/b", B)));
+        size += journal.append(List.of(AnnotationChange.put("/elsewhere/c", A)));
+
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>(Map.of(PROJECT + "/old", A));
+        assertEquals(size, journal.replay(target));
+        assertEquals(Map.of(PROJECT + "/old", A, PROJECT + "/b", B, "/elsewhere/c", A), target);
+        assertEquals(size, Files.size(file));
+    }
+
+    @Test
+    public void clearDropsEarlierEntries() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A)));
+        journal.append(List.of(AnnotationChange.clear(), AnnotationChange.put(PROJECT + "/b", B)));
+
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>(Map.of(PROJECT + "/old", A));
+        journal.replay(target);
+        assertEquals(Map.of(PROJECT + "/b", B), target);
+    }
+
+    @Test
+    public void replayIsIdempotent() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A), AnnotationChange.remove(PROJECT + "/b")));
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        journal.replay(target);
+        journal.replay(target);
+        assertEquals(Map.of(PROJECT + "/a", A), target);
+    }
+
+    @Test
+    public void truncatesTornTail() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        long complete = journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A)));
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/b", B)));
+        // A crash in the middle of the second append
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(file) - 3);
+        }
+
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        assertEquals(complete, journal.replay(target));
+        assertEquals(Map.of(PROJECT + "/a", A), target);
+        assertEquals(complete, Files.size(file));
+
+        // New appends follow the last complete record
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/c", B)));
+        target.clear();
+        journal.replay(target);
+        assertEquals(Map.of(PROJECT + "/a", A, PROJECT + "/c", B), target);
+    }
+
+    @Test
+    public void stopsAtCorruptRecord() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        long complete = journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A)));
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/b", B)));
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/c", B)));
+        byte[] content = Files.readAllBytes(file);
+        content[(int) complete + 12] ^= 0x55;
+        Files.write(file, content);
+
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        assertEquals(complete, journal.replay(target));
+        assertEquals(Map.of(PROJECT + "/a", A), target);
+    }
+
+    @Test
+    public void relocatedProjectReplaysUnderTheNewDirectory() throws IOException {
+        new AnnotationJournal(file, PROJECT).append(List.of(AnnotationChange.put(PROJECT + "/a", A)));
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        new AnnotationJournal(file, "/moved/project").replay(target);
+        assertEquals(Map.of("/moved/project/a", A), target);
+    }
+
+    @Test
+    public void resetDeletesTheJournal() throws IOException {
+        AnnotationJournal journal = new AnnotationJournal(file, PROJECT);
+        journal.append(List.of(AnnotationChange.put(PROJECT + "/a", A)));
+        journal.reset();
+        Map<String, ChineseNameService.FolderAnnotation> target = new HashMap<>();
+        assertEquals(0, journal.replay(target));
+        assertEquals(Map.of(), target);
+    }
+}
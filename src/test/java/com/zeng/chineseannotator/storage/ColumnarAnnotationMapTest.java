@@ -0,0 +1,80 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ColumnarAnnotationMapTest {
+
+    private static ChineseNameService.FolderAnnotation annotation(String name, boolean hideOriginal) {
+        return new ChineseNameService.FolderAnnotation(name, hideOriginal);
+    }
+
+    @Test
+    public void emptyMap() {
+        assertEquals(0, ColumnarAnnotationMap.EMPTY.size());
+        assertNull(ColumnarAnnotationMap.EMPTY.get("/p"));
+        assertFalse(ColumnarAnnotationMap.EMPTY.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void looksUpPathsWithAndWithoutParent() {
+        Map<String, ChineseNameService.FolderAnnotation> source = new HashMap<>();
+        source.put("/p/src", annotation("源码", false));
+        source.put("/p/src/Main.java", annotation("入口", true));
+        source.put("relative", annotation("相对", false));
+        source.put("/p/empty", null);
+        ColumnarAnnotationMap map = ColumnarAnnotationMap.build(source);
+
+        assertEquals(3, map.size());
+        assertEquals(annotation("源码", false), map.get("/p/src"));
+        assertEquals(annotation("入口", true), map.get("/p/src/Main.java"));
+        assertEquals(annotation("相对", false), map.get("relative"));
+        assertFalse(map.containsKey("/p/empty"));
+        assertFalse(map.containsKey("/p"));
+        assertFalse(map.containsKey("/p/srcMain.java"));
+        assertFalse(map.containsKey("/p/src/Main.jav"));
+        assertFalse(map.containsKey(42));
+    }
+
+    @Test
+    public void reusesMaterializedAnnotations() {
+        ColumnarAnnotationMap map = ColumnarAnnotationMap.build(Map.of("/p/a", annotation("甲", false)));
+        assertSame(map.get("/p/a"), map.get("/p/a"));
+        assertSame(map.get("/p/a"), map.entrySet().iterator().next().getValue());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void entriesAreReadOnly() {
+        ColumnarAnnotationMap map = ColumnarAnnotationMap.build(Map.of("/p/a", annotation("甲", false)));
+        map.entrySet().iterator().next().setValue(annotation("乙", false));
+    }
+
+    @Test
+    public void matchesSourceMap() {
+        Random random = new Random(3);
+        Map<String, ChineseNameService.FolderAnnotation> source = new HashMap<>();
+        for (int i = 0; i < 20_000; i++) {
+            String path = "/p/" + random.nextInt(500) + "/" + random.nextInt(100) + (random.nextBoolean() ? ".txt" : "");
+            source.put(path, annotation("名" + random.nextInt(50), random.nextBoolean()));
+        }
+        ColumnarAnnotationMap map = ColumnarAnnotationMap.build(source);
+
+        assertEquals(source, map);
+        assertEquals(source, new HashMap<>(map));
+        for (int i = 0; i < 5_000; i++) {
+            String path = "/p/" + random.nextInt(600) + "/" + random.nextInt(120) + ".txt";
+            assertEquals(path, source.get(path), map.get(path));
+        }
+        assertTrue(map.entrySet().containsAll(source.entrySet()));
+    }
+}
@@ -0,0 +1,143 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class CompactAnnotationFileTest {
+
+    private static final String PROJECT = "/work/project";
+
+    private Path directory;
+
+    @Before
+    public void createDirectory() throws IOException {
+        directory = Files.createTempDirectory("compact-annotations");
+    }
+
+    @After
+    public void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void emptyMap() throws IOException {
+        CompactAnnotationMap map = writeAndOpen(Map.of());
+        assertEquals(0, map.size());
+        assertNull(map.get(PROJECT + "/a"));
+        assertFalse(map.entrySet().iterator().hasNext());
+    }
+
+    @Test
+    public void looksUpEveryEntryAcrossRestartBlocks() throws IOException {
+        // Several restart blocks of prefix-compressed siblings, plus paths outside the project
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>();
+        for (int i = 0; i < 10 * CompactAnnotationFile.RESTART_INTERVAL + 3; i++) {
+            annotations.put(PROJECT + "/module/src/dir" + i, new ChineseNameService.FolderAnnotation("目录" + i, i % 3 == 0));
+        }
+        annotations.put("/elsewhere/shared", new ChineseNameService.FolderAnnotation("共享", false));
+        annotations.put(PROJECT, new ChineseNameService.FolderAnnotation("项目", true));
+
+        CompactAnnotationMap map = writeAndOpen(annotations);
+        assertEquals(annotations.size(), map.size());
+        annotations.forEach((path, annotation) -> assertEquals(path, annotation, map.get(path)));
+    }
+
+    @Test
+    public void missesBetweenAndAroundEntries() throws IOException {
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>();
+        for (int i = 10; i < 10 + 2 * CompactAnnotationFile.RESTART_INTERVAL; i++) {
+            annotations.put(PROJECT + "/d" + i, new ChineseNameService.FolderAnnotation("名" + i, false));
+        }
+        CompactAnnotationMap map = writeAndOpen(annotations);
+        assertNull(map.get(PROJECT + "/a"));
+        assertNull(map.get(PROJECT + "/d"));
+        assertNull(map.get(PROJECT + "/d1"));
+        assertNull(map.get(PROJECT + "/d105"));
+        assertNull(map.get(PROJECT + "/d10/x"));
+        assertNull(map.get(PROJECT + "/z"));
+        assertNull(map.get(42));
+        assertFalse(map.containsKey(PROJECT + "/d9"));
+        assertTrue(map.containsKey(PROJECT + "/d10"));
+    }
+
+    @Test
+    public void iteratesInByteOrderWithExpandedPaths() throws IOException {
+        Map<String, ChineseNameService.FolderAnnotation> annotations = new HashMap<>();
+        annotations.put(PROJECT + "/b", new ChineseNameService.FolderAnnotation("乙", false));
+        annotations.put(PROJECT + "/a", new ChineseNameService.FolderAnnotation("甲", false));
+        annotations.put(PROJECT + "/a/中文", new ChineseNameService.FolderAnnotation("丙", true));
+
+        List<String> paths = new ArrayList<>();
+        Map<String, ChineseNameService.FolderAnnotation> read = new HashMap<>();
+        for (Map.Entry<String, ChineseNameService.FolderAnnotation> entry : writeAndOpen(annotations).entrySet()) {
+            paths.add(entry.getKey());
+            read.put(entry.getKey(), entry.getValue());
+        }
+        assertEquals(List.of(PROJECT + "/a", PROJECT + "/a/中文", PROJECT + "/b"), paths);
+        assertEquals(annotations, read);
+    }
+
+    @Test
+    public void storesPathsRelativeToTheProjectDirectory() throws IOException {
+        Path file = directory.resolve("annotations.bin");
+        CompactAnnotationFile.write(file, Map.of(PROJECT + "/a", new ChineseNameService.FolderAnnotation("甲", false)), PROJECT);
+        String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+        assertTrue(content.contains(ProjectPathMacro.PROJECT_DIR + "/a"));
+        assertFalse(content.contains(PROJECT));
+
+        // A relocated checkout finds its annotations under the new directory
+        CompactAnnotationMap moved = CompactAnnotationFile.open(file, "/moved/project");
+        assertEquals("甲", moved.get("/moved/project/a").chineseName);
+    }
+
+    @Test
+    public void decodesKeysLongerThanTheCursorBuffer() throws IOException {
+        String longPath = PROJECT + "/" + "深".repeat(200) + "/x";
+        CompactAnnotationMap map = writeAndOpen(Map.of(longPath, new ChineseNameService.FolderAnnotation("长", false),
+                longPath + "y", new ChineseNameService.FolderAnnotation("更长", false)));
+        assertEquals("长", map.get(longPath).chineseName);
+        assertEquals("更长", map.get(longPath + "y").chineseName);
+        assertEquals(longPath, map.entrySet().iterator().next().getKey());
+    }
+
+    @Test
+    public void reusesMaterializedAnnotations() throws IOException {
+        CompactAnnotationMap map = writeAndOpen(Map.of(PROJECT + "/a", new ChineseNameService.FolderAnnotation("甲", false)));
+        assertSame(map.get(PROJECT + "/a"), map.get(PROJECT + "/a"));
+        assertSame(map.get(PROJECT + "/a"), map.entrySet().iterator().next().getValue());
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        Path file = directory.resolve("other.bin");
+        Files.write(file, "not an annotation file".getBytes(StandardCharsets.UTF_8));
+        CompactAnnotationFile.open(file, PROJECT);
+    }
+
+    private CompactAnnotationMap writeAndOpen(Map<String, ChineseNameService.FolderAnnotation> annotations) throws IOException {
+        Path file = directory.resolve("annotations.bin");
+        CompactAnnotationFile.write(file, annotations, PROJECT);
+        return CompactAnnotationFile.open(file, PROJECT);
+    }
+}
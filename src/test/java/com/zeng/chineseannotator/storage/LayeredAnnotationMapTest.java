@@ -0,0 +1,97 @@
+package com.zeng.chineseannotator.storage;
+
+import com.zeng.chineseannotator.service.ChineseNameService;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LayeredAnnotationMapTest {
+
+    private static final ChineseNameService.FolderAnnotation A = new ChineseNameService.FolderAnnotation("甲", false);
+    private static final ChineseNameService.FolderAnnotation B = new ChineseNameService.FolderAnnotation("乙", true);
+
+    @Test
+    public void overlayShadowsBase() {
+        LayeredAnnotationMap map = new LayeredAnnotationMap(Map.of("/a", A, "/b", A)).mutableCopy();
+        map.put("/a", B);
+        map.remove("/b");
+        map.put("/c", A);
+
+        assertEquals(Map.of("/a", B, "/c", A), new HashMap<>(map));
+        assertEquals(2, map.size());
+        assertNull(map.get("/b"));
+        assertEquals(List.of("/a", "/b", "/c"), map.getChanges().stream().map(AnnotationChange::getPath).toList());
+    }
+
+    @Test
+    public void copiesAreIndependent() {
+        LayeredAnnotationMap original = new LayeredAnnotationMap(Map.of("/a", A));
+        LayeredAnnotationMap first = original.mutableCopy();
+        first.put("/b", B);
+        LayeredAnnotationMap second = first.mutableCopy();
+        second.remove("/a");
+        second.clear();
+
+        assertEquals(Map.of("/a", A), new HashMap<>(original));
+        assertEquals(Map.of("/a", A, "/b", B), new HashMap<>(first));
+        assertTrue(second.isEmpty());
+        assertTrue(original.getChanges().isEmpty());
+        assertEquals(1, first.getChanges().size());
+        assertEquals(2, second.getChanges().size());
+    }
+
+    @Test
+    public void removingAnOverlayOnlyEntryLeavesNoTombstone() {
+        LayeredAnnotationMap map = new LayeredAnnotationMap(Map.of("/a", A)).mutableCopy();
+        map.put("/b", B);
+        map.remove("/b");
+        assertEquals(0, map.getOverlaySize());
+        map.remove("/a");
+        assertEquals(1, map.getOverlaySize());
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    public void matchesHashMapUnderRandomChanges() {
+        Random random = new Random(42);
+        Map<String, ChineseNameService.FolderAnnotation> base = new HashMap<>();
+        for (int i = 0; i < 200; i++) {
+            base.put("/p/" + i, i % 2 == 0 ? A : B);
+        }
+        LayeredAnnotationMap layered = new LayeredAnnotationMap(base);
+        Map<String, ChineseNameService.FolderAnnotation> expected = new HashMap<>(base);
+
+        for (int round = 0; round < 50; round++) {
+            LayeredAnnotationMap copy = layered.mutableCopy();
+            Map<String, ChineseNameService.FolderAnnotation> replayed = new HashMap<>(expected);
+            for (int i = 0; i < 40; i++) {
+                String path = "/p/" + random.nextInt(300);
+                int operation = random.nextInt(100);
+                if (operation == 0) {
+                    copy.clear();
+                    expected.clear();
+                } else if (operation < 50) {
+                    ChineseNameService.FolderAnnotation annotation = random.nextBoolean() ? A : B;
+                    assertEquals(expected.put(path, annotation), copy.put(path, annotation));
+                } else {
+                    assertEquals(expected.remove(path), copy.remove(path));
+                }
+            }
+            assertEquals(expected.size(), copy.size());
+            assertEquals(expected, new HashMap<>(copy));
+            // The change log turns the previous state into this one, as the journal relies on
+            for (AnnotationChange change : copy.getChanges()) {
+                change.applyTo(replayed);
+            }
+            assertEquals(expected, replayed);
+            layered = copy;
+        }
+    }
+}
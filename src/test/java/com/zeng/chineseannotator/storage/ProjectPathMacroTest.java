@@ -0,0 +1,38 @@
+package com.zeng.chineseannotator.storage;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ProjectPathMacroTest {
+
+    private static final String PROJECT = "/work/project";
+
+    @Test
+    public void collapsesPathsInsideTheProject() {
+        assertEquals("$PROJECT_DIR$/src/main", ProjectPathMacro.collapse(PROJECT, PROJECT + "/src/main"));
+        assertEquals("$PROJECT_DIR$", ProjectPathMacro.collapse(PROJECT, PROJECT));
+    }
+
+    @Test
+    public void keepsOtherPaths() {
+        assertEquals("/work/project2/src", ProjectPathMacro.collapse(PROJECT, "/work/project2/src"));
+        assertEquals("/work/other", ProjectPathMacro.collapse(PROJECT, "/work/other"));
+        assertEquals(PROJECT + "/src", ProjectPathMacro.collapse(null, PROJECT + "/src"));
+    }
+
+    @Test
+    public void expandsAgainstTheCurrentDirectory() {
+        assertEquals("/moved/project/src", ProjectPathMacro.expand("/moved/project", "$PROJECT_DIR$/src"));
+        assertEquals("/moved/project", ProjectPathMacro.expand("/moved/project", "$PROJECT_DIR$"));
+        assertEquals("/work/other", ProjectPathMacro.expand("/moved/project", "/work/other"));
+        assertEquals("$PROJECT_DIR$/src", ProjectPathMacro.expand(null, "$PROJECT_DIR$/src"));
+    }
+
+    @Test
+    public void roundTrips() {
+        for (String path : new String[]{PROJECT, PROJECT + "/a/b", "/elsewhere", PROJECT + "-old/a"}) {
+            assertEquals(path, ProjectPathMacro.expand(PROJECT, ProjectPathMacro.collapse(PROJECT, path)));
+        }
+    }
+}